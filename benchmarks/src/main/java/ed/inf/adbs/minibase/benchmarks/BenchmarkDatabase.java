@@ -0,0 +1,135 @@
+package ed.inf.adbs.minibase.benchmarks;
+
+import ed.inf.adbs.minibase.ResultSink;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * BenchmarkDatabase is a collection of static methods to prepare the
+ * databases the benchmarks run on, in temporary directories so that
+ * the statistics and cached files written by Minibase stay out of the
+ * data directory of the project.
+ */
+public class BenchmarkDatabase {
+
+    // system property with the data directory of the project, found from the working directory if not set
+    public static final String DATA_PROPERTY = "minibase.benchmark.data";
+
+    private static final String[] WORDS = {"adbs", "anlp", "ids", "mlpr", "iaml", "rl", "nlu", "ppls"};
+
+    /**
+     * This method is used to find the data directory of the project, so that
+     * the benchmarks can be run from the project or the benchmarks directory.
+     * @return the data directory
+     */
+    public static Path findData(){
+        String property = System.getProperty(DATA_PROPERTY);
+        if(property != null) return Paths.get(property);
+        for (String candidate: new String[]{"data", "../data"}){
+            Path path = Paths.get(candidate);
+            if(Files.isDirectory(path.resolve("evaluation"))) return path;
+        }
+        throw new IllegalStateException("Data directory not found, set -D" + DATA_PROPERTY);
+    }
+
+    /**
+     * This method is used to generate a database with the relations
+     * R(int, int, string) of the given size and T(int, int) of the given size.
+     * R.x and T.a take rows / 10 distinct values, so R has groups of about
+     * ten rows and every row of T joins with about ten rows of R.
+     * @param rows number of rows of R
+     * @param joinRows number of rows of T
+     * @return the database directory
+     */
+    public static Path generate(int rows, int joinRows) throws IOException {
+        Path db = Files.createTempDirectory("minibase-bench");
+        Files.createDirectories(db.resolve("files"));
+        Files.write(db.resolve("schema.txt"), "R int int string\nT int int\n".getBytes(StandardCharsets.UTF_8));
+        int keys = Math.max(rows / 10, 1);
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(db.resolve("files").resolve("R.csv"))){
+            for (int i=0; i<rows; i++){
+                writer.write(random.nextInt(keys) + ", " + random.nextInt(1000) + ", '" + WORDS[random.nextInt(WORDS.length)] + "'");
+                writer.newLine();
+            }
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(db.resolve("files").resolve("T.csv"))){
+            for (int i=0; i<joinRows; i++){
+                writer.write(random.nextInt(keys) + ", " + random.nextInt(1000));
+                writer.newLine();
+            }
+        }
+        return db;
+    }
+
+    /**
+     * This method is used to copy a database of the data directory, e.g. evaluation/db.
+     * @param name path of the database within the data directory
+     * @return the copied database directory
+     */
+    public static Path copy(String name) throws IOException {
+        Path source = findData().resolve(name);
+        Path db = Files.createTempDirectory("minibase-bench");
+        try (Stream<Path> paths = Files.walk(source)){
+            for (Path path: (Iterable<Path>) paths::iterator){
+                String relative = source.relativize(path).toString();
+                if(relative.endsWith("stats.txt") || relative.endsWith(".col") || relative.endsWith(".idx")) continue;
+                Path target = db.resolve(relative);
+                if(Files.isDirectory(path)) Files.createDirectories(target);
+                else Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return db;
+    }
+
+    /**
+     * This method is used to write a query into a file of the database directory,
+     * where the Interpreter reads it from.
+     * @return path of the query file
+     */
+    public static String writeQuery(Path db, String query) throws IOException {
+        Path file = db.resolve("query.txt");
+        Files.write(file, query.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    /**
+     * This method is used to create a result sink dropping everything written into it,
+     * so that the tuples are still formatted but the disk is not measured.
+     */
+    public static ResultSink discardingSink(){
+        return new ResultSink(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    /**
+     * This method is used to delete a directory created by the methods above.
+     */
+    public static void delete(Path dir){
+        if(dir == null) return;
+        try (Stream<Path> paths = Files.walk(dir)){
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
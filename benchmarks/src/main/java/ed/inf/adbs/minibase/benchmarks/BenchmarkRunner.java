@@ -0,0 +1,38 @@
+package ed.inf.adbs.minibase.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+import java.io.IOException;
+
+/**
+ * Main class of the benchmarks jar. It takes the usual JMH command line
+ * options, e.g. a regular expression of the benchmarks to run or -rf json
+ * to keep the results, and always adds the GC profiler so that the
+ * allocation rate is reported next to the throughput.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if(commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()){
+            // the default main prints these and exits
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        boolean gc = false;
+        for (ProfilerConfig profiler: commandLine.getProfilers()){
+            gc |= profiler.getKlass().equals(GCProfiler.class.getName()) || profiler.getKlass().equals("gc");
+        }
+        if(!gc) options.addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,107 @@
+package ed.inf.adbs.minibase.benchmarks;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.Interpreter;
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.operators.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures single operators over a generated relation R(x, y, z)
+ * of the given size, read through nextBatch() as the root of a plan is.
+ * The joins read T(a, b), which has JOIN_ROWS rows, as their inner input.
+ * Every invocation creates the operators, so the time of compiling their
+ * conditions and resolving their layouts is included, as it is in a query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperatorBenchmark {
+
+    public static final int JOIN_ROWS = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private Path db;
+    private Variable x, y, z, a, b;
+    private RelationalAtom r, t;
+
+    @Setup
+    public void setup() throws IOException {
+        db = BenchmarkDatabase.generate(rows, JOIN_ROWS);
+        x = new Variable("x");
+        y = new Variable("y");
+        z = new Variable("z");
+        a = new Variable("a");
+        b = new Variable("b");
+        r = new RelationalAtom("R", new ArrayList<>(Arrays.asList(x, y, z)));
+        t = new RelationalAtom("T", new ArrayList<>(Arrays.asList(a, b)));
+        // the Interpreter provides the schemas and the group-by variables of the operators
+        new Catalog(db.toString(), BenchmarkDatabase.writeQuery(db, "Q(x, SUM(y)) :- R(x, y, z)"), null,
+                BenchmarkDatabase.discardingSink());
+        new Interpreter();
+    }
+
+    @TearDown
+    public void tearDown(){
+        Catalog.getInstance().closeOutputFile();
+        BenchmarkDatabase.delete(db);
+    }
+
+    private static void drain(Operator op, Blackhole bh){
+        op.reset();
+        Batch batch;
+        while ((batch = op.nextBatch()) != null) bh.consume(batch.getSelectedCount());
+    }
+
+    @Benchmark
+    public void scan(Blackhole bh){
+        drain(new ScanOperator(r), bh);
+    }
+
+    @Benchmark
+    public void scanFiltered(Blackhole bh){
+        drain(new ScanOperator(r, Collections.singletonList(new ComparisonAtom(y, new IntegerConstant(500), ComparisonOperator.LT))), bh);
+    }
+
+    @Benchmark
+    public void select(Blackhole bh){
+        List<ComparisonAtom> cas = Collections.singletonList(new ComparisonAtom(y, new IntegerConstant(500), ComparisonOperator.LT));
+        drain(new SelectOperator(new ScanOperator(r), cas), bh);
+    }
+
+    @Benchmark
+    public void project(Blackhole bh){
+        drain(new ProjectOperator(new ScanOperator(r), Collections.singletonList(x), null), bh);
+    }
+
+    @Benchmark
+    public void sumAgg(Blackhole bh){
+        drain(new SumAggOperator(new ScanOperator(r), new SumAggregate(new ArrayList<>(Collections.singletonList(y)))), bh);
+    }
+
+    @Benchmark
+    public void nestedLoopJoin(Blackhole bh){
+        List<ComparisonAtom> cas = Collections.singletonList(new ComparisonAtom(x, a, ComparisonOperator.EQ));
+        drain(new JoinOperator(new ScanOperator(r), new ScanOperator(t), cas), bh);
+    }
+
+    @Benchmark
+    public void hashJoin(Blackhole bh){
+        List<ComparisonAtom> cas = Collections.singletonList(new ComparisonAtom(x, a, ComparisonOperator.EQ));
+        drain(new HashJoinOperator(new ScanOperator(r), new ScanOperator(t), cas), bh);
+    }
+}
@@ -0,0 +1,62 @@
+package ed.inf.adbs.minibase.benchmarks;
+
+import ed.inf.adbs.minibase.CQMinimizer;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures parsing the queries of data/minimization/input and
+ * data/evaluation/input, and minimizing the queries of data/minimization/input.
+ * One operation handles all of the queries, as the queries are small.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private List<String> queries = new ArrayList<>();
+    private List<String> minimizationFiles = new ArrayList<>();
+    private Path output;
+
+    @Setup
+    public void setup() throws IOException {
+        Path data = BenchmarkDatabase.findData();
+        for (String dir: new String[]{"minimization/input", "evaluation/input"}){
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(data.resolve(dir), "*.txt")){
+                for (Path file: files){
+                    queries.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                    if(dir.startsWith("minimization")) minimizationFiles.add(file.toString());
+                }
+            }
+        }
+        output = Files.createTempFile("minibase-bench", ".txt");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh){
+        for (String query: queries) bh.consume(QueryParser.parse(query));
+    }
+
+    @Benchmark
+    public void minimizeCQ(){
+        for (String file: minimizationFiles) CQMinimizer.minimizeCQ(file, output.toString());
+    }
+}
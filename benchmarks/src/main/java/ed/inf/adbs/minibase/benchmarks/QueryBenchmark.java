@@ -0,0 +1,52 @@
+package ed.inf.adbs.minibase.benchmarks;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.Interpreter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures the queries of data/evaluation/input end to end, from
+ * reading the query file to writing the result, over a copy of data/evaluation/db.
+ * The result is formatted as it is for a file but not written to the disk.
+ * Relations stay in the RelationCache between invocations, as they do
+ * between queries of one process.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"query1", "query2", "query3", "query4", "query5", "query6", "query61", "query62", "query7", "query8", "query9"})
+    public String query;
+
+    private Path db;
+    private String inputFile;
+
+    @Setup
+    public void setup() throws IOException {
+        db = BenchmarkDatabase.copy("evaluation/db");
+        inputFile = BenchmarkDatabase.findData().resolve("evaluation/input").resolve(query + ".txt").toString();
+    }
+
+    @TearDown
+    public void tearDown(){
+        BenchmarkDatabase.delete(db);
+    }
+
+    @Benchmark
+    public void evaluateCQ(){
+        new Catalog(db.toString(), inputFile, null, BenchmarkDatabase.discardingSink());
+        try {
+            new Interpreter().dump();
+        } finally {
+            Catalog.getInstance().closeOutputFile();
+        }
+    }
+}
@@ -1,11 +1,23 @@
 package ed.inf.adbs.minibase;
 
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.ColumnarFile;
+import ed.inf.adbs.minibase.base.Relation;
+import ed.inf.adbs.minibase.base.Schema;
 import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.index.BPlusTree;
+import ed.inf.adbs.minibase.index.IndexBuilder;
+import ed.inf.adbs.minibase.stats.RelationStats;
+import ed.inf.adbs.minibase.stats.StatisticsStore;
 
-import java.io.BufferedWriter;
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Catalog is a collection of static methods for Minibase tasks, designed
@@ -17,17 +29,21 @@ public class Catalog {
     private static String dbRoot;
     private static String inputFile;
     private static String outputFile;
+    private static ResultSink resultSink;
+    // schemas read from schema.txt, with the database and the modification time of the file
+    private static Map<String, Schema> schemas;
+    private static String schemasRoot;
+    private static long schemasModified;
 
     public Catalog(String dbRoot, String inputFile, String outputFile){
+        this(dbRoot, inputFile, outputFile, ResultSink.toFile(outputFile));
+    }
+
+    public Catalog(String dbRoot, String inputFile, String outputFile, ResultSink resultSink){
         Catalog.dbRoot = dbRoot;
         Catalog.inputFile = inputFile;
         Catalog.outputFile = outputFile;
-        try {
-            new File(outputFile).delete();
-            new File(outputFile).createNewFile();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        Catalog.resultSink = resultSink;
 
         instance = this;
     }
@@ -52,6 +68,121 @@ public class Catalog {
         return dbRoot + File.separator + "files" + File.separator + filename + ".csv";
     }
 
+    /**
+     * Get the schemas of all relations from schema.txt. The file is only read
+     * again if the database or the file has changed since it was last read,
+     * so the queries of a long-running process share the parsed schemas.
+     * @return a mapping from relation name to schema
+     */
+    public Map<String, Schema> getSchemas(){
+        checkInit();
+        File file = new File(dbRoot + File.separator + "schema.txt");
+        if(schemas != null && dbRoot.equals(schemasRoot) && file.lastModified() == schemasModified) return schemas;
+        long modified = file.lastModified();
+        try {
+            schemas = readSchemas(dbRoot);
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return new HashMap<>();
+        }
+        schemasRoot = dbRoot;
+        schemasModified = modified;
+        return schemas;
+    }
+
+    /**
+     * This method is used to read the relations of the schema file of a database,
+     * one per line as the name followed by the types of its attributes.
+     * @param dbRoot database directory
+     * @return the schemas by relation name, in the order of the file
+     * @throws IOException if the schema file cannot be read
+     */
+    public static Map<String, Schema> readSchemas(String dbRoot) throws IOException {
+        Map<String, Schema> read = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(new File(dbRoot, "schema.txt")))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                int space = line.indexOf(' ');
+                if(space > 0) read.put(line.substring(0, space), new Schema(line.substring(space + 1)));
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Get the relation with the given name from the relation cache,
+     * the csv file is only parsed if it is not cached or has changed.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @return the relation
+     * @see RelationCache#get(String, Schema, String)
+     */
+    public Relation getRelation(String name, Schema schema){
+        checkInit();
+        return RelationCache.getInstance().get(name, schema, getFilePath(name));
+    }
+
+    /**
+     * Get the columnar file of the relation with the given name, if it has been
+     * imported and its csv file has not been modified since.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @return the opened columnar file, or null if the csv file has to be used
+     * @see ColumnarImporter
+     */
+    public ColumnarFile getColumnarFile(String name, Schema schema){
+        checkInit();
+        File file = new File(dbRoot + File.separator + "files" + File.separator + name + ColumnarFile.EXTENSION);
+        if(!file.exists()) return null;
+        try {
+            ColumnarFile columnar = ColumnarFile.open(file);
+            File csv = new File(getFilePath(name));
+            if(!columnar.getSchema().equals(schema)) return null;
+            if(csv.exists() && (csv.length() != columnar.getSourceLength() || csv.lastModified() != columnar.getSourceModified())) return null;
+            return columnar;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the index on a column of the relation with the given name, if it has
+     * been built and the csv file has not been modified since.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @param column position of the indexed column
+     * @return the opened index, or null if the column has no usable index
+     * @see IndexBuilder
+     */
+    public BPlusTree getIndex(String name, Schema schema, int column){
+        checkInit();
+        File file = IndexBuilder.getIndexFile(dbRoot, name, column);
+        if(!file.exists()) return null;
+        try {
+            BPlusTree index = BPlusTree.open(file);
+            File csv = new File(getFilePath(name));
+            if(index.getColumn() != column || index.isIntKeys() != schema.getType(column).equals("int")) return null;
+            if(csv.length() != index.getSourceLength() || csv.lastModified() != index.getSourceModified()) return null;
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the statistics of the relation with the given name from the statistics
+     * file of the database, they are only computed again if the csv file has changed.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @return the statistics of the relation
+     * @see StatisticsStore#get(String, Schema, File)
+     */
+    public RelationStats getStatistics(String name, Schema schema){
+        checkInit();
+        return StatisticsStore.forDatabase(dbRoot).get(name, schema, new File(getFilePath(name)));
+    }
+
     public String getInputFile() {
         checkInit();
         return inputFile;
@@ -59,27 +190,32 @@ public class Catalog {
 
     /**
      * Material the tuple into output file and connect values with ", "
+     * The tuple is buffered by the result sink, which is flushed in large chunks.
      * @param tuple tuple to be written
+     * @see ResultSink#write(Tuple)
      */
     public void writeOutputFile(Tuple tuple){
 //        System.out.println(tuple);
-        BufferedWriter bw = null;
-        try {
-            bw= new BufferedWriter(new FileWriter(outputFile, true));
-            String str = Utils.join(tuple.getValues(),", ");
-            bw.write(str);
-            bw.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }finally {
-            if(bw != null){
-                try {
-                    bw.close();
-                } catch (IOException e) {
-                    System.err.println("Exception occurred during writing query back to file");
-                    e.printStackTrace();
-                }
-            }
+        resultSink.write(tuple);
+    }
+
+    /**
+     * Material the selected rows of the batch into output file.
+     * @param batch batch to be written
+     * @see ResultSink#write(Batch)
+     */
+    public void writeOutputBatch(Batch batch){
+        resultSink.write(batch);
+    }
+
+    /**
+     * Flush the buffered tuples and close the output file,
+     * called once when the query has been evaluated.
+     */
+    public void closeOutputFile(){
+        if(resultSink != null){
+            resultSink.close();
+            resultSink = null;
         }
     }
 
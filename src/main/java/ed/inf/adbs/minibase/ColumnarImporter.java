@@ -0,0 +1,51 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.ColumnarFile;
+import ed.inf.adbs.minibase.base.CsvLoader;
+import ed.inf.adbs.minibase.base.Relation;
+import ed.inf.adbs.minibase.base.Schema;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * This class is to import the csv files of a database into the
+ * binary columnar format. For every relation of the schema file,
+ * files/name.csv is parsed once and written to files/name.col,
+ * which the planner then scans instead of the csv file as long as
+ * the csv file is not modified.
+ * @see ColumnarFile
+ */
+public class ColumnarImporter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: ColumnarImporter database_dir");
+            return;
+        }
+        String dbRoot = args[0];
+        for (Map.Entry<String, Schema> entry: Catalog.readSchemas(dbRoot).entrySet()){
+            String name = entry.getKey();
+            File csv = new File(dbRoot + File.separator + "files" + File.separator + name + ".csv");
+            File target = new File(dbRoot + File.separator + "files" + File.separator + name + ColumnarFile.EXTENSION);
+            importRelation(name, entry.getValue(), csv, target);
+            System.out.println(name + ": " + target);
+        }
+    }
+
+    /**
+     * This method is used to convert one csv file into a columnar file.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @param csv csv file of the relation
+     * @param target columnar file to be written
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void importRelation(String name, Schema schema, File csv, File target) throws IOException {
+        long length = csv.length();
+        long lastModified = csv.lastModified();
+        Relation relation = CsvLoader.load(name, schema, csv, ParallelExecutor.getDefaultParallelism());
+        ColumnarFile.write(relation, target, length, lastModified);
+    }
+}
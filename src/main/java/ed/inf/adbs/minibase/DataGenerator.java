@@ -0,0 +1,162 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Schema;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class is to generate synthetic csv files for the relations of
+ * a schema file, for load testing at sizes the bundled databases do not
+ * have. Every relation gets the same number of rows. The values of a
+ * column are drawn from a domain of a given number of distinct ints or
+ * strings, uniformly or with Zipfian skew, where the value of rank k
+ * is drawn with probability proportional to 1 / k^skew. The
+ * domain of the n-th relation of the schema file is shifted by
+ * n * (1 - overlap) of its size, so that with overlap 1 all relations
+ * share their values and with overlap 0 the join keys of neighbouring
+ * relations never match. The files only depend on the seed and the
+ * settings, so benchmark runs can be reproduced.
+ */
+public class DataGenerator {
+
+    // system properties of the settings, shared with the QueryGenerator
+    public static final String SEED_PROPERTY = "minibase.generator.seed";
+    public static final String KEYS_PROPERTY = "minibase.generator.keys";
+    public static final String SKEW_PROPERTY = "minibase.generator.skew";
+    public static final String OVERLAP_PROPERTY = "minibase.generator.overlap";
+    public static final String STRINGS_PROPERTY = "minibase.generator.strings";
+    public static final long DEFAULT_SEED = 42;
+    public static final int DEFAULT_STRINGS = 100;
+
+    private long seed;
+    private int rows;
+    private int keys;
+    private double skew;
+    private double overlap;
+    private int strings;
+
+    /**
+     * @param seed seed of the random values
+     * @param rows number of rows of every relation
+     * @param keys number of distinct values of an int column
+     * @param skew exponent of the Zipfian distribution, 0 for uniform values
+     * @param overlap fraction of the values shared by neighbouring relations, from 0 to 1
+     * @param strings number of distinct values of a string column
+     */
+    public DataGenerator(long seed, int rows, int keys, double skew, double overlap, int strings){
+        if(rows < 0 || keys < 1 || strings < 1 || skew < 0 || overlap < 0 || overlap > 1){
+            throw new IllegalArgumentException("Invalid generator settings");
+        }
+        this.seed = seed;
+        this.rows = rows;
+        this.keys = keys;
+        this.skew = skew;
+        this.overlap = overlap;
+        this.strings = strings;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DataGenerator database_dir rows");
+            return;
+        }
+        String dbRoot = args[0];
+        int rows = Integer.parseInt(args[1]);
+        DataGenerator generator = new DataGenerator(
+                Long.getLong(SEED_PROPERTY, DEFAULT_SEED),
+                rows,
+                Integer.getInteger(KEYS_PROPERTY, Math.max(rows, 1)),
+                Double.parseDouble(System.getProperty(SKEW_PROPERTY, "0")),
+                Double.parseDouble(System.getProperty(OVERLAP_PROPERTY, "1")),
+                Integer.getInteger(STRINGS_PROPERTY, DEFAULT_STRINGS));
+        new File(dbRoot, "files").mkdirs();
+        int index = 0;
+        for (Map.Entry<String, Schema> entry: Catalog.readSchemas(dbRoot).entrySet()){
+            File csv = new File(dbRoot + File.separator + "files" + File.separator + entry.getKey() + ".csv");
+            generator.generate(entry.getKey(), entry.getValue(), index++, csv);
+            System.out.println(entry.getKey() + ": " + csv);
+        }
+    }
+
+    /**
+     * This method is used to write the rows of one relation into its csv file.
+     * @param name name of the relation, which seeds its values with the seed
+     * @param schema schema of the relation
+     * @param index position of the relation in the schema file, which shifts its domains
+     * @param csv csv file to be written
+     * @throws IOException if the file cannot be written
+     */
+    public void generate(String name, Schema schema, int index, File csv) throws IOException {
+        Random random = new Random(seed * 31 + name.hashCode());
+        int columns = schema.getTypes().size();
+        boolean[] isInt = new boolean[columns];
+        for (int i=0; i<columns; i++) isInt[i] = schema.getType(i).equals("int");
+        long intOffset = Math.round((double) index * keys * (1 - overlap));
+        long stringOffset = Math.round((double) index * strings * (1 - overlap));
+        ZipfSampler intSampler = new ZipfSampler(keys, skew);
+        ZipfSampler stringSampler = new ZipfSampler(strings, skew);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csv, false), ResultSink.BUFFER_SIZE)) {
+            for (int row=0; row<rows; row++){
+                for (int i=0; i<columns; i++){
+                    if(i > 0) writer.write(", ");
+                    if(isInt[i]) writer.write(Long.toString(intOffset + intSampler.next(random)));
+                    else {
+                        writer.write('\'');
+                        writer.write(word(stringOffset + stringSampler.next(random)));
+                        writer.write('\'');
+                    }
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * This method is used to spell a number in lower case letters, which
+     * the query grammar accepts in string constants, e.g. 0 as a, 27 as bb.
+     * @param value a number at least 0
+     * @return the distinct string of the number
+     */
+    public static String word(long value){
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append((char) ('a' + value % 26));
+            value /= 26;
+        } while (value > 0);
+        return sb.reverse().toString();
+    }
+
+    /**
+     * Draws values from 0 to n - 1, the value k with probability proportional
+     * to 1 / (k + 1)^skew, by a binary search of the cumulative probabilities.
+     * A skew of 0 draws uniform values without building the table.
+     */
+    private static class ZipfSampler {
+        private int n;
+        private double[] cdf;
+
+        private ZipfSampler(int n, double skew){
+            this.n = n;
+            if(skew == 0) return;
+            this.cdf = new double[n];
+            double sum = 0;
+            for (int k=0; k<n; k++){
+                sum += 1 / Math.pow(k + 1, skew);
+                cdf[k] = sum;
+            }
+            for (int k=0; k<n; k++) cdf[k] /= sum;
+        }
+
+        private int next(Random random){
+            if(cdf == null) return random.nextInt(n);
+            int k = Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(k >= 0 ? k : -k - 1, n - 1);
+        }
+    }
+}
@@ -4,9 +4,6 @@ import ed.inf.adbs.minibase.base.*;
 import ed.inf.adbs.minibase.operators.Operator;
 import ed.inf.adbs.minibase.parser.QueryParser;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.*;
@@ -29,29 +26,45 @@ public class Interpreter {
     private List<RelationalAtom> relationalAtoms;
     // a list of ComparisonAtoms
     private List<ComparisonAtom> comparisonAtoms;
+    // the ComparisonAtoms after rewriting, which every plan starts from
+    private List<ComparisonAtom> rewrittenAtoms;
     // a list of distinguished variables appear in head
     private List<Variable> distVariables;
     // a list of non-distinguished variables appear in body but not in head
     private List<Variable> nonDistVariables;
     // a query planner to generate operator root
     private Planner planner;
+    // whether the comparison atoms can never hold together
+    private boolean unsatisfiable;
 
     /**
      * This constructor is to interpret schema and query from the given filepath,
      * translate implicit conditions both for single and join relations,
+     * infer the comparison atoms implied by them,
      * remove constant comparison atoms,
      * and create a query planner.
      */
     public Interpreter(){
+        this(readQuery(Catalog.getInstance().getInputFile()));
+    }
+
+    /**
+     * This constructor is to interpret the given query, e.g. one sent to the
+     * QueryServer, with the schemas of the database of the catalog.
+     * @param query the parsed query, which is rewritten in place
+     */
+    public Interpreter(Query query){
         instance = this;
-        initSchemas(Catalog.getInstance().getDbRoot());
-        initQuery(Catalog.getInstance().getInputFile());
+        this.schemas = Catalog.getInstance().getSchemas();
+        initQuery(query);
 
         selectExplicit();
         joinSelectExplicit();
 
+        inferComparisonAtoms();
         optimizeComparisonAtoms();
 
+        rewrittenAtoms = new ArrayList<>(comparisonAtoms);
         planner = new Planner(this);
     }
 
@@ -60,9 +73,27 @@ public class Interpreter {
         return instance;
     }
 
+    /**
+     * Generate the query plan and write its result, on several threads
+     * if the plan is large enough. With EXPLAIN the plan is printed
+     * instead, and with EXPLAIN ANALYZE it is run on one thread and
+     * printed with the counters of its operators.
+     * @see ParallelExecutor#dump(Operator)
+     * @see PlanExplainer
+     */
     public void dump(){
+        instance = this;
+        // the planner consumes the comparison atoms, so an interpreter kept by the QueryServer plans from a copy
+        comparisonAtoms = new ArrayList<>(rewrittenAtoms);
         Operator root = planner.generateQueryPlan();
-        root.dump();
+        if(PlanExplainer.isAnalyze()){
+            root.dump();
+            PlanExplainer.report(root);
+        }else if(PlanExplainer.isExplain()){
+            System.err.print(PlanExplainer.explain(root));
+        }else {
+            ParallelExecutor.fromProperties().dump(root);
+        }
     }
 
     public Query getQuery() {
@@ -81,6 +112,13 @@ public class Interpreter {
         return comparisonAtoms;
     }
 
+    /**
+     * @return whether the query has no answers whatever the data, as its comparison atoms contradict each other
+     */
+    public boolean isUnsatisfiable() {
+        return unsatisfiable;
+    }
+
     public List<Variable> getDistVariables() {
         return distVariables;
     }
@@ -90,56 +128,61 @@ public class Interpreter {
     }
 
     /**
-     * This method is used to read all schemas from schema.txt, and store
-     * them in a map for later access.
-     * @param dbRoot The directory root of database files.
+     * This method is used to get the hypergraph of the relational atoms, whose
+     * vertices are the classes of variables joined by the comparison atoms.
+     * @return a new hypergraph of the current atoms
      */
-    private void initSchemas(String dbRoot){
-        try (BufferedReader reader = new BufferedReader(new FileReader(dbRoot+File.separator+"schema.txt"))) {
-            this.schemas = new HashMap<>();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                String[] lineUnits = line.split(" ");
-                List<String> types = new ArrayList<>(Arrays.asList(lineUnits).subList(1, lineUnits.length));
-                schemas.put(lineUnits[0], new Schema(types));
-            }
+    public QueryHypergraph getHypergraph() {
+        return new QueryHypergraph(relationalAtoms, comparisonAtoms);
+    }
+
+    /**
+     * This method is used to check whether the query is acyclic, by GYO reduction
+     * of its hypergraph.
+     * @return boolean flag of check result
+     * @see QueryHypergraph#isAcyclic()
+     */
+    public boolean isAcyclic() {
+        return getHypergraph().isAcyclic();
+    }
 
+    /**
+     * This method is used to read the query from the given file name.
+     * @param inputFile The filename of input query file.
+     * @return the parsed query
+     */
+    private static Query readQuery(String inputFile){
+        try {
+            return QueryParser.parse(Paths.get(inputFile));
         } catch (IOException e) {
-            System.err.println("Error reading file: " + e.getMessage());
+            throw new RuntimeException(e);
         }
     }
 
     /**
-     * This method is used to read the query from the given file name,
+     * This method is used to
      * extract relational / comparison Atoms from the body,
      * extract distinguished / non-distinguished variables from the head and relational atoms,
      * and store them as instance variables for later access.
-     * @param inputFile The filename of input query file.
+     * @param query The parsed query.
      */
-    private void initQuery(String inputFile){
-
-        try {
-            this.query = QueryParser.parse(Paths.get(inputFile));
-            this.relationalAtoms = new ArrayList<>();
-            this.comparisonAtoms = new ArrayList<>();
-            this.distVariables = query.getHead().getVariables();
-            this.nonDistVariables = new ArrayList<>();
-            for(Atom atom: query.getBody()){
-                if(atom instanceof RelationalAtom) {
-                    relationalAtoms.add((RelationalAtom) atom);
-                    for(Term term: ((RelationalAtom) atom).getTerms()){
-                        if(term instanceof Variable && !distVariables.contains(term) && !nonDistVariables.contains(term)){
-                            nonDistVariables.add((Variable) term);
-                        }
+    private void initQuery(Query query){
+        this.query = query;
+        this.relationalAtoms = new ArrayList<>();
+        this.comparisonAtoms = new ArrayList<>();
+        this.distVariables = query.getHead().getVariables();
+        this.nonDistVariables = new ArrayList<>();
+        for(Atom atom: query.getBody()){
+            if(atom instanceof RelationalAtom) {
+                relationalAtoms.add((RelationalAtom) atom);
+                for(Term term: ((RelationalAtom) atom).getTerms()){
+                    if(term instanceof Variable && !distVariables.contains(term) && !nonDistVariables.contains(term)){
+                        nonDistVariables.add((Variable) term);
                     }
-                }else if(atom instanceof ComparisonAtom){
-                    comparisonAtoms.add((ComparisonAtom) atom);
                 }
+            }else if(atom instanceof ComparisonAtom){
+                comparisonAtoms.add((ComparisonAtom) atom);
             }
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
     }
 
@@ -252,26 +295,50 @@ public class Interpreter {
         return true;
     }
 
+    /**
+     * This method is used to replace the comparison atoms with the ones implied by them,
+     * propagating constants and range bounds to all the variables equal to each other.
+     * If they contradict each other, the query is marked unsatisfiable.
+     * @see PredicateInference
+     */
+    private void inferComparisonAtoms(){
+        List<ComparisonAtom> inferred = new PredicateInference(comparisonAtoms).infer();
+        if(inferred == null){
+            setUnsatisfiable();
+        }else {
+            comparisonAtoms = inferred;
+        }
+    }
+
     /**
      * This method is used to optimize the query by removing constant comparison atoms,
-     * if true, remove it, if false, simplify the query to get a null output.
+     * if true, remove it, if false, mark the query unsatisfiable to get a null output.
      */
     private void optimizeComparisonAtoms(){
-        ComparisonAtom falseCA = new ComparisonAtom(new IntegerConstant(1), new IntegerConstant(0), ComparisonOperator.EQ);
-        for(ComparisonAtom ca: comparisonAtoms){
-
+        if(unsatisfiable) return;
+        Iterator<ComparisonAtom> iterator = comparisonAtoms.iterator();
+        while (iterator.hasNext()){
+            ComparisonAtom ca = iterator.next();
             if(ca.getTerm1() instanceof Constant && ca.getTerm2() instanceof Constant){
                 if(compareOperate(ca.getTerm1(), ca.getTerm2(), ca.getOp())){
-                    comparisonAtoms.remove(ca);
+                    iterator.remove();
                 }else {
-                    relationalAtoms = relationalAtoms.subList(0, 1);
-                    comparisonAtoms = new ArrayList<>();
-                    comparisonAtoms.add(falseCA);
+                    setUnsatisfiable();
                     return;
                 }
             }
         }
     }
 
+    /**
+     * This method is used to replace the comparison atoms with a single false one,
+     * the planner then creates an empty plan without reading any relation.
+     */
+    private void setUnsatisfiable(){
+        unsatisfiable = true;
+        comparisonAtoms = new ArrayList<>();
+        comparisonAtoms.add(new ComparisonAtom(new IntegerConstant(1), new IntegerConstant(0), ComparisonOperator.EQ));
+    }
+
 
 }
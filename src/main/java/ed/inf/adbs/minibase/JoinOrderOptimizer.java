@@ -0,0 +1,279 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.operators.PredicateCompiler;
+import ed.inf.adbs.minibase.stats.RelationStats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is to create JoinOrderOptimizer instance to choose
+ * the order in which the planner joins the relational atoms of a
+ * query, based on estimated cardinalities. The cost of a left-deep
+ * order is the sum of the estimated sizes of its intermediate
+ * results. Dynamic programming over subsets of atoms is used for
+ * small queries and a greedy search for larger ones. An atom is
+ * only joined without a join condition (a cross product) if no
+ * remaining atom is connected to the ones already joined.
+ */
+public class JoinOrderOptimizer {
+
+    // queries with more atoms are ordered greedily
+    public static final int DP_THRESHOLD = 10;
+    // default selectivity of range comparisons
+    public static final double RANGE_SELECTIVITY = 1.0 / 3;
+    // selectivity of comparisons with a constant outside the range of values
+    public static final double MIN_SELECTIVITY = 1e-6;
+
+    private List<RelationalAtom> ras;
+    private List<RelationStats> stats;
+    // variable name to {atom index, column index}
+    private Map<String, int[]> sources;
+    // atoms referenced by every ComparisonAtom, and its selectivity
+    private List<Long> caMasks;
+    private List<Double> caSelectivities;
+    // indexes of the two variables of every equality between variables, null for other atoms
+    private List<int[]> caEqualities;
+    private Map<String, Integer> variableIndexes;
+
+    /**
+     * @param ras relational atoms of the query
+     * @param cas comparison atoms of the query
+     * @param stats statistics of the relation of every relational atom
+     */
+    public JoinOrderOptimizer(List<RelationalAtom> ras, List<ComparisonAtom> cas, List<RelationStats> stats){
+        this.ras = ras;
+        this.stats = stats;
+        this.sources = new HashMap<>();
+        for (int i=0; i<ras.size(); i++){
+            List<Term> terms = ras.get(i).getTerms();
+            for (int j=0; j<terms.size(); j++){
+                if(terms.get(j) instanceof Variable) sources.putIfAbsent(terms.get(j).toString(), new int[]{i, j});
+            }
+        }
+        this.caMasks = new ArrayList<>();
+        this.caSelectivities = new ArrayList<>();
+        this.caEqualities = new ArrayList<>();
+        this.variableIndexes = new HashMap<>();
+        for (ComparisonAtom ca: cas){
+            long mask = atomMask(ca.getTerm1()) | atomMask(ca.getTerm2());
+            if(mask == 0) continue;
+            caMasks.add(mask);
+            caSelectivities.add(estimateSelectivity(ca));
+            boolean equality = ca.getOp() == ComparisonOperator.EQ && sources.containsKey(ca.getTerm1().toString())
+                    && sources.containsKey(ca.getTerm2().toString());
+            caEqualities.add(equality ? new int[]{variableIndex(ca.getTerm1()), variableIndex(ca.getTerm2())} : null);
+        }
+    }
+
+    /**
+     * This method is used to get the relational atoms in the chosen join order.
+     * Queries with too many atoms for a bit mask keep their original order.
+     * @return a new list of the relational atoms
+     */
+    public List<RelationalAtom> order(){
+        int n = ras.size();
+        if(n <= 1 || n >= Long.SIZE) return new ArrayList<>(ras);
+        int[] order = n <= DP_THRESHOLD ? orderDynamic() : orderGreedy();
+        List<RelationalAtom> result = new ArrayList<>();
+        for (int i: order) result.add(ras.get(i));
+        return result;
+    }
+
+    /**
+     * This method is used to estimate the number of tuples produced by joining
+     * the given atoms, applying every ComparisonAtom that refers only to them.
+     * An equality between variables already equal through the equalities applied
+     * before it, e.g. a = b after x = a and x = b, does not reduce the estimate.
+     * @param mask bit mask of atom indexes
+     * @return estimated cardinality
+     */
+    public double estimateCardinality(long mask){
+        double cardinality = 1;
+        for (int i=0; i<ras.size(); i++){
+            if((mask & (1L << i)) != 0) cardinality *= stats.get(i).getRowCount();
+        }
+        int[] classes = null;
+        for (int k=0; k<caMasks.size(); k++){
+            if((caMasks.get(k) & ~mask) != 0) continue;
+            int[] equality = caEqualities.get(k);
+            if(equality != null){
+                if(classes == null){
+                    classes = new int[variableIndexes.size()];
+                    for (int v=0; v<classes.length; v++) classes[v] = v;
+                }
+                int class1 = findClass(classes, equality[0]);
+                int class2 = findClass(classes, equality[1]);
+                if(class1 == class2) continue;
+                classes[class1] = class2;
+            }
+            cardinality *= caSelectivities.get(k);
+        }
+        return cardinality;
+    }
+
+    private static int findClass(int[] classes, int v){
+        while (classes[v] != v) v = classes[v];
+        return v;
+    }
+
+    private int variableIndex(Term term){
+        return variableIndexes.computeIfAbsent(term.toString(), name -> variableIndexes.size());
+    }
+
+    /**
+     * This method is used to estimate the number of tuples produced by joining
+     * the given relational atoms of the query.
+     * @param atoms relational atoms of the query
+     * @return estimated cardinality
+     */
+    public double estimateCardinality(List<RelationalAtom> atoms){
+        long mask = 0;
+        for (RelationalAtom atom: atoms){
+            for (int i=0; i<ras.size(); i++){
+                if(ras.get(i) == atom) mask |= 1L << i;
+            }
+        }
+        return estimateCardinality(mask);
+    }
+
+    /**
+     * Left-deep dynamic programming over all subsets of atoms.
+     * @return atom indexes in join order
+     */
+    private int[] orderDynamic(){
+        int n = ras.size();
+        int full = (1 << n) - 1;
+        double[] costs = new double[full + 1];
+        int[] lastAtoms = new int[full + 1];
+        double[] cardinalities = new double[full + 1];
+        for (int s=1; s<=full; s++){
+            costs[s] = Double.POSITIVE_INFINITY;
+            cardinalities[s] = estimateCardinality(s);
+        }
+        for (int i=0; i<n; i++){
+            costs[1 << i] = cardinalities[1 << i];
+            lastAtoms[1 << i] = i;
+        }
+        for (int s=1; s<full; s++){
+            if(costs[s] == Double.POSITIVE_INFINITY) continue;
+            boolean anyConnected = false;
+            for (int j=0; j<n && !anyConnected; j++){
+                anyConnected = (s & (1 << j)) == 0 && isConnected(s, j);
+            }
+            for (int j=0; j<n; j++){
+                if((s & (1 << j)) != 0) continue;
+                if(anyConnected && !isConnected(s, j)) continue;
+                int next = s | (1 << j);
+                double cost = costs[s] + cardinalities[next];
+                if(cost < costs[next]){
+                    costs[next] = cost;
+                    lastAtoms[next] = j;
+                }
+            }
+        }
+        int[] order = new int[n];
+        int s = full;
+        for (int k=n-1; k>=0; k--){
+            order[k] = lastAtoms[s];
+            s &= ~(1 << lastAtoms[s]);
+        }
+        return order;
+    }
+
+    /**
+     * Greedy ordering, starting from the smallest atom and then always
+     * adding the connected atom giving the smallest intermediate result.
+     * @return atom indexes in join order
+     */
+    private int[] orderGreedy(){
+        int n = ras.size();
+        int[] order = new int[n];
+        long joined = 0;
+        for (int k=0; k<n; k++){
+            int best = -1;
+            double bestCardinality = Double.POSITIVE_INFINITY;
+            boolean bestConnected = false;
+            for (int j=0; j<n; j++){
+                if((joined & (1L << j)) != 0) continue;
+                boolean connected = joined != 0 && isConnected(joined, j);
+                double cardinality = estimateCardinality(joined | (1L << j));
+                if((connected && !bestConnected) || (connected == bestConnected && cardinality < bestCardinality)){
+                    best = j;
+                    bestCardinality = cardinality;
+                    bestConnected = connected;
+                }
+            }
+            order[k] = best;
+            joined |= 1L << best;
+        }
+        return order;
+    }
+
+    /**
+     * This method is used to check whether a ComparisonAtom joins the given
+     * atom with the already joined atoms.
+     * @param joined bit mask of joined atoms
+     * @param atom index of the candidate atom
+     * @return boolean flag of check result
+     */
+    private boolean isConnected(long joined, int atom){
+        long bit = 1L << atom;
+        for (long caMask: caMasks){
+            if((caMask & bit) != 0 && (caMask & joined) != 0 && (caMask & ~(joined | bit)) == 0) return true;
+        }
+        return false;
+    }
+
+    private long atomMask(Term term){
+        if(!(term instanceof Variable)) return 0;
+        int[] source = sources.get(term.toString());
+        return source == null ? 0 : 1L << source[0];
+    }
+
+    private long distinctCount(Term term){
+        int[] source = sources.get(term.toString());
+        return source == null ? 1 : stats.get(source[0]).getDistinctCount(source[1]);
+    }
+
+    /**
+     * This method is used to estimate the fraction of tuples passing the given
+     * ComparisonAtom: a comparison with a constant is estimated from the min/max
+     * and histogram of the attribute, equality with a constant keeps one distinct
+     * value, an equality of two variables keeps 1 / max(distinct values),
+     * and other range comparisons keep a fixed fraction.
+     * @param ca a comparison atom with at least one variable
+     * @return estimated selectivity
+     */
+    public double estimateSelectivity(ComparisonAtom ca){
+        Term term1 = ca.getTerm1();
+        Term term2 = ca.getTerm2();
+        ComparisonOperator op = ca.getOp();
+        if(term1 instanceof Constant){
+            Term swap = term1;
+            term1 = term2;
+            term2 = swap;
+            op = PredicateCompiler.flip(op);
+        }
+        if(term2 instanceof Constant){
+            int[] source = sources.get(term1.toString());
+            if(source != null){
+                RelationStats relationStats = stats.get(source[0]);
+                double selectivity = relationStats.getColumn(source[1]).estimate(op, (Constant) term2, relationStats.getDistinctCount(source[1]));
+                // never rule an atom out completely, the statistics may be stale
+                if(selectivity >= 0) return Math.max(selectivity, MIN_SELECTIVITY);
+            }
+        }
+        long distinct = 1;
+        if(term1 instanceof Variable) distinct = Math.max(distinct, distinctCount(term1));
+        if(term2 instanceof Variable) distinct = Math.max(distinct, distinctCount(term2));
+        switch (ca.getOp()){
+            case EQ: return 1.0 / distinct;
+            case NEQ: return 1.0 - 1.0 / distinct;
+            default: return RANGE_SELECTIVITY;
+        }
+    }
+}
@@ -33,8 +33,12 @@ public class Minibase {
         new Catalog(databaseDir, inputFile, outputFile);
         Catalog.getInstance().checkInit();
 
-        Interpreter interpreter = new Interpreter();
-        interpreter.dump();
+        try {
+            Interpreter interpreter = new Interpreter();
+            interpreter.dump();
+        } finally {
+            Catalog.getInstance().closeOutputFile();
+        }
 
     }
 
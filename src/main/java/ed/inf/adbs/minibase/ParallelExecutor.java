@@ -0,0 +1,142 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.operators.Operator;
+import ed.inf.adbs.minibase.operators.ProjectOperator;
+import ed.inf.adbs.minibase.operators.Splittable;
+import ed.inf.adbs.minibase.operators.SumAggOperator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class is to create ParallelExecutor instance to evaluate a query
+ * plan on several threads, based on morsel-driven parallelism. The rows
+ * of the scan driving the plan are divided into morsels, and a split of
+ * the pipeline (scan, select and join probes) runs for every morsel on a
+ * work-stealing pool. Hash tables are built once, on the right child of
+ * the hash joins, and shared by all splits. The results of the morsels
+ * are merged in morsel order at the pipeline breaker on top of the plan:
+ * they are concatenated, deduplicated through one set for a projection,
+ * or summed per group for an aggregation. The output is therefore the
+ * same whatever the scheduling of the morsels, and holds the tuples of
+ * the serial plan, in the same order unless a serial hash join would
+ * build on its left child. Whether a plan is split is decided without
+ * reading any input: plans which cannot be split, or with a single
+ * morsel, are run serially.
+ */
+public class ParallelExecutor {
+
+    // system property to configure the number of threads
+    public static final String PARALLELISM_PROPERTY = "minibase.parallelism";
+    // system property to configure the number of rows of the driving scan per morsel
+    public static final String MORSEL_ROWS_PROPERTY = "minibase.parallel.morselRows";
+    public static final int DEFAULT_MORSEL_ROWS = 16 * Batch.DEFAULT_CAPACITY;
+
+    private static ForkJoinPool pool;
+
+    private int parallelism;
+    private int morselRows;
+
+    public ParallelExecutor(int parallelism, int morselRows){
+        this.parallelism = parallelism;
+        this.morselRows = morselRows;
+    }
+
+    public static ParallelExecutor fromProperties(){
+        return new ParallelExecutor(getDefaultParallelism(), Math.max(1, Integer.getInteger(MORSEL_ROWS_PROPERTY, DEFAULT_MORSEL_ROWS)));
+    }
+
+    /**
+     * @return the number of threads set by the system property, or the number of processors
+     */
+    public static int getDefaultParallelism(){
+        return Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static synchronized ForkJoinPool getPool(int parallelism){
+        if(pool == null || pool.getParallelism() != parallelism) pool = new ForkJoinPool(parallelism);
+        return pool;
+    }
+
+    /**
+     * This method is used to evaluate the plan and write its tuples to the output file.
+     * @param root operator root of the query plan
+     */
+    public void dump(Operator root){
+        Operator pipeline = root instanceof SumAggOperator ? ((SumAggOperator) root).getChildOp() : root;
+        if(parallelism <= 1 || !Splittable.isSplittable(pipeline) || ((Splittable) pipeline).getSplitSize() <= morselRows){
+            root.dump();
+            return;
+        }
+
+        // splits are created on this thread, so shared hash tables are built once
+        Splittable splittable = (Splittable) pipeline;
+        int size = splittable.getSplitSize();
+        List<Operator> splits = new ArrayList<>();
+        for (int from=0; from<size; from+=morselRows){
+            splits.add(splittable.split(from, Math.min(size, from + morselRows)));
+        }
+        ForkJoinPool pool = getPool(parallelism);
+        Catalog catalog = Catalog.getInstance();
+
+        if(root instanceof SumAggOperator){
+            SumAggOperator sumAgg = (SumAggOperator) root;
+            List<ForkJoinTask<Map<Tuple, long[]>>> tasks = new ArrayList<>();
+            for (Operator split: splits){
+                tasks.add(pool.submit(() -> sumAgg.aggregate(split)));
+            }
+            Map<Tuple, long[]> groupSums = new LinkedHashMap<>();
+            for (ForkJoinTask<Map<Tuple, long[]>> task: tasks){
+                for (Map.Entry<Tuple, long[]> group: task.join().entrySet()){
+                    groupSums.computeIfAbsent(group.getKey(), k -> new long[1])[0] += group.getValue()[0];
+                }
+            }
+            sumAgg.setGroups(groupSums);
+            while (true){
+                Batch batch = sumAgg.nextBatch();
+                if(batch == null) break;
+                catalog.writeOutputBatch(batch);
+            }
+            return;
+        }
+
+        List<ForkJoinTask<List<Tuple>>> tasks = new ArrayList<>();
+        for (Operator split: splits){
+            tasks.add(pool.submit(() -> collect(split)));
+        }
+        // the tuples of a morsel are written as soon as the morsels before it are done
+        Set<Tuple> seen = root instanceof ProjectOperator && ((ProjectOperator) root).isDistinct() ? new HashSet<>() : null;
+        for (ForkJoinTask<List<Tuple>> task: tasks){
+            for (Tuple tuple: task.join()){
+                if(seen == null || seen.add(tuple)) catalog.writeOutputFile(tuple);
+            }
+        }
+    }
+
+    /**
+     * This method is used to read all tuples of a split.
+     * @param split a split of the plan
+     * @return the tuples in the order they were produced
+     */
+    private static List<Tuple> collect(Operator split){
+        List<Tuple> tuples = new ArrayList<>();
+        split.reset();
+        while (true){
+            Batch batch = split.nextBatch();
+            if(batch == null) break;
+            int[] selection = batch.getSelection();
+            for (int k=0; k<batch.getSelectedCount(); k++){
+                tuples.add(batch.getTuple(selection[k]));
+            }
+        }
+        return tuples;
+    }
+}
@@ -0,0 +1,130 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.operators.AnalyzeOperator;
+import ed.inf.adbs.minibase.operators.Operator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * This class prints query plans for EXPLAIN and EXPLAIN ANALYZE.
+ * The plan is printed one operator per line, below its parent and
+ * with its conditions. With EXPLAIN the query is not run. With
+ * EXPLAIN ANALYZE the planner wraps every operator in an
+ * AnalyzeOperator, the query is run on one thread, and every line
+ * is followed by the counters of the operator, including the time
+ * spent in the operator itself without its children. The analysis
+ * is written to stderr, or as JSON to the file given by a system property.
+ */
+public class PlanExplainer {
+
+    // system property to print the plan instead of running the query
+    public static final String EXPLAIN_PROPERTY = "minibase.explain";
+    // system property to run the query and print the plan with the counters of every operator
+    public static final String ANALYZE_PROPERTY = "minibase.analyze";
+    // system property with a JSON file the analysis is written to instead of stderr
+    public static final String ANALYZE_FILE_PROPERTY = "minibase.analyze.file";
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    public static boolean isExplain(){
+        return Boolean.getBoolean(EXPLAIN_PROPERTY);
+    }
+
+    public static boolean isAnalyze(){
+        return Boolean.getBoolean(ANALYZE_PROPERTY) || System.getProperty(ANALYZE_FILE_PROPERTY) != null;
+    }
+
+    /**
+     * This method is used to print the plan as an indented tree, one operator per line.
+     * @param root operator root of the query plan
+     * @return the plan, with the counters of analyzed operators
+     */
+    public static String explain(Operator root){
+        StringBuilder sb = new StringBuilder();
+        appendText(sb, root, 0);
+        return sb.toString();
+    }
+
+    /**
+     * This method is used to write the analysis of a plan which has been run,
+     * to the JSON file if one is set, or else to stderr.
+     * @param root operator root of the analyzed plan
+     */
+    public static void report(Operator root){
+        String file = System.getProperty(ANALYZE_FILE_PROPERTY);
+        if(file == null){
+            System.err.print(explain(root));
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        appendJson(sb, root);
+        sb.append(System.lineSeparator());
+        try {
+            Files.write(Paths.get(file), sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void appendText(StringBuilder sb, Operator op, int depth){
+        for (int i=0; i<depth; i++) sb.append("  ");
+        sb.append(depth == 0 ? "" : "-> ").append(op.describe());
+        if(op instanceof AnalyzeOperator){
+            AnalyzeOperator analyzed = (AnalyzeOperator) op;
+            sb.append(String.format(Locale.ROOT, "  (rows=%d getNextTuple=%d nextBatch=%d reset=%d wall=%.3fms cpu=%.3fms self=%.3fms)",
+                    analyzed.getRows(), analyzed.getTupleCalls(), analyzed.getBatchCalls(), analyzed.getResetCalls(),
+                    analyzed.getWallNanos() / NANOS_PER_MILLI, analyzed.getCpuNanos() / NANOS_PER_MILLI,
+                    selfNanos(analyzed) / NANOS_PER_MILLI));
+        }
+        sb.append(System.lineSeparator());
+        for (Operator child: op.getChildren()) appendText(sb, child, depth + 1);
+    }
+
+    private static void appendJson(StringBuilder sb, Operator op){
+        sb.append("{\"operator\": \"").append(escape(op.describe())).append('"');
+        if(op instanceof AnalyzeOperator){
+            AnalyzeOperator analyzed = (AnalyzeOperator) op;
+            sb.append(", \"rows\": ").append(analyzed.getRows());
+            sb.append(", \"getNextTuple\": ").append(analyzed.getTupleCalls());
+            sb.append(", \"nextBatch\": ").append(analyzed.getBatchCalls());
+            sb.append(", \"reset\": ").append(analyzed.getResetCalls());
+            sb.append(", \"wallNanos\": ").append(analyzed.getWallNanos());
+            sb.append(", \"cpuNanos\": ").append(analyzed.getCpuNanos());
+            sb.append(", \"selfNanos\": ").append(selfNanos(analyzed));
+        }
+        sb.append(", \"children\": [");
+        boolean first = true;
+        for (Operator child: op.getChildren()){
+            if(!first) sb.append(", ");
+            appendJson(sb, child);
+            first = false;
+        }
+        sb.append("]}");
+    }
+
+    /**
+     * @return the wall time of the operator minus the wall time of its analyzed children
+     */
+    private static long selfNanos(AnalyzeOperator op){
+        long nanos = op.getWallNanos();
+        for (Operator child: op.getChildren()){
+            if(child instanceof AnalyzeOperator) nanos -= ((AnalyzeOperator) child).getWallNanos();
+        }
+        return Math.max(nanos, 0);
+    }
+
+    private static String escape(String text){
+        StringBuilder sb = new StringBuilder();
+        for (char c: text.toCharArray()){
+            if(c == '"' || c == '\\') sb.append('\\');
+            if(c < ' ') sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -1,10 +1,20 @@
 package ed.inf.adbs.minibase;
 
 import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.index.BPlusTree;
+import ed.inf.adbs.minibase.index.KeyRange;
 import ed.inf.adbs.minibase.operators.*;
+import ed.inf.adbs.minibase.stats.ColumnStats;
+import ed.inf.adbs.minibase.stats.RelationStats;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 
 /**
@@ -13,7 +23,19 @@ import java.util.List;
  */
 public class Planner {
 
+    // system property to configure the largest estimated input of a hash join
+    public static final String HASH_JOIN_ROWS_PROPERTY = "minibase.join.hashRows";
+    public static final long DEFAULT_HASH_JOIN_ROWS = 4L * 1024 * 1024;
+    // largest estimated fraction of a relation read through an index
+    public static final double INDEX_SELECTIVITY = 0.1;
+    // system property to always (true) or never (false) reduce acyclic queries by semi-joins,
+    // by default they are reduced if the statistics suggest dangling tuples
+    public static final String YANNAKAKIS_PROPERTY = "minibase.join.yannakakis";
+    // distinct counts of a join variable in two neighbouring atoms differing by a smaller ratio suggest dangling tuples
+    public static final double DANGLING_RATIO = 0.9;
+
     private Interpreter it;
+    private JoinOrderOptimizer optimizer;
 
     public Planner(Interpreter it){
         this.it = it;
@@ -21,56 +43,428 @@ public class Planner {
 
     /**
      * This method is to generate a query plan with the query information from Interpreter.
-     * For every relational atoms, scan (must have), select, join, then sumAgg, and project.
+     * The relational atoms are first ordered by the cost-based join order optimizer.
+     * For every relational atoms, scan (must have) with its selection pushed down, join, then sumAgg or project.
+     * The scan reads an index if a selective comparison with a constant matches an indexed column,
+     * and an atom is joined through an index on its join column if the left input is small enough.
+     * Scans and joins only keep the variables still needed above them (see findLiveVariables),
+     * the scans reading fewer attributes and projections without duplicate elimination
+     * being added between joins.
+     * An unsatisfiable query gets an empty plan, without reading any relation.
+     * A query whose join hypergraph is cyclic is joined at once by a LeapfrogTriejoinOperator instead,
+     * and the atoms of an acyclic query are first reduced by semi-joins (Yannakakis) if the
+     * statistics suggest dangling tuples.
      * The operators (except scan) will pass an if-condition test before applied. If applicable,
      * the operator will be added to the root as the parent of child nodes.
      * @return operator root of the query plan
      */
     public Operator generateQueryPlan(){
-        List<RelationalAtom> ras = it.getRelationalAtoms();
+        if(it.isUnsatisfiable()) return createEmptyPlan();
+        List<RelationalAtom> ras = orderRelationalAtoms();
         List<Term> relatedTerms = new ArrayList<>();
         List<ComparisonAtom> relatedCAS;
         SumAggregate sumAggregate = it.getQuery().getHead().getSumAggregate();
         Operator root = null;
+        List<RelationalAtom> joinedAtoms = new ArrayList<>();
+        QueryHypergraph graph = it.getHypergraph();
+        Map<RelationalAtom, Operator> reduced = new IdentityHashMap<>();
+        if(useMultiwayJoin(graph)){
+            root = analyze(createLeapfrogTriejoin(graph, relatedTerms));
+            ras = Collections.emptyList();
+        }else if(ras.size() >= 3){
+            reduceAcyclic(graph, reduced);
+        }
+        // whether a variable has been dropped below the top of the plan
+        boolean narrowed = false;
         for(RelationalAtom ra: ras){
 
-            // scan
-            Operator scanOperator = new ScanOperator(ra);
-
-            // select
-            Operator selectOperator;
             List<Term> raTerms = ra.getTerms();
+            List<Term> leftTerms = new ArrayList<>(relatedTerms);
             relatedTerms.addAll(raTerms);
             relatedCAS = findRelatedCAS(raTerms);
-            if(!relatedCAS.isEmpty()){
-                selectOperator = new SelectOperator(scanOperator, relatedCAS);
-            }else {
-                selectOperator = scanOperator;
+            List<ComparisonAtom> joinCAS = root == null ? null : findRelatedCAS(relatedTerms);
+
+            // index nested loop join, reading only the rows of the atom matching the left tuples
+            Operator indexJoin = null;
+            if(root != null && !reduced.containsKey(ra)){
+                indexJoin = createIndexJoinOperator(root, ra, leftTerms, relatedCAS, joinCAS, joinedAtoms);
             }
 
-            // join
-            Operator joinOperator;
-            if(ras.indexOf(ra) == 0){
-                root = selectOperator;
+            if(indexJoin != null){
+                root = analyze(indexJoin);
             }else {
-                relatedCAS = findRelatedCAS(relatedTerms);
-                root = new JoinOperator(root, selectOperator, relatedCAS);
+                // scan, with the selection on the atom alone pushed down and only the needed terms kept
+                Operator selectOperator = reduced.containsKey(ra) ? reduced.get(ra) : createScanOperator(ra, relatedCAS, findLiveVariables(raTerms, joinCAS));
+
+                // join
+                if(root == null){
+                    root = selectOperator;
+                }else {
+                    relatedCAS = joinCAS;
+                    if(hasEquiJoin(relatedCAS, leftTerms, raTerms)){
+                        if(exceedsHashJoin(joinedAtoms, ra)){
+                            root = analyze(new SortMergeJoinOperator(root, selectOperator, relatedCAS));
+                        }else {
+                            root = analyze(new HashJoinOperator(root, selectOperator, relatedCAS));
+                        }
+                    }else {
+                        root = analyze(new JoinOperator(root, selectOperator, relatedCAS));
+                    }
+                }
+            }
+            joinedAtoms.add(ra);
+
+            // early project, dropping the variables no longer needed before the next join
+            List<Variable> liveVariables = findLiveVariables(root.getLayout().getTerms(), null);
+            if(ra != ras.get(ras.size() - 1) && liveVariables.size() < root.getLayout().size()){
+                root = analyze(new ProjectOperator(root, liveVariables, null, false));
             }
+            narrowed |= root.getLayout().size() < leftTerms.size() + raTerms.size();
+            relatedTerms = new ArrayList<>(root.getLayout().getTerms());
         }
         // end of for
-        // sumAgg
+        // sumAgg, its tuples hold exactly the head terms, so no projection is needed
         if(sumAggregate != null){
-            root = new SumAggOperator(root, sumAggregate);
+            return analyze(new SumAggOperator(root, sumAggregate));
         }
 
-        // project
-        if(!it.getDistVariables().equals(relatedTerms)){
-            root = new ProjectOperator(root, it.getDistVariables(), sumAggregate);
+        // project, always eliminating duplicates if a variable was dropped below
+        if(narrowed || !it.getDistVariables().equals(relatedTerms)){
+            root = analyze(new ProjectOperator(root, it.getDistVariables(), sumAggregate));
         }
 
         return root;
     }
 
+    /**
+     * This method is to create the plan of an unsatisfiable query: an empty input holding
+     * the variables of all relational atoms, below the sumAgg or project of the head,
+     * so that the output is the same as if the relations were read.
+     * @return operator root of the query plan
+     */
+    private Operator createEmptyPlan(){
+        List<Term> terms = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for (RelationalAtom ra: it.getRelationalAtoms()){
+            terms.addAll(ra.getTerms());
+            types.addAll(it.getScheme(ra.getName()).getTypes());
+        }
+        Operator root = analyze(new MaterializedOperator(new ArrayList<>(), new TupleLayout(terms, new Schema(types))));
+        SumAggregate sumAggregate = it.getQuery().getHead().getSumAggregate();
+        if(sumAggregate != null) return analyze(new SumAggOperator(root, sumAggregate));
+        return analyze(new ProjectOperator(root, it.getDistVariables(), null));
+    }
+
+    /**
+     * This method is to create the scan of a relational atom with its selection,
+     * reading an index of its relation if one matches its comparisons, or else
+     * the columnar file of its relation if there is an up-to-date one. Comparisons
+     * are pushed down into a scan of the columnar file or the cached relation,
+     * and applied by a SelectOperator above an index scan. The scans of the
+     * columnar file and the cached relation only read the attributes of the given terms,
+     * an index scan reads them all.
+     * Below a SumAggOperator, the scan leaves out the rows repeating an earlier row
+     * of the relation, as the sum is over the distinct assignments of the body
+     * variables (see SumAggOperator), and no index is read.
+     * @param ra the relational atom to be scanned
+     * @param cas ComparisonAtom applied to the atom alone
+     * @param terms terms of the atom needed above the scan
+     * @return the scan operator, or the select above it
+     */
+    private Operator createScanOperator(RelationalAtom ra, List<ComparisonAtom> cas, List<? extends Term> terms){
+        boolean distinct = it.getQuery().getHead().getSumAggregate() != null;
+        Operator indexScan = distinct ? null : createIndexScanOperator(ra, cas);
+        if(indexScan != null) return cas.isEmpty() ? analyze(indexScan) : analyze(new SelectOperator(analyze(indexScan), cas));
+        ColumnarFile columnar = Catalog.getInstance().getColumnarFile(ra.getName(), it.getScheme(ra.getName()));
+        if(columnar != null) return analyze(new ColumnarScanOperator(ra, columnar, cas, terms, distinct));
+        return analyze(new ScanOperator(ra, cas, terms, distinct));
+    }
+
+    /**
+     * This method is to wrap a new operator of the plan in an AnalyzeOperator
+     * counting its rows, calls and time, if the query is run by EXPLAIN ANALYZE.
+     * @param op the new operator
+     * @return the analyzed operator, or the given one
+     * @see PlanExplainer
+     */
+    private Operator analyze(Operator op){
+        return PlanExplainer.isAnalyze() ? new AnalyzeOperator(op) : op;
+    }
+
+    /**
+     * This method is to find the variables of the given terms which are still needed
+     * above this point of the plan: the head variables, the variables of the SumAggregate,
+     * and the variables of the ComparisonAtoms not applied yet or about to be applied.
+     * At least one variable is kept, so that tuples are never empty.
+     * @param terms terms of the tuples
+     * @param cas ComparisonAtom about to be applied, or null
+     * @return the needed variables, in the order of the given terms
+     */
+    private List<Variable> findLiveVariables(List<Term> terms, List<ComparisonAtom> cas){
+        List<Term> live = new ArrayList<>(it.getDistVariables());
+        SumAggregate sumAggregate = it.getQuery().getHead().getSumAggregate();
+        if(sumAggregate != null) live.addAll(sumAggregate.getProductTerms());
+        List<ComparisonAtom> pending = new ArrayList<>(it.getComparisonAtoms());
+        if(cas != null) pending.addAll(cas);
+        for (ComparisonAtom ca: pending){
+            live.add(ca.getTerm1());
+            live.add(ca.getTerm2());
+        }
+        List<Variable> variables = new ArrayList<>();
+        for (Term term: terms){
+            if(term instanceof Variable && live.contains(term)) variables.add((Variable) term);
+        }
+        if(variables.isEmpty() && !terms.isEmpty() && terms.get(0) instanceof Variable) variables.add((Variable) terms.get(0));
+        return variables;
+    }
+
+    /**
+     * This method is to find an indexed column of the atom compared with constants,
+     * such that the comparisons are estimated to keep at most INDEX_SELECTIVITY of
+     * the relation. The comparisons are still applied by the select above the scan.
+     * @param ra the relational atom to be scanned
+     * @param cas ComparisonAtom applied to the atom alone
+     * @return an index scan, or null if no index is worth reading
+     */
+    private Operator createIndexScanOperator(RelationalAtom ra, List<ComparisonAtom> cas){
+        Schema schema = it.getScheme(ra.getName());
+        List<Term> terms = ra.getTerms();
+        for (int j=0; j<terms.size(); j++){
+            if(!(terms.get(j) instanceof Variable)) continue;
+            KeyRange range = new KeyRange();
+            double selectivity = 1;
+            for (ComparisonAtom ca: cas){
+                Term term1 = ca.getTerm1();
+                Term term2 = ca.getTerm2();
+                ComparisonOperator op = ca.getOp();
+                if(term1 instanceof Constant){
+                    Term swap = term1;
+                    term1 = term2;
+                    term2 = swap;
+                    op = PredicateCompiler.flip(op);
+                }
+                if(!term1.equals(terms.get(j)) || !(term2 instanceof Constant)) continue;
+                Object value = term2 instanceof IntegerConstant ? ((IntegerConstant) term2).getValue() : ((StringConstant) term2).getValue();
+                if((value instanceof Integer) != schema.getType(j).equals("int")) continue;
+                if(range.restrict(op, value)) selectivity = Math.min(selectivity, optimizer.estimateSelectivity(ca));
+            }
+            if(selectivity > INDEX_SELECTIVITY) continue;
+            BPlusTree index = Catalog.getInstance().getIndex(ra.getName(), schema, j);
+            if(index == null) continue;
+            return new IndexScanOperator(ra, schema, new File(Catalog.getInstance().getFilePath(ra.getName())), index, range);
+        }
+        return null;
+    }
+
+    /**
+     * This method is to find an equality between a variable of the left terms and an
+     * indexed column of the atom, such that the left input is estimated to have at most
+     * INDEX_SELECTIVITY times as many rows as the relation of the atom. The atom is then
+     * probed through the index once per left tuple instead of being scanned.
+     * Not used below a SumAggOperator, whose scans leave out repeated rows.
+     * @param root the left input
+     * @param ra the relational atom to be joined
+     * @param leftTerms terms of the left input
+     * @param raCAS ComparisonAtom applied to the atom alone
+     * @param joinCAS ComparisonAtom applied to the join
+     * @param joinedAtoms relational atoms of the left input
+     * @return an index nested loop join, or null if no index is worth probing
+     */
+    private Operator createIndexJoinOperator(Operator root, RelationalAtom ra, List<Term> leftTerms,
+                                             List<ComparisonAtom> raCAS, List<ComparisonAtom> joinCAS, List<RelationalAtom> joinedAtoms){
+        if(it.getQuery().getHead().getSumAggregate() != null) return null;
+        Schema schema = it.getScheme(ra.getName());
+        RelationStats stats = Catalog.getInstance().getStatistics(ra.getName(), schema);
+        if(optimizer.estimateCardinality(joinedAtoms) > INDEX_SELECTIVITY * stats.getRowCount()) return null;
+        List<Term> terms = ra.getTerms();
+        for (ComparisonAtom ca: joinCAS){
+            if(!HashJoinOperator.isEquiJoin(ca)) continue;
+            Term outerTerm = leftTerms.contains(ca.getTerm1()) ? ca.getTerm1() : ca.getTerm2();
+            Term innerTerm = outerTerm == ca.getTerm1() ? ca.getTerm2() : ca.getTerm1();
+            int column = terms.indexOf(innerTerm);
+            if(!leftTerms.contains(outerTerm) || column < 0) continue;
+            TupleLayout layout = root.getLayout();
+            if(layout.isInt(layout.slotOf(outerTerm)) != schema.getType(column).equals("int")) continue;
+            BPlusTree index = Catalog.getInstance().getIndex(ra.getName(), schema, column);
+            if(index == null) continue;
+            List<ComparisonAtom> cas = new ArrayList<>(raCAS);
+            cas.addAll(joinCAS);
+            IndexScanOperator inner = new IndexScanOperator(ra, schema, new File(Catalog.getInstance().getFilePath(ra.getName())), index, new KeyRange());
+            return new IndexNestedLoopJoinOperator(root, inner, outerTerm, cas);
+        }
+        return null;
+    }
+
+    /**
+     * This method is to check whether the query is joined by a multiway join: the
+     * hypergraph of its relational atoms must be cyclic, and the variables of every
+     * class must have the same type.
+     * @param graph hypergraph of the query
+     * @return boolean flag of check result
+     */
+    private boolean useMultiwayJoin(QueryHypergraph graph){
+        List<RelationalAtom> ras = graph.getRelationalAtoms();
+        if(ras.size() < 3 || graph.isAcyclic()) return false;
+        String[] types = new String[graph.getClassCount()];
+        for (RelationalAtom ra: ras){
+            Schema schema = it.getScheme(ra.getName());
+            for (int j=0; j<ra.getTerms().size(); j++){
+                int c = graph.getClass(ra.getTerms().get(j));
+                if(c < 0) return false;
+                if(types[c] == null) types[c] = schema.getType(j);
+                else if(!types[c].equals(schema.getType(j))) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method is to reduce the atoms of an acyclic query by the semi-join passes
+     * of the Yannakakis algorithm over a join tree from the GYO reduction, if it is
+     * worth it (see isReductionWorthwhile). Every atom is scanned with the ComparisonAtoms
+     * on it alone, keeping the variables still needed (the join variables among them),
+     * and the reduced tuples are then joined pairwise as usual. The inputs are only
+     * read and reduced when the plan is run.
+     * @param graph hypergraph of the query
+     * @param reduced map filled with the reduced input of every atom, left empty if the
+     *                query is cyclic or not reduced
+     * @see SemiJoinReducer
+     */
+    private void reduceAcyclic(QueryHypergraph graph, Map<RelationalAtom, Operator> reduced){
+        List<Integer> removed = new ArrayList<>();
+        int[] parents = graph.joinTree(removed);
+        if(parents == null || !isReductionWorthwhile(graph, parents)) return;
+        List<Operator> inputs = new ArrayList<>();
+        for (RelationalAtom ra: graph.getRelationalAtoms()){
+            List<ComparisonAtom> raCAS = findRelatedCAS(ra.getTerms());
+            Operator input = createScanOperator(ra, raCAS, findLiveVariables(ra.getTerms(), null));
+            inputs.add(input);
+        }
+        SemiJoinReducer reducer = new SemiJoinReducer(graph, parents, removed, inputs);
+        for (int i=0; i<inputs.size(); i++){
+            reduced.put(graph.getRelationalAtoms().get(i), analyze(new SemiJoinReduceOperator(reducer, i)));
+        }
+    }
+
+    /**
+     * This method is to check whether the semi-join reduction of an acyclic query is
+     * worth running, unless the system property turns it on or off. The reduced inputs
+     * are held in memory and can neither be probed through an index nor sorted on disk,
+     * so no atom may be estimated too large for a hash table. The statistics must then
+     * suggest dangling tuples: an atom with a selection of its own, whose neighbours in
+     * the join tree lose the tuples it drops, or a join variable whose columns in an atom
+     * and its parent have distinct counts or ranges of values too different to match.
+     * @param graph hypergraph of the query
+     * @param parents parent of every atom in the join tree
+     * @return boolean flag of check result
+     */
+    private boolean isReductionWorthwhile(QueryHypergraph graph, int[] parents){
+        String property = System.getProperty(YANNAKAKIS_PROPERTY);
+        if(property != null) return Boolean.parseBoolean(property);
+        List<RelationalAtom> ras = graph.getRelationalAtoms();
+        long limit = Long.getLong(HASH_JOIN_ROWS_PROPERTY, DEFAULT_HASH_JOIN_ROWS);
+        boolean dangling = false;
+        for (int i=0; i<ras.size(); i++){
+            RelationalAtom ra = ras.get(i);
+            RelationStats stats = Catalog.getInstance().getStatistics(ra.getName(), it.getScheme(ra.getName()));
+            double cardinality = optimizer.estimateCardinality(Collections.singletonList(ra));
+            if(cardinality > limit) return false;
+            if(cardinality < stats.getRowCount()) dangling = true;
+            if(parents[i] >= 0 && hasUnmatchedValues(graph, ra, ras.get(parents[i]))) dangling = true;
+        }
+        return dangling;
+    }
+
+    /**
+     * This method is to check whether the statistics of two neighbouring atoms suggest
+     * values of a shared join variable found in one of them only.
+     * @param graph hypergraph of the query
+     * @param ra1 a relational atom
+     * @param ra2 a relational atom sharing variables with it
+     * @return boolean flag of check result
+     */
+    private boolean hasUnmatchedValues(QueryHypergraph graph, RelationalAtom ra1, RelationalAtom ra2){
+        RelationStats stats1 = Catalog.getInstance().getStatistics(ra1.getName(), it.getScheme(ra1.getName()));
+        RelationStats stats2 = Catalog.getInstance().getStatistics(ra2.getName(), it.getScheme(ra2.getName()));
+        List<Term> terms1 = ra1.getTerms();
+        List<Term> terms2 = ra2.getTerms();
+        for (int j1=0; j1<terms1.size(); j1++){
+            int c = graph.getClass(terms1.get(j1));
+            if(c < 0) continue;
+            for (int j2=0; j2<terms2.size(); j2++){
+                if(graph.getClass(terms2.get(j2)) != c) continue;
+                long distinct1 = stats1.getDistinctCount(j1);
+                long distinct2 = stats2.getDistinctCount(j2);
+                if(Math.min(distinct1, distinct2) < DANGLING_RATIO * Math.max(distinct1, distinct2)) return true;
+                ColumnStats column1 = stats1.getColumn(j1);
+                ColumnStats column2 = stats2.getColumn(j2);
+                if(!Objects.equals(column1.getMin(), column2.getMin()) || !Objects.equals(column1.getMax(), column2.getMax())) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method is to create a LeapfrogTriejoinOperator over all the relational atoms.
+     * Every atom is scanned with the ComparisonAtoms on it alone, the equalities within
+     * a class of variables are implied by the join, and the other ComparisonAtoms are
+     * checked against the joined tuples. The classes are bound in the order given by
+     * QueryHypergraph#variableOrder, using the smallest distinct count of each class.
+     * @param graph hypergraph of the query
+     * @param relatedTerms list filled with the terms of the joined tuples
+     * @return the join operator
+     */
+    private Operator createLeapfrogTriejoin(QueryHypergraph graph, List<Term> relatedTerms){
+        List<Operator> children = new ArrayList<>();
+        long[] distinct = new long[graph.getClassCount()];
+        Arrays.fill(distinct, Long.MAX_VALUE);
+        for (RelationalAtom ra: graph.getRelationalAtoms()){
+            List<ComparisonAtom> raCAS = findRelatedCAS(ra.getTerms());
+            Operator child = createScanOperator(ra, raCAS, ra.getTerms());
+            children.add(child);
+            relatedTerms.addAll(ra.getTerms());
+            RelationStats stats = Catalog.getInstance().getStatistics(ra.getName(), it.getScheme(ra.getName()));
+            for (int j=0; j<ra.getTerms().size(); j++){
+                int c = graph.getClass(ra.getTerms().get(j));
+                distinct[c] = Math.min(distinct[c], stats.getDistinctCount(j));
+            }
+        }
+        List<ComparisonAtom> residualCAS = new ArrayList<>();
+        for (ComparisonAtom ca: findRelatedCAS(relatedTerms)){
+            if(!graph.isJoinEquality(ca)) residualCAS.add(ca);
+        }
+        return new LeapfrogTriejoinOperator(children, graph, graph.variableOrder(distinct), residualCAS);
+    }
+
+    /**
+     * This method is to choose the join order of the relational atoms with the
+     * cost-based JoinOrderOptimizer, using the statistics from the catalog.
+     * @return the relational atoms in join order
+     */
+    private List<RelationalAtom> orderRelationalAtoms(){
+        List<RelationalAtom> ras = it.getRelationalAtoms();
+        List<RelationStats> stats = new ArrayList<>();
+        for (RelationalAtom ra: ras){
+            stats.add(Catalog.getInstance().getStatistics(ra.getName(), it.getScheme(ra.getName())));
+        }
+        optimizer = new JoinOrderOptimizer(ras, it.getComparisonAtoms(), stats);
+        return optimizer.order();
+    }
+
+    /**
+     * This method is to check whether both inputs of an equi-join are estimated
+     * to be too large for a hash table, so that a sort-merge join is used.
+     * @param joinedAtoms relational atoms of the left input
+     * @param ra relational atom of the right input
+     * @return boolean flag of check result
+     */
+    private boolean exceedsHashJoin(List<RelationalAtom> joinedAtoms, RelationalAtom ra){
+        long limit = Long.getLong(HASH_JOIN_ROWS_PROPERTY, DEFAULT_HASH_JOIN_ROWS);
+        double left = optimizer.estimateCardinality(joinedAtoms);
+        double right = optimizer.estimateCardinality(Collections.singletonList(ra));
+        return Math.min(left, right) > limit;
+    }
+
     /**
      * This method is to find all related ComparisonAtom from the list in Interpreter.
      * Then remove them from the list to avoid repeated select.
@@ -89,6 +483,23 @@ public class Planner {
         return relatedCAS;
     }
 
+    /**
+     * This method is to check if there is an equality between a variable of the
+     * left terms and a variable of the right terms, so that a hash join can be used.
+     * @param cas a list of related ComparisonAtom
+     * @param leftTerms terms of the left child
+     * @param rightTerms terms of the right child
+     * @return boolean flag of check result
+     */
+    private boolean hasEquiJoin(List<ComparisonAtom> cas, List<Term> leftTerms, List<Term> rightTerms){
+        for (ComparisonAtom ca: cas){
+            if(!HashJoinOperator.isEquiJoin(ca)) continue;
+            if(leftTerms.contains(ca.getTerm1()) && rightTerms.contains(ca.getTerm2())) return true;
+            if(rightTerms.contains(ca.getTerm1()) && leftTerms.contains(ca.getTerm2())) return true;
+        }
+        return false;
+    }
+
     /**
      * This method is to check if the given ComparisonAtom is applicable to
      * the given list of terms. If two constant, return true.
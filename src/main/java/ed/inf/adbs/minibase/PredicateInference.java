@@ -0,0 +1,285 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.operators.HashJoinOperator;
+import ed.inf.adbs.minibase.operators.PredicateCompiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ed.inf.adbs.minibase.operators.SelectOperator.compareOperate;
+
+/**
+ * This class is to create PredicateInference instance to rewrite the
+ * ComparisonAtoms of a query with the ones implied by them. Variables
+ * equal to each other form an equivalence class, and every class keeps
+ * the constant it equals and its tightest range bounds. The bounds are
+ * propagated along the comparisons between variables of different
+ * classes, e.g. x > 5, x < y gives y > 5, and are then applied to every
+ * variable of the class, so that every atom holding one of them can be
+ * filtered by its scan. Equalities implied by transitivity are added, so
+ * any two atoms sharing a class can be joined directly. Bounds which
+ * cannot all hold, e.g. x = 4, x = a, a > 5, make the query unsatisfiable.
+ */
+public class PredicateInference {
+
+    private List<ComparisonAtom> cas;
+    // variables of the ComparisonAtoms in order of appearance, by name
+    private Map<String, Variable> variables = new LinkedHashMap<>();
+    // variable name to the name of its parent in the union-find forest
+    private Map<String, String> parents = new HashMap<>();
+    // name of the root of every class to the bounds of the class
+    private Map<String, Bounds> bounds = new HashMap<>();
+
+    /**
+     * The constants bounding the values of a class of variables.
+     * Strict bounds of ints are stored as inclusive ones, e.g. x > 4 as x >= 5.
+     */
+    private static class Bounds {
+        private Constant eq;
+        private Constant lower;
+        private boolean lowerStrict;
+        private Constant upper;
+        private boolean upperStrict;
+        private List<Constant> neq = new ArrayList<>();
+        private boolean contradiction;
+        // a class compared with constants of both types is left as it is
+        private Class<?> type;
+        private boolean mixed;
+
+        /**
+         * This method is used to add the bound v op c of the variables of the class.
+         * @return whether the bounds changed
+         */
+        private boolean add(ComparisonOperator op, Constant c){
+            if(type == null) type = c.getClass();
+            else if(type != c.getClass()) mixed = true;
+            if(mixed) return false;
+            if(c instanceof IntegerConstant){
+                int value = ((IntegerConstant) c).getValue();
+                if(op == ComparisonOperator.GT || op == ComparisonOperator.LT){
+                    boolean greater = op == ComparisonOperator.GT;
+                    if(value == (greater ? Integer.MAX_VALUE : Integer.MIN_VALUE)){
+                        contradiction = true;
+                        return false;
+                    }
+                    c = new IntegerConstant(greater ? value + 1 : value - 1);
+                    op = greater ? ComparisonOperator.GEQ : ComparisonOperator.LEQ;
+                }
+            }
+            switch (op){
+                case EQ:
+                    if(eq == null){
+                        eq = c;
+                        return true;
+                    }
+                    if(compare(eq, c) != 0) contradiction = true;
+                    return false;
+                case NEQ:
+                    if(neq.contains(c)) return false;
+                    neq.add(c);
+                    return true;
+                case GT:
+                case GEQ:
+                    int lowerCompare = lower == null ? 1 : compare(c, lower);
+                    if(lowerCompare < 0 || (lowerCompare == 0 && (lowerStrict || op == ComparisonOperator.GEQ))) return false;
+                    lower = c;
+                    lowerStrict = op == ComparisonOperator.GT;
+                    return true;
+                default:
+                    int upperCompare = upper == null ? -1 : compare(c, upper);
+                    if(upperCompare > 0 || (upperCompare == 0 && (upperStrict || op == ComparisonOperator.LEQ))) return false;
+                    upper = c;
+                    upperStrict = op == ComparisonOperator.LT;
+                    return true;
+            }
+        }
+
+        /**
+         * This method is used to check whether some value lies within the bounds.
+         * @return boolean flag of check result
+         */
+        private boolean isSatisfiable(){
+            if(contradiction) return false;
+            if(mixed) return true;
+            if(eq != null){
+                if(lower != null && !compareOperate(eq, lower, lowerStrict ? ComparisonOperator.GT : ComparisonOperator.GEQ)) return false;
+                if(upper != null && !compareOperate(eq, upper, upperStrict ? ComparisonOperator.LT : ComparisonOperator.LEQ)) return false;
+                return !neq.contains(eq);
+            }
+            if(lower != null && upper != null){
+                int c = compare(lower, upper);
+                return c < 0 || (c == 0 && !lowerStrict && !upperStrict);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param cas ComparisonAtoms of the query, after implicit conditions were made explicit
+     */
+    public PredicateInference(List<ComparisonAtom> cas){
+        this.cas = cas;
+    }
+
+    /**
+     * This method is used to infer the ComparisonAtoms implied by the given ones.
+     * The comparisons between constants, the equalities and the other comparisons
+     * between variables are kept once, the comparisons of variables with constants
+     * are replaced by the bounds of their classes, and the implied equalities
+     * between the variables of a class are added.
+     * @return the new ComparisonAtoms, or null if they cannot all hold
+     */
+    public List<ComparisonAtom> infer(){
+        for (ComparisonAtom ca: cas){
+            addVariable(ca.getTerm1());
+            addVariable(ca.getTerm2());
+            if(HashJoinOperator.isEquiJoin(ca)) union(ca.getTerm1().toString(), ca.getTerm2().toString());
+        }
+        List<ComparisonAtom> inequalities = new ArrayList<>();
+        for (ComparisonAtom ca: cas){
+            boolean variable1 = ca.getTerm1() instanceof Variable;
+            boolean variable2 = ca.getTerm2() instanceof Variable;
+            if(variable1 && !variable2){
+                getBounds(ca.getTerm1()).add(ca.getOp(), (Constant) ca.getTerm2());
+            }else if(!variable1 && variable2){
+                getBounds(ca.getTerm2()).add(PredicateCompiler.flip(ca.getOp()), (Constant) ca.getTerm1());
+            }else if(variable1 && ca.getOp() != ComparisonOperator.EQ){
+                inequalities.add(ca);
+            }
+        }
+
+        // propagate the bounds along x < y, x <= y, each round only tightens them
+        for (int round=0; round<=inequalities.size(); round++){
+            boolean changed = false;
+            for (ComparisonAtom ca: inequalities){
+                ComparisonOperator op = ca.getOp();
+                if(op == ComparisonOperator.NEQ) continue;
+                boolean ascending = op == ComparisonOperator.LT || op == ComparisonOperator.LEQ;
+                Bounds low = getBounds(ascending ? ca.getTerm1() : ca.getTerm2());
+                Bounds high = getBounds(ascending ? ca.getTerm2() : ca.getTerm1());
+                if(low == high || low.mixed || high.mixed) continue;
+                if(low.type != null && high.type != null && low.type != high.type) continue;
+                boolean strict = op == ComparisonOperator.LT || op == ComparisonOperator.GT;
+                Constant lower = low.eq != null ? low.eq : low.lower;
+                if(lower != null){
+                    changed |= high.add(strict || (low.eq == null && low.lowerStrict) ? ComparisonOperator.GT : ComparisonOperator.GEQ, lower);
+                }
+                Constant upper = high.eq != null ? high.eq : high.upper;
+                if(upper != null){
+                    changed |= low.add(strict || (high.eq == null && high.upperStrict) ? ComparisonOperator.LT : ComparisonOperator.LEQ, upper);
+                }
+            }
+            if(!changed) break;
+        }
+        for (Bounds b: bounds.values()){
+            if(!b.isSatisfiable()) return null;
+        }
+
+        List<ComparisonAtom> result = new ArrayList<>();
+        for (ComparisonAtom ca: cas){
+            if(contains(result, ca)) continue;
+            boolean variable1 = ca.getTerm1() instanceof Variable;
+            boolean variable2 = ca.getTerm2() instanceof Variable;
+            if(variable1 && variable2 && ca.getOp() != ComparisonOperator.EQ){
+                Boolean value = evaluate(ca);
+                if(value == null) result.add(ca);
+                else if(!value) return null;
+            }else if(variable1 != variable2){
+                // comparisons with constants of a class compared with both types are kept as they are
+                if(getBounds(variable1 ? ca.getTerm1() : ca.getTerm2()).mixed) result.add(ca);
+            }else {
+                result.add(ca);
+            }
+        }
+        for (Variable v: variables.values()){
+            Bounds b = getBounds(v);
+            if(b.mixed) continue;
+            if(b.eq != null){
+                result.add(new ComparisonAtom(v, b.eq, ComparisonOperator.EQ));
+                continue;
+            }
+            if(b.lower != null) result.add(new ComparisonAtom(v, b.lower, b.lowerStrict ? ComparisonOperator.GT : ComparisonOperator.GEQ));
+            if(b.upper != null) result.add(new ComparisonAtom(v, b.upper, b.upperStrict ? ComparisonOperator.LT : ComparisonOperator.LEQ));
+            for (Constant c: b.neq){
+                // values outside the bounds are excluded anyway
+                if(b.lower != null && !compareOperate(c, b.lower, b.lowerStrict ? ComparisonOperator.GT : ComparisonOperator.GEQ)) continue;
+                if(b.upper != null && !compareOperate(c, b.upper, b.upperStrict ? ComparisonOperator.LT : ComparisonOperator.LEQ)) continue;
+                result.add(new ComparisonAtom(v, c, ComparisonOperator.NEQ));
+            }
+        }
+        List<Variable> list = new ArrayList<>(variables.values());
+        for (int i=0; i<list.size(); i++){
+            for (int j=i+1; j<list.size(); j++){
+                Variable v1 = list.get(i);
+                Variable v2 = list.get(j);
+                if(find(v1.getName()).equals(find(v2.getName())) && !contains(result, new ComparisonAtom(v1, v2, ComparisonOperator.EQ))){
+                    result.add(new ComparisonAtom(v1, v2, ComparisonOperator.EQ));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This method is used to decide a comparison of two variables from the bounds of their classes.
+     * @param ca a comparison of two variables other than equality
+     * @return the value of the comparison for all tuples, or null if it depends on the tuple
+     */
+    private Boolean evaluate(ComparisonAtom ca){
+        Bounds b1 = getBounds(ca.getTerm1());
+        Bounds b2 = getBounds(ca.getTerm2());
+        if(b1 == b2){
+            ComparisonOperator op = ca.getOp();
+            return op == ComparisonOperator.LEQ || op == ComparisonOperator.GEQ;
+        }
+        if(b1.mixed || b2.mixed || b1.eq == null || b2.eq == null || b1.type != b2.type) return null;
+        return compareOperate(b1.eq, b2.eq, ca.getOp());
+    }
+
+    /**
+     * This method is used to check whether the list holds the same comparison,
+     * an equality with its terms in either order.
+     */
+    private static boolean contains(List<ComparisonAtom> cas, ComparisonAtom ca){
+        for (ComparisonAtom other: cas){
+            if(other.getOp() != ca.getOp()) continue;
+            if(other.getTerm1().equals(ca.getTerm1()) && other.getTerm2().equals(ca.getTerm2())) return true;
+            if(ca.getOp() == ComparisonOperator.EQ && other.getTerm1().equals(ca.getTerm2()) && other.getTerm2().equals(ca.getTerm1())) return true;
+        }
+        return false;
+    }
+
+    private static int compare(Constant c1, Constant c2){
+        if(c1 instanceof IntegerConstant) return ((IntegerConstant) c1).getValue().compareTo(((IntegerConstant) c2).getValue());
+        return ((StringConstant) c1).getValue().compareTo(((StringConstant) c2).getValue());
+    }
+
+    private void addVariable(Term term){
+        if(!(term instanceof Variable)) return;
+        String name = term.toString();
+        variables.putIfAbsent(name, (Variable) term);
+        parents.putIfAbsent(name, name);
+    }
+
+    private String find(String name){
+        String parent = parents.get(name);
+        if(parent.equals(name)) return name;
+        String root = find(parent);
+        parents.put(name, root);
+        return root;
+    }
+
+    private void union(String name1, String name2){
+        String root1 = find(name1);
+        String root2 = find(name2);
+        if(!root1.equals(root2)) parents.put(root1, root2);
+    }
+
+    private Bounds getBounds(Term variable){
+        return bounds.computeIfAbsent(find(variable.toString()), root -> new Bounds());
+    }
+}
@@ -0,0 +1,247 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class is to generate random conjunctive queries over the relations
+ * of a schema file, written in the query syntax of the project. The
+ * relational atoms are joined by shared variables in one of three shapes:
+ * a chain, where every atom joins the next one, a star, where every atom
+ * joins the first one, or a cycle, which is a chain whose last atom joins
+ * the first one on another attribute. Atoms are filtered by comparisons
+ * with constants of the domains the DataGenerator draws from, and the
+ * head either projects some variables or sums a variable, grouped by
+ * another one. The queries only depend on the seed and the settings.
+ * @see DataGenerator
+ */
+public class QueryGenerator {
+
+    // system properties of the settings, besides the seed and domains of the DataGenerator
+    public static final String SHAPE_PROPERTY = "minibase.generator.shape";
+    public static final String ATOMS_PROPERTY = "minibase.generator.atoms";
+    public static final String SUM_PROPERTY = "minibase.generator.sum";
+    public static final String SELECT_PROPERTY = "minibase.generator.select";
+    public static final int DEFAULT_KEYS = 1000;
+
+    public enum Shape { CHAIN, STAR, CYCLE, MIXED }
+
+    private static final ComparisonOperator[] INT_OPERATORS = {ComparisonOperator.EQ, ComparisonOperator.LT,
+            ComparisonOperator.LEQ, ComparisonOperator.GT, ComparisonOperator.GEQ};
+    private static final ComparisonOperator[] STRING_OPERATORS = {ComparisonOperator.EQ, ComparisonOperator.NEQ};
+
+    private List<String> names;
+    private List<Schema> schemas;
+    private Random random;
+    private Shape shape;
+    private int atoms;
+    private double sumProbability;
+    private double selectProbability;
+    private int keys;
+    private int strings;
+    // number of variables of the query being generated
+    private int variableCount;
+
+    /**
+     * An atom being generated, with the positions already used by its joins.
+     */
+    private static class AtomBuilder {
+        private String name;
+        private Schema schema;
+        private Term[] terms;
+        private boolean[] joined;
+
+        private AtomBuilder(String name, Schema schema){
+            this.name = name;
+            this.schema = schema;
+            this.terms = new Term[schema.getTypes().size()];
+            this.joined = new boolean[terms.length];
+        }
+    }
+
+    /**
+     * @param schemas relations to generate queries over, by name
+     * @param seed seed of the random queries
+     * @param shape shape of the joins, or MIXED to pick one for every query
+     * @param atoms number of relational atoms of every query
+     * @param sumProbability probability of a query to have a SUM in its head
+     * @param selectProbability probability of an atom to be compared with a constant
+     * @param keys number of distinct values of an int column of the data
+     * @param strings number of distinct values of a string column of the data
+     */
+    public QueryGenerator(Map<String, Schema> schemas, long seed, Shape shape, int atoms,
+                          double sumProbability, double selectProbability, int keys, int strings){
+        if(schemas.isEmpty() || atoms < 1 || keys < 1 || strings < 1){
+            throw new IllegalArgumentException("Invalid generator settings");
+        }
+        this.names = new ArrayList<>(schemas.keySet());
+        this.schemas = new ArrayList<>(schemas.values());
+        this.random = new Random(seed);
+        this.shape = shape;
+        this.atoms = atoms;
+        this.sumProbability = sumProbability;
+        this.selectProbability = selectProbability;
+        this.keys = keys;
+        this.strings = strings;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: QueryGenerator database_dir count output_dir");
+            return;
+        }
+        String dbRoot = args[0];
+        int count = Integer.parseInt(args[1]);
+        File outputDir = new File(args[2]);
+        QueryGenerator generator = new QueryGenerator(
+                Catalog.readSchemas(dbRoot),
+                Long.getLong(DataGenerator.SEED_PROPERTY, DataGenerator.DEFAULT_SEED),
+                Shape.valueOf(System.getProperty(SHAPE_PROPERTY, "mixed").toUpperCase()),
+                Integer.getInteger(ATOMS_PROPERTY, 3),
+                Double.parseDouble(System.getProperty(SUM_PROPERTY, "0.3")),
+                Double.parseDouble(System.getProperty(SELECT_PROPERTY, "0.5")),
+                Integer.getInteger(DataGenerator.KEYS_PROPERTY, DEFAULT_KEYS),
+                Integer.getInteger(DataGenerator.STRINGS_PROPERTY, DataGenerator.DEFAULT_STRINGS));
+        outputDir.mkdirs();
+        for (int i=1; i<=count; i++){
+            File file = new File(outputDir, "query" + i + ".txt");
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, false))) {
+                writer.write(generator.generate().toString());
+            }
+            System.out.println(file);
+        }
+    }
+
+    /**
+     * This method is used to generate the next query.
+     * @return the query
+     */
+    public Query generate(){
+        Shape queryShape = shape;
+        if(queryShape == Shape.MIXED) queryShape = Shape.values()[random.nextInt(Shape.MIXED.ordinal())];
+
+        List<AtomBuilder> builders = null;
+        // a cycle needs atoms with two attributes of a type, retried with other relations before falling back to a chain
+        for (int attempt=0; attempt<10 && builders == null; attempt++){
+            builders = join(queryShape);
+        }
+        if(builders == null) builders = join(Shape.CHAIN);
+
+        List<Atom> body = new ArrayList<>();
+        List<Variable> variables = new ArrayList<>();
+        List<Boolean> isInt = new ArrayList<>();
+        for (AtomBuilder builder: builders){
+            for (int i=0; i<builder.terms.length; i++){
+                if(builder.terms[i] == null) builder.terms[i] = newVariable();
+                if(!variables.contains(builder.terms[i])){
+                    variables.add((Variable) builder.terms[i]);
+                    isInt.add(builder.schema.getType(i).equals("int"));
+                }
+            }
+            body.add(new RelationalAtom(builder.name, new ArrayList<>(Arrays.asList(builder.terms))));
+        }
+        for (AtomBuilder builder: builders){
+            if(random.nextDouble() >= selectProbability) continue;
+            int position = random.nextInt(builder.terms.length);
+            body.add(select(builder.terms[position], builder.schema.getType(position).equals("int")));
+        }
+        return new Query(head(variables, isInt), body);
+    }
+
+    /**
+     * This method is used to pick the relations of the atoms and join them in the given shape.
+     * @return the atoms with the shared variables of their joins set, or null if a cycle cannot be closed
+     */
+    private List<AtomBuilder> join(Shape queryShape){
+        variableCount = 0;
+        int count = queryShape == Shape.CYCLE ? Math.max(atoms, 3) : atoms;
+        List<AtomBuilder> builders = new ArrayList<>();
+        for (int i=0; i<count; i++){
+            int relation = random.nextInt(names.size());
+            builders.add(new AtomBuilder(names.get(relation), schemas.get(relation)));
+        }
+        for (int i=1; i<count; i++){
+            AtomBuilder left = builders.get(queryShape == Shape.STAR ? 0 : i - 1);
+            // the center of a star joins on any of its attributes, again if it has fewer than the atoms;
+            // atoms of a chain or star without an attribute of a common type are left as a cross product
+            if(!share(left, builders.get(i), queryShape == Shape.STAR) && queryShape == Shape.CYCLE) return null;
+        }
+        if(queryShape == Shape.CYCLE && !share(builders.get(count - 1), builders.get(0), false)) return null;
+        return builders;
+    }
+
+    /**
+     * This method is used to join two atoms on an attribute of each of the same type,
+     * by giving them the same variable. Attributes used by other joins are not picked.
+     * @param reuseLeft whether an attribute of the left atom used by another join can be picked
+     * @return whether a pair of attributes was found
+     */
+    private boolean share(AtomBuilder left, AtomBuilder right, boolean reuseLeft){
+        List<int[]> pairs = new ArrayList<>();
+        for (int i=0; i<left.terms.length; i++){
+            if(left.joined[i] && !reuseLeft) continue;
+            for (int j=0; j<right.terms.length; j++){
+                if(right.joined[j] || !left.schema.getType(i).equals(right.schema.getType(j))) continue;
+                pairs.add(new int[]{i, j});
+            }
+        }
+        if(pairs.isEmpty()) return false;
+        int[] pair = pairs.get(random.nextInt(pairs.size()));
+        if(left.terms[pair[0]] == null) left.terms[pair[0]] = newVariable();
+        right.terms[pair[1]] = left.terms[pair[0]];
+        left.joined[pair[0]] = true;
+        right.joined[pair[1]] = true;
+        return true;
+    }
+
+    /**
+     * This method is used to compare a variable with a random constant of its domain.
+     */
+    private ComparisonAtom select(Term variable, boolean isInt){
+        if(isInt){
+            ComparisonOperator op = INT_OPERATORS[random.nextInt(INT_OPERATORS.length)];
+            return new ComparisonAtom(variable, new IntegerConstant(random.nextInt(keys)), op);
+        }
+        ComparisonOperator op = STRING_OPERATORS[random.nextInt(STRING_OPERATORS.length)];
+        return new ComparisonAtom(variable, new StringConstant(DataGenerator.word(random.nextInt(strings))), op);
+    }
+
+    /**
+     * This method is used to create the head, which sums an int variable grouped by
+     * another variable, or projects from one to three variables.
+     */
+    private Head head(List<Variable> variables, List<Boolean> isInt){
+        if(random.nextDouble() < sumProbability){
+            List<Variable> groupBy = new ArrayList<>();
+            if(random.nextBoolean()) groupBy.add(variables.get(random.nextInt(variables.size())));
+            List<Term> ints = new ArrayList<>();
+            for (int i=0; i<variables.size(); i++){
+                if(isInt.get(i) && !groupBy.contains(variables.get(i))) ints.add(variables.get(i));
+            }
+            List<Term> product = new ArrayList<>();
+            product.add(ints.isEmpty() ? new IntegerConstant(1) : ints.get(random.nextInt(ints.size())));
+            return new Head("Q", groupBy, new SumAggregate(product));
+        }
+        List<Variable> remaining = new ArrayList<>(variables);
+        List<Variable> projected = new ArrayList<>();
+        int count = 1 + random.nextInt(Math.min(3, remaining.size()));
+        for (int i=0; i<count; i++) projected.add(remaining.remove(random.nextInt(remaining.size())));
+        return new Head("Q", projected, null);
+    }
+
+    /**
+     * This method is used to name the next variable in lower case letters, as the grammar requires.
+     */
+    private Variable newVariable(){
+        return new Variable(DataGenerator.word(variableCount++));
+    }
+}
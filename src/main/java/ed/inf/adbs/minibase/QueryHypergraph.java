@@ -0,0 +1,202 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is to create QueryHypergraph instance to describe the
+ * joins of a query. The Interpreter gives every occurrence of a
+ * shared variable a new name with an equality (e.g. x = a), so the
+ * variables of the relational atoms are first grouped into classes
+ * of variables joined by such equalities. The classes are the
+ * vertices of the hypergraph and every relational atom is the edge
+ * of the classes of its variables.
+ */
+public class QueryHypergraph {
+
+    private List<RelationalAtom> ras;
+    // variable name to its class
+    private Map<String, Integer> classes;
+    private int classCount;
+    // classes of the variables of every atom
+    private List<Set<Integer>> edges;
+
+    /**
+     * @param ras relational atoms of the query
+     * @param cas comparison atoms of the query
+     */
+    public QueryHypergraph(List<RelationalAtom> ras, List<ComparisonAtom> cas){
+        this.ras = ras;
+        Map<String, Integer> index = new HashMap<>();
+        for (RelationalAtom ra: ras){
+            for (Term term: ra.getTerms()){
+                if(term instanceof Variable) index.putIfAbsent(term.toString(), index.size());
+            }
+        }
+        // union-find over the variables, joined by equalities of two variables
+        int[] parents = new int[index.size()];
+        for (int i=0; i<parents.length; i++) parents[i] = i;
+        for (ComparisonAtom ca: cas){
+            if(!isEquality(ca)) continue;
+            Integer v1 = index.get(ca.getTerm1().toString());
+            Integer v2 = index.get(ca.getTerm2().toString());
+            if(v1 == null || v2 == null) continue;
+            parents[find(parents, v1)] = find(parents, v2);
+        }
+        Map<Integer, Integer> roots = new HashMap<>();
+        this.classes = new HashMap<>();
+        for (Map.Entry<String, Integer> entry: index.entrySet()){
+            int root = find(parents, entry.getValue());
+            roots.putIfAbsent(root, roots.size());
+            classes.put(entry.getKey(), roots.get(root));
+        }
+        this.classCount = roots.size();
+        this.edges = new ArrayList<>();
+        for (RelationalAtom ra: ras){
+            Set<Integer> edge = new LinkedHashSet<>();
+            for (Term term: ra.getTerms()){
+                if(term instanceof Variable) edge.add(classes.get(term.toString()));
+            }
+            edges.add(edge);
+        }
+    }
+
+    private static int find(int[] parents, int v){
+        while (parents[v] != v){
+            parents[v] = parents[parents[v]];
+            v = parents[v];
+        }
+        return v;
+    }
+
+    private static boolean isEquality(ComparisonAtom ca){
+        return ca.getOp() == ComparisonOperator.EQ && ca.getTerm1() instanceof Variable && ca.getTerm2() instanceof Variable;
+    }
+
+    /**
+     * This method is used to check whether the given ComparisonAtom equates two
+     * variables of the same class, i.e. it is implied by the classes.
+     * @param ca ComparisonAtom to be checked
+     * @return boolean flag of check result
+     */
+    public boolean isJoinEquality(ComparisonAtom ca){
+        return isEquality(ca) && getClass(ca.getTerm1()) >= 0 && getClass(ca.getTerm1()) == getClass(ca.getTerm2());
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * @param term a term of the query
+     * @return the class of the variable, or -1 if it is not a variable of a relational atom
+     */
+    public int getClass(Term term){
+        Integer c = term instanceof Variable ? classes.get(term.toString()) : null;
+        return c == null ? -1 : c;
+    }
+
+    /**
+     * @param atom index of a relational atom
+     * @return the classes of its variables
+     */
+    public Set<Integer> getEdge(int atom){
+        return edges.get(atom);
+    }
+
+    /**
+     * This method is used to check whether the hypergraph is acyclic by the GYO
+     * reduction: a class in a single edge is removed from it, and an edge contained
+     * in another edge is removed, until neither applies. The hypergraph is acyclic
+     * if at most one edge is left.
+     * @return boolean flag of check result
+     */
+    public boolean isAcyclic(){
+        return reduce(new int[edges.size()], new ArrayList<>());
+    }
+
+    /**
+     * This method is used to get a join tree of an acyclic hypergraph from the GYO
+     * reduction: an edge removed because it is contained in another edge becomes a
+     * child of that edge. Every atom shares with its parent all the classes it shares
+     * with the atoms that are not below it.
+     * @param removed list filled with the atoms in the order they are removed, so
+     *                every atom comes after its children, and the root last
+     * @return parent atom of every atom, -1 for the root, or null if the hypergraph is cyclic
+     */
+    public int[] joinTree(List<Integer> removed){
+        int[] parents = new int[edges.size()];
+        return reduce(parents, removed) ? parents : null;
+    }
+
+    private boolean reduce(int[] parents, List<Integer> removed){
+        List<Set<Integer>> remaining = new ArrayList<>();
+        List<Integer> atoms = new ArrayList<>();
+        for (int i=0; i<edges.size(); i++){
+            remaining.add(new LinkedHashSet<>(edges.get(i)));
+            atoms.add(i);
+        }
+        boolean changed = true;
+        while (changed && remaining.size() > 1){
+            changed = false;
+            int[] degrees = new int[classCount];
+            for (Set<Integer> edge: remaining){
+                for (int c: edge) degrees[c]++;
+            }
+            for (Set<Integer> edge: remaining){
+                changed |= edge.removeIf(c -> degrees[c] == 1);
+            }
+            for (int i=0; i<remaining.size(); i++){
+                for (int j=0; j<remaining.size(); j++){
+                    if(i != j && remaining.get(j).containsAll(remaining.get(i))){
+                        parents[atoms.get(i)] = atoms.get(j);
+                        removed.add(atoms.get(i));
+                        remaining.remove(i);
+                        atoms.remove(i);
+                        changed = true;
+                        i--;
+                        break;
+                    }
+                }
+            }
+        }
+        if(remaining.size() > 1) return false;
+        for (int atom: atoms){
+            parents[atom] = -1;
+            removed.add(atom);
+        }
+        return true;
+    }
+
+    /**
+     * This method is used to choose the order in which a multiway join binds the
+     * classes: classes shared by more atoms come first, as they restrict the most
+     * atoms, and among them the ones with fewer distinct values.
+     * @param distinct estimated number of distinct values of every class
+     * @return the classes in binding order
+     */
+    public int[] variableOrder(long[] distinct){
+        Integer[] order = new Integer[classCount];
+        int[] degrees = new int[classCount];
+        for (Set<Integer> edge: edges){
+            for (int c: edge) degrees[c]++;
+        }
+        for (int c=0; c<classCount; c++) order[c] = c;
+        Arrays.sort(order, (c1, c2) -> degrees[c1] != degrees[c2]
+                ? Integer.compare(degrees[c2], degrees[c1]) : Long.compare(distinct[c1], distinct[c2]));
+        int[] result = new int[classCount];
+        for (int i=0; i<classCount; i++) result[i] = order[i];
+        return result;
+    }
+
+    public List<RelationalAtom> getRelationalAtoms() {
+        return ras;
+    }
+}
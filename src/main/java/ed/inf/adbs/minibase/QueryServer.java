@@ -0,0 +1,205 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Atom;
+import ed.inf.adbs.minibase.base.Query;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.Schema;
+import ed.inf.adbs.minibase.parser.QueryParser;
+
+import java.io.BufferedReader;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class is to run Minibase as a long-running query server over one
+ * database, so that queries do not pay for starting a JVM and reading the
+ * data again. Between queries the process keeps the parsed schemas, the
+ * relations of the RelationCache, the statistics of the StatisticsStore,
+ * its JIT-compiled code, and the interpreted queries by their text, so a
+ * repeated query is neither parsed nor rewritten again. The plan of a
+ * query is generated for every run from the current statistics, columnar
+ * files and indexes, so it follows changes of the data. Queries are read
+ * one per line from stdin, or from connections to a local port, and their
+ * tuples are streamed back in the format of the output file, followed by
+ * a line starting with # that reports the time or the error. A query that
+ * cannot be parsed, or reads a relation missing from the schema file or
+ * with another number of attributes, is reported without being run. Queries run
+ * one at a time, as the catalog is shared by the whole process.
+ */
+public class QueryServer {
+
+    // system property of the number of interpreted queries kept
+    public static final String PLAN_CACHE_PROPERTY = "minibase.server.plans";
+    public static final int DEFAULT_PLAN_CACHE = 256;
+
+    private String dbRoot;
+    // interpreted queries by their text, in least recently used order
+    private Map<String, CachedQuery> plans;
+
+    /**
+     * An interpreted query, with the schemas it was interpreted with.
+     */
+    private static class CachedQuery {
+        private Interpreter interpreter;
+        private Map<String, Schema> schemas;
+
+        private CachedQuery(Interpreter interpreter, Map<String, Schema> schemas){
+            this.interpreter = interpreter;
+            this.schemas = schemas;
+        }
+    }
+
+    /**
+     * @param dbRoot database directory
+     * @param capacity number of interpreted queries kept
+     */
+    public QueryServer(String dbRoot, int capacity){
+        this.dbRoot = dbRoot;
+        this.plans = new LinkedHashMap<String, CachedQuery>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedQuery> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 2) {
+            System.err.println("Usage: QueryServer database_dir [port]");
+            return;
+        }
+        QueryServer server = new QueryServer(args[0], Integer.getInteger(PLAN_CACHE_PROPERTY, DEFAULT_PLAN_CACHE));
+        if(args.length == 1) server.serve(System.in, System.out);
+        else server.listen(Integer.parseInt(args[1]));
+    }
+
+    /**
+     * This method is used to accept connections on a port of the loopback
+     * address, serving every connection on its own thread until the process ends.
+     * @param port port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public void listen(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println("Listening on " + serverSocket.getLocalSocketAddress());
+            while (true){
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> {
+                    try (Socket client = socket) {
+                        serve(client.getInputStream(), client.getOutputStream());
+                    } catch (IOException e) {
+                        System.err.println("Connection closed: " + e.getMessage());
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * This method is used to answer the queries read from the input, one per
+     * line, until the input ends. Empty lines are skipped.
+     * @param in input of the queries
+     * @param out output the results are written to
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null){
+            line = line.trim();
+            if(line.isEmpty()) continue;
+            execute(line, out);
+        }
+    }
+
+    /**
+     * This method is used to evaluate one query, writing its tuples as they are
+     * produced, followed by "# ok" and the time in ms, or "# error" and the error.
+     * @param text the query
+     * @param out output the result is written to, which is left open
+     * @throws IOException if the output cannot be written
+     */
+    public void execute(String text, OutputStream out) throws IOException {
+        // the result sink is closed after every query, the output stays open for the next one
+        OutputStream unclosed = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        String status;
+        synchronized (this) {
+            long start = System.nanoTime();
+            new Catalog(dbRoot, null, null, new ResultSink(unclosed));
+            try {
+                getInterpreter(text).dump();
+                status = String.format(Locale.ROOT, "# ok %.3f ms", (System.nanoTime() - start) / 1e6);
+            } catch (IllegalArgumentException e) {
+                status = "# error " + (e.getMessage() == null ? String.valueOf(e) : e.getMessage()).replaceAll("\\s+", " ");
+            } catch (RuntimeException e) {
+                status = "# error " + String.valueOf(e).replaceAll("\\s+", " ");
+            } finally {
+                Catalog.getInstance().closeOutputFile();
+            }
+        }
+        out.write((status + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * This method is used to get the interpreted query from the cache, or to
+     * interpret it if it is not cached or the schema file has changed since.
+     * @param text the query
+     * @return the interpreter of the query
+     * @throws IllegalArgumentException if the query cannot be parsed or reads an unknown relation
+     */
+    private Interpreter getInterpreter(String text){
+        Map<String, Schema> schemas = Catalog.getInstance().getSchemas();
+        CachedQuery cached = plans.get(text);
+        if(cached == null || cached.schemas != schemas){
+            Query query = QueryParser.parseStrict(text);
+            checkRelations(query, schemas);
+            cached = new CachedQuery(new Interpreter(query), schemas);
+            plans.put(text, cached);
+        }
+        return cached.interpreter;
+    }
+
+    /**
+     * This method is used to check that every relational atom of the query reads
+     * a relation of the schema file, with as many terms as the relation has attributes.
+     * @param query the parsed query
+     * @param schemas schemas of the database
+     * @throws IllegalArgumentException describing the first atom which does not match
+     */
+    private static void checkRelations(Query query, Map<String, Schema> schemas){
+        for (Atom atom: query.getBody()){
+            if(!(atom instanceof RelationalAtom)) continue;
+            RelationalAtom ra = (RelationalAtom) atom;
+            Schema schema = schemas.get(ra.getName());
+            if(schema == null) throw new IllegalArgumentException("Unknown relation " + ra.getName() + " in " + ra);
+            int size = schema.getTypes().size();
+            if(size != ra.getTerms().size()){
+                throw new IllegalArgumentException("Relation " + ra.getName() + " has " + size + " attributes, not "
+                        + ra.getTerms().size() + " as in " + ra);
+            }
+        }
+    }
+}
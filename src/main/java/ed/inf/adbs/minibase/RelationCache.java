@@ -0,0 +1,140 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.CsvLoader;
+import ed.inf.adbs.minibase.base.Relation;
+import ed.inf.adbs.minibase.base.Schema;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * RelationCache keeps parsed relations in memory, so that a csv file is
+ * parsed once and then scanned by index, designed in singleton pattern.
+ * Entries are evicted in least recently used order once the estimated
+ * size of all cached relations exceeds the memory budget, and reloaded
+ * when the modification time or length of their file changes, or when
+ * they are read with another schema, e.g. after schema.txt was changed.
+ */
+public class RelationCache {
+
+    // system property to configure the memory budget in bytes
+    public static final String BUDGET_PROPERTY = "minibase.cache.bytes";
+    public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+    private static RelationCache instance;
+
+    private long budget;
+    private long usedBytes;
+    // access ordered, so iteration starts from the least recently used entry
+    private LinkedHashMap<String, Entry> entries;
+
+    /**
+     * A cached relation with the file status and the schema it was loaded with.
+     */
+    private static class Entry {
+        private Relation relation;
+        private Schema schema;
+        private long lastModified;
+        private long length;
+        private long bytes;
+
+        private Entry(Relation relation, Schema schema, long lastModified, long length) {
+            this.relation = relation;
+            this.schema = new Schema(new ArrayList<>(schema.getTypes()));
+            this.lastModified = lastModified;
+            this.length = length;
+            this.bytes = relation.estimateBytes();
+        }
+    }
+
+    public RelationCache(long budget){
+        this.budget = budget;
+        this.usedBytes = 0;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public static synchronized RelationCache getInstance(){
+        if(instance == null) instance = new RelationCache(Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+        return instance;
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        evict();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * This method is used to get the relation stored in the given csv file.
+     * If the file has not been cached, or has changed since it was cached,
+     * or was cached with another schema, it is parsed again. A relation larger than the whole budget is
+     * returned without being cached.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @param filePath path of the csv file
+     * @return the parsed relation
+     */
+    public synchronized Relation get(String name, Schema schema, String filePath){
+        File file = new File(filePath);
+        String key = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        Entry entry = entries.get(key);
+        if(entry != null){
+            if(entry.lastModified == lastModified && entry.length == length && entry.schema.equals(schema)) return entry.relation;
+            remove(key);
+        }
+
+        Relation relation;
+        try {
+            relation = CsvLoader.load(name, schema, file, ParallelExecutor.getDefaultParallelism());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        entry = new Entry(relation, schema, lastModified, length);
+        if(entry.bytes <= budget){
+            entries.put(key, entry);
+            usedBytes += entry.bytes;
+            evict();
+        }
+        return relation;
+    }
+
+    /**
+     * This method is used to drop all cached relations.
+     */
+    public synchronized void clear(){
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private void remove(String key){
+        Entry entry = entries.remove(key);
+        if(entry != null) usedBytes -= entry.bytes;
+    }
+
+    /**
+     * This method is used to evict least recently used relations
+     * until the cached relations fit in the budget.
+     */
+    private void evict(){
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes > budget && it.hasNext()){
+            usedBytes -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+}
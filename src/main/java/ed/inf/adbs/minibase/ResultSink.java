@@ -0,0 +1,113 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ResultSink keeps a single buffered writer open for the lifetime of a
+ * query, so that result tuples are written in large chunks instead of
+ * opening and closing the output file for every tuple.
+ */
+public class ResultSink implements Closeable {
+
+    // size of the character buffer, flushed to the underlying stream when full
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    private BufferedWriter writer;
+
+    public ResultSink(Writer writer){
+        this.writer = new BufferedWriter(writer, BUFFER_SIZE);
+    }
+
+    public ResultSink(OutputStream out){
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method is used to create a sink over the given file,
+     * truncating the file if it already exists.
+     * @param outputFile path of the output file
+     * @return a sink writing into the file
+     */
+    public static ResultSink toFile(String outputFile){
+        try {
+            return new ResultSink(new FileOutputStream(outputFile, false));
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write the tuple as one line and connect values with ", "
+     * String values are written within quotes, as in the csv files.
+     * @param tuple tuple to be written
+     */
+    public void write(Tuple tuple){
+        try {
+            TupleLayout layout = tuple.getLayout();
+            for (int i=0; i<tuple.size(); i++){
+                if(i > 0) writer.write(", ");
+                if(layout.isInt(i)) writer.write(Integer.toString(tuple.getInt(i)));
+                else if(layout.isLong(i)) writer.write(Long.toString(tuple.getLong(i)));
+                else {
+                    writer.write('\'');
+                    writer.write(tuple.getString(i));
+                    writer.write('\'');
+                }
+            }
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the selected rows of the batch, one line per row, reading the
+     * values from the columns of the batch without creating tuples.
+     * @param batch batch to be written
+     */
+    public void write(Batch batch){
+        try {
+            TupleLayout layout = batch.getLayout();
+            int[] selection = batch.getSelection();
+            for (int k=0; k<batch.getSelectedCount(); k++){
+                int row = selection[k];
+                for (int i=0; i<layout.size(); i++){
+                    if(i > 0) writer.write(", ");
+                    if(layout.isInt(i)) writer.write(Integer.toString(batch.getInts(i)[row]));
+                    else if(layout.isLong(i)) writer.write(Long.toString(batch.getLongs(i)[row]));
+                    else {
+                        writer.write('\'');
+                        writer.write(batch.getStrings(i)[row]);
+                        writer.write('\'');
+                    }
+                }
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void flush(){
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close(){
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Exception occurred during writing query back to file");
+            e.printStackTrace();
+        }
+    }
+}
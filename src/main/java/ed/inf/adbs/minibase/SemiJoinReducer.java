@@ -0,0 +1,136 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+import ed.inf.adbs.minibase.operators.MaterializedOperator;
+import ed.inf.adbs.minibase.operators.Operator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * This class is to create SemiJoinReducer instance to remove the
+ * dangling tuples of the inputs of an acyclic query before they are
+ * joined, by the semi-join passes of the Yannakakis algorithm over a
+ * join tree: bottom-up, every atom keeps the tuples matching some
+ * tuple of each child, then top-down, every atom keeps the tuples
+ * matching some tuple of its parent. Afterwards every remaining
+ * tuple takes part in the result, so no join builds a tuple that
+ * is dropped later. A semi-join collects the keys of one side in
+ * a hash set and filters the other side with it. The inputs are
+ * only read when the reduced input of an atom is first asked for,
+ * i.e. when the plan is run.
+ * @see ed.inf.adbs.minibase.operators.SemiJoinReduceOperator
+ */
+public class SemiJoinReducer {
+
+    private QueryHypergraph graph;
+    private int[] parents;
+    private List<Integer> removed;
+    private List<Operator> inputs;
+    // reduced input of every atom, null until the inputs are read
+    private List<MaterializedOperator> reduced;
+
+    /**
+     * @param graph hypergraph of an acyclic query
+     * @param parents parent of every atom in a join tree
+     * @param removed atoms ordered children first
+     * @param inputs input of every relational atom of the hypergraph
+     * @see QueryHypergraph#joinTree(List)
+     */
+    public SemiJoinReducer(QueryHypergraph graph, int[] parents, List<Integer> removed, List<Operator> inputs){
+        this.graph = graph;
+        this.parents = parents;
+        this.removed = removed;
+        this.inputs = inputs;
+    }
+
+    public Operator getInput(int atom){
+        return inputs.get(atom);
+    }
+
+    public synchronized boolean isReduced(){
+        return reduced != null;
+    }
+
+    /**
+     * This method is used to get the reduced input of an atom. All inputs
+     * are read and reduced on the first call.
+     * @param atom index of a relational atom of the hypergraph
+     * @return the reduced input, held in memory
+     */
+    public synchronized MaterializedOperator getReduced(int atom){
+        if(reduced == null) reduced = reduce();
+        return reduced.get(atom);
+    }
+
+    /**
+     * This method is used to read all inputs and reduce them.
+     * @return the reduced inputs, held in memory
+     */
+    private List<MaterializedOperator> reduce(){
+        List<List<Tuple>> tuples = new ArrayList<>();
+        for (Operator input: inputs){
+            List<Tuple> list = new ArrayList<>();
+            input.reset();
+            Tuple tuple;
+            while ((tuple = input.getNextTuple()) != null) list.add(tuple);
+            tuples.add(list);
+        }
+        for (int atom: removed){
+            if(parents[atom] >= 0) semiJoin(tuples, parents[atom], atom);
+        }
+        for (int i=removed.size()-1; i>=0; i--){
+            int atom = removed.get(i);
+            if(parents[atom] >= 0) semiJoin(tuples, atom, parents[atom]);
+        }
+        List<MaterializedOperator> result = new ArrayList<>();
+        for (int i=0; i<inputs.size(); i++){
+            result.add(new MaterializedOperator(tuples.get(i), inputs.get(i).getLayout()));
+        }
+        return result;
+    }
+
+    /**
+     * Keep the tuples of the target atom whose values of the classes shared with the
+     * source atom are found in some tuple of the source atom.
+     */
+    private void semiJoin(List<List<Tuple>> tuples, int target, int source){
+        Set<Integer> shared = new TreeSet<>(graph.getEdge(target));
+        shared.retainAll(graph.getEdge(source));
+        int[] targetSlots = keySlots(inputs.get(target).getLayout(), shared);
+        int[] sourceSlots = keySlots(inputs.get(source).getLayout(), shared);
+        Set<Object> keys = new HashSet<>();
+        for (Tuple tuple: tuples.get(source)) keys.add(key(tuple, sourceSlots));
+        tuples.get(target).removeIf(tuple -> !keys.contains(key(tuple, targetSlots)));
+    }
+
+    /**
+     * @return the first slot of every given class in the layout
+     */
+    private int[] keySlots(TupleLayout layout, Set<Integer> classes){
+        int[] slots = new int[classes.size()];
+        int k = 0;
+        for (int c: classes){
+            List<Term> terms = layout.getTerms();
+            for (int j=0; j<terms.size(); j++){
+                if(graph.getClass(terms.get(j)) == c){
+                    slots[k++] = j;
+                    break;
+                }
+            }
+        }
+        return slots;
+    }
+
+    private static Object key(Tuple tuple, int[] slots){
+        if(slots.length == 1) return tuple.getValue(slots[0]);
+        List<Object> key = new ArrayList<>(slots.length);
+        for (int slot: slots) key.add(tuple.getValue(slot));
+        return key;
+    }
+}
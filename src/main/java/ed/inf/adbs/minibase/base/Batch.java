@@ -0,0 +1,187 @@
+package ed.inf.adbs.minibase.base;
+
+/**
+ * This class holds a batch of rows of one layout in column-oriented
+ * form, used by the batch interface of the operators. Every slot has
+ * one primitive int, long or String array according to its type, and
+ * a selection vector lists the rows which are still in the batch, so
+ * a filter only rewrites the selection vector instead of moving values.
+ * A batch is reused by the operator which fills it, its content is only
+ * valid until the next call to that operator.
+ */
+public class Batch {
+
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    private TupleLayout layout;
+    private int capacity;
+    // number of filled rows
+    private int size;
+    // one array per slot, null if the slot has another type
+    private int[][] ints;
+    private long[][] longs;
+    private String[][] strings;
+    // the selected rows in increasing order, only the first selectedCount are valid
+    private int[] selection;
+    private int selectedCount;
+
+    public Batch(TupleLayout layout, int capacity) {
+        this.layout = layout;
+        this.capacity = capacity;
+        int width = layout.size();
+        this.ints = new int[width][];
+        this.longs = new long[width][];
+        this.strings = new String[width][];
+        for (int i=0; i<width; i++){
+            if(layout.isInt(i)) ints[i] = new int[capacity];
+            else if(layout.isLong(i)) longs[i] = new long[capacity];
+            else strings[i] = new String[capacity];
+        }
+        this.selection = new int[capacity];
+    }
+
+    public Batch(TupleLayout layout) {
+        this(layout, DEFAULT_CAPACITY);
+    }
+
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull(){
+        return size == capacity;
+    }
+
+    /**
+     * This method is used to empty the batch before it is filled again.
+     */
+    public void clear(){
+        size = 0;
+        selectedCount = 0;
+    }
+
+    /**
+     * This method is used to set the number of rows filled directly
+     * into the column arrays, all of which are selected.
+     * @param size number of filled rows
+     */
+    public void selectAll(int size){
+        this.size = size;
+        for (int i=0; i<size; i++) selection[i] = i;
+        this.selectedCount = size;
+    }
+
+    public int[] getSelection() {
+        return selection;
+    }
+
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    public void setSelectedCount(int selectedCount) {
+        this.selectedCount = selectedCount;
+    }
+
+    public int[] getInts(int slot){
+        return ints[slot];
+    }
+
+    public long[] getLongs(int slot){
+        return longs[slot];
+    }
+
+    public String[] getStrings(int slot){
+        return strings[slot];
+    }
+
+    /**
+     * This method is used to add a selected row at the end of the batch,
+     * whose values are then set by the caller.
+     * @return index of the new row
+     */
+    public int addRow(){
+        int row = size++;
+        selection[selectedCount++] = row;
+        return row;
+    }
+
+    /**
+     * This method is used to copy a value of a tuple into a row of this batch.
+     * @param row row of this batch to write
+     * @param slot slot of this batch to write
+     * @param from tuple to read
+     * @param fromSlot slot of the tuple to read
+     */
+    public void copySlot(int row, int slot, Tuple from, int fromSlot){
+        if(ints[slot] != null) ints[slot][row] = from.getInt(fromSlot);
+        else if(longs[slot] != null) longs[slot][row] = from.getLong(fromSlot);
+        else strings[slot][row] = from.getString(fromSlot);
+    }
+
+    /**
+     * This method is used to copy a value of another batch into a row of this batch.
+     * @param row row of this batch to write
+     * @param slot slot of this batch to write
+     * @param from batch to read
+     * @param fromRow row of the batch to read
+     * @param fromSlot slot of the batch to read
+     */
+    public void copySlot(int row, int slot, Batch from, int fromRow, int fromSlot){
+        if(ints[slot] != null) ints[slot][row] = from.ints[fromSlot][fromRow];
+        else if(longs[slot] != null) longs[slot][row] = from.longs[fromSlot][fromRow];
+        else strings[slot][row] = from.strings[fromSlot][fromRow];
+    }
+
+    /**
+     * This method is used to add a tuple as a selected row of this batch.
+     * @param tuple tuple of the layout of this batch
+     */
+    public void append(Tuple tuple){
+        int row = addRow();
+        for (int i=0; i<ints.length; i++){
+            copySlot(row, i, tuple, i);
+        }
+    }
+
+    /**
+     * This method is used to create a tuple holding the given slots of a row.
+     * @param row index of the row
+     * @param target layout of the new tuple
+     * @param slots slot of this batch for every slot of the new tuple
+     * @return a new tuple
+     */
+    public Tuple project(int row, TupleLayout target, int[] slots){
+        Tuple tuple = Tuple.allocate(target);
+        for (int i=0; i<slots.length; i++){
+            int slot = slots[i];
+            if(ints[slot] != null) tuple.setInt(i, ints[slot][row]);
+            else if(longs[slot] != null) tuple.setLong(i, longs[slot][row]);
+            else tuple.setString(i, strings[slot][row]);
+        }
+        return tuple;
+    }
+
+    /**
+     * This method is used to create a tuple of a row of this batch.
+     * @param row index of the row
+     * @return a new tuple of the layout of this batch
+     */
+    public Tuple getTuple(int row){
+        Tuple tuple = Tuple.allocate(layout);
+        for (int i=0; i<ints.length; i++){
+            if(ints[i] != null) tuple.setInt(i, ints[i][row]);
+            else if(longs[i] != null) tuple.setLong(i, longs[i][row]);
+            else tuple.setString(i, strings[i][row]);
+        }
+        return tuple;
+    }
+}
@@ -0,0 +1,121 @@
+package ed.inf.adbs.minibase.base;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This interface gives access to the values of a stored relation by row
+ * and column without creating tuples, so that a scan can test pushed-down
+ * predicates on the stored values and only copy the rows passing them,
+ * and only the attributes still needed above the scan.
+ */
+public interface ColumnSource {
+
+    int size();
+
+    Schema getSchema();
+
+    boolean isInt(int column);
+
+    int getInt(int row, int column);
+
+    String getString(int row, int column);
+
+    /**
+     * This method is used to check whether a string value equals the given
+     * value, sources holding encoded strings compare them without decoding.
+     * @param row index of the row
+     * @param column a string column
+     * @param value the value to compare with
+     * @param utf8 the value encoded in UTF-8
+     * @return boolean flag of check result
+     */
+    default boolean stringEquals(int row, int column, String value, byte[] utf8){
+        return getString(row, column).equals(value);
+    }
+
+    /**
+     * This method is used to create a tuple of the given row.
+     * @param row index of the row
+     * @param columns attribute read into every slot of the tuple
+     * @param layout layout of the scan
+     * @return a new tuple holding the values of the row
+     */
+    Tuple getTuple(int row, int[] columns, TupleLayout layout);
+
+    /**
+     * This method is used to copy a range of rows into a batch and select all of them.
+     * @param from index of the first row
+     * @param count number of rows, at most the capacity of the batch
+     * @param columns attribute copied into every slot of the batch
+     * @param batch batch of the layout of the scan
+     */
+    void copyRows(int from, int count, int[] columns, Batch batch);
+
+    /**
+     * This method is used to copy the given rows into a batch and select all of them.
+     * @param rows indexes of the rows
+     * @param count number of rows, at most the capacity of the batch
+     * @param columns attribute copied into every slot of the batch
+     * @param batch batch of the layout of the scan
+     */
+    void copyRows(int[] rows, int count, int[] columns, Batch batch);
+
+    /**
+     * This method is used to find the rows repeating an earlier row of this source.
+     * @return the indexes of the repeated rows, or null if all rows are distinct
+     * @see #findDuplicateRows(ColumnSource)
+     */
+    default BitSet getDuplicateRows(){
+        return findDuplicateRows(this);
+    }
+
+    /**
+     * This method is used to find the rows equal to an earlier row in every column.
+     * The rows are sorted by a hash of their values, held with the row index in one
+     * long, and only the rows of equal hashes are compared, so no tuple is created.
+     * @param source the stored relation
+     * @return the indexes of the repeated rows, or null if all rows are distinct
+     */
+    static BitSet findDuplicateRows(ColumnSource source){
+        int width = source.getSchema().getTypes().size();
+        long[] keys = new long[source.size()];
+        for (int row=0; row<keys.length; row++){
+            int hash = 1;
+            for (int column=0; column<width; column++){
+                hash = 31 * hash + (source.isInt(column) ? source.getInt(row, column) : source.getString(row, column).hashCode());
+            }
+            keys[row] = (long) hash << 32 | row;
+        }
+        Arrays.sort(keys);
+        BitSet duplicates = null;
+        for (int start=0, end; start<keys.length; start=end){
+            end = start + 1;
+            while (end < keys.length && keys[end] >> 32 == keys[start] >> 32) end++;
+            // rows of equal hash are in row order, each is compared with the earlier ones left
+            for (int i=start+1; i<end; i++){
+                int row = (int) keys[i];
+                for (int j=start; j<i; j++){
+                    int earlier = (int) keys[j];
+                    if((duplicates == null || !duplicates.get(earlier)) && rowsEqual(source, earlier, row, width)){
+                        if(duplicates == null) duplicates = new BitSet(keys.length);
+                        duplicates.set(row);
+                        break;
+                    }
+                }
+            }
+        }
+        return duplicates;
+    }
+
+    static boolean rowsEqual(ColumnSource source, int row1, int row2, int width){
+        for (int column=0; column<width; column++){
+            if(source.isInt(column)){
+                if(source.getInt(row1, column) != source.getInt(row2, column)) return false;
+            }else if(!source.getString(row1, column).equals(source.getString(row2, column))){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,255 @@
+package ed.inf.adbs.minibase.base;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class reads and writes relations in a binary columnar file
+ * format, read through memory mapped buffers so that scanning it
+ * needs no parsing. The file starts with a header
+ * <pre>
+ *   magic, width, rowCount (int), sourceLength, sourceModified (long),
+ *   one type byte per attribute (0 int, 1 string),
+ *   one (offset, length) pair of longs per attribute
+ * </pre>
+ * followed by one section per attribute. An int section holds rowCount
+ * fixed-width ints. A string section holds rowCount + 1 int offsets into
+ * the UTF-8 bytes that follow them, so string i is the bytes between
+ * offsets i and i + 1. The length and modification time of the csv file
+ * the relation was imported from are kept to detect stale files.
+ */
+public class ColumnarFile implements ColumnSource {
+
+    public static final String EXTENSION = ".col";
+    private static final int MAGIC = 0x4D424331;
+    private static final byte INT = 0;
+    private static final byte STRING = 1;
+
+    private Schema schema;
+    private int size;
+    private long sourceLength;
+    private long sourceModified;
+    // mapped sections, only the one of the attribute type is set
+    private IntBuffer[] intColumns;
+    private IntBuffer[] stringOffsets;
+    private ByteBuffer[] stringBytes;
+
+    private ColumnarFile(Schema schema, int size, long sourceLength, long sourceModified) {
+        this.schema = schema;
+        this.size = size;
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        int width = schema.getTypes().size();
+        this.intColumns = new IntBuffer[width];
+        this.stringOffsets = new IntBuffer[width];
+        this.stringBytes = new ByteBuffer[width];
+    }
+
+    /**
+     * This method is used to map the sections of a columnar file, the file
+     * can be closed afterwards as the mappings stay valid.
+     * @param file columnar file
+     * @return the opened file
+     * @throws IOException if the file cannot be read or is not a columnar file
+     */
+    public static ColumnarFile open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if(raf.readInt() != MAGIC) throw new IOException("Not a columnar file: " + file);
+            int width = raf.readInt();
+            int size = raf.readInt();
+            long sourceLength = raf.readLong();
+            long sourceModified = raf.readLong();
+            byte[] types = new byte[width];
+            raf.readFully(types);
+            long[] offsets = new long[width];
+            long[] lengths = new long[width];
+            for (int i=0; i<width; i++){
+                offsets[i] = raf.readLong();
+                lengths[i] = raf.readLong();
+            }
+
+            String[] typeNames = new String[width];
+            for (int i=0; i<width; i++) typeNames[i] = types[i] == INT ? "int" : "string";
+            ColumnarFile columnar = new ColumnarFile(new Schema(String.join(" ", typeNames)), size, sourceLength, sourceModified);
+            for (int i=0; i<width; i++){
+                ByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offsets[i], lengths[i]);
+                if(types[i] == INT){
+                    columnar.intColumns[i] = section.asIntBuffer();
+                }else {
+                    int offsetBytes = 4 * (size + 1);
+                    section.limit(offsetBytes);
+                    columnar.stringOffsets[i] = section.slice().asIntBuffer();
+                    section.limit(section.capacity()).position(offsetBytes);
+                    columnar.stringBytes[i] = section.slice();
+                }
+            }
+            return columnar;
+        }
+    }
+
+    /**
+     * This method is used to write a relation to a columnar file.
+     * @param relation the relation to be written
+     * @param file target file
+     * @param sourceLength length of the csv file of the relation
+     * @param sourceModified modification time of the csv file of the relation
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Relation relation, File file, long sourceLength, long sourceModified) throws IOException {
+        int width = relation.getSchema().getTypes().size();
+        int size = relation.size();
+        long headerLength = 4 + 4 + 4 + 8 + 8 + width + 16L * width;
+        long[] offsets = new long[width];
+        long[] lengths = new long[width];
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+            // the header is written last, once the section lengths are known
+            data.write(new byte[(int) headerLength]);
+            long position = headerLength;
+            for (int i=0; i<width; i++){
+                offsets[i] = position;
+                if(relation.isInt(i)){
+                    for (int row=0; row<size; row++) data.writeInt(relation.getInt(row, i));
+                    lengths[i] = 4L * size;
+                }else {
+                    byte[][] values = new byte[size][];
+                    int offset = 0;
+                    data.writeInt(0);
+                    for (int row=0; row<size; row++){
+                        values[row] = relation.getString(row, i).getBytes(StandardCharsets.UTF_8);
+                        offset += values[row].length;
+                        data.writeInt(offset);
+                    }
+                    for (byte[] value: values) data.write(value);
+                    lengths[i] = 4L * (size + 1) + offset;
+                }
+                position += lengths[i];
+            }
+            data.flush();
+
+            ByteBuffer header = ByteBuffer.allocate((int) headerLength);
+            header.putInt(MAGIC).putInt(width).putInt(size).putLong(sourceLength).putLong(sourceModified);
+            for (int i=0; i<width; i++) header.put(relation.isInt(i) ? INT : STRING);
+            for (int i=0; i<width; i++) header.putLong(offsets[i]).putLong(lengths[i]);
+            header.flip();
+            FileChannel channel = out.getChannel();
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+    }
+
+    @Override
+    public Schema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    public long getSourceModified() {
+        return sourceModified;
+    }
+
+    @Override
+    public boolean isInt(int column){
+        return intColumns[column] != null;
+    }
+
+    @Override
+    public int getInt(int row, int column){
+        return intColumns[column].get(row);
+    }
+
+    @Override
+    public String getString(int row, int column){
+        int start = stringOffsets[column].get(row);
+        int end = stringOffsets[column].get(row + 1);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer buffer = stringBytes[column].duplicate();
+        buffer.position(start);
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This method is used to compare a string value with the given UTF-8 bytes
+     * in the mapped buffer, without decoding it.
+     */
+    @Override
+    public boolean stringEquals(int row, int column, String value, byte[] utf8){
+        int start = stringOffsets[column].get(row);
+        int end = stringOffsets[column].get(row + 1);
+        if(end - start != utf8.length) return false;
+        ByteBuffer bytes = stringBytes[column];
+        for (int i=0; i<utf8.length; i++){
+            if(bytes.get(start + i) != utf8[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * This method is used to copy the given rows into a batch, string values are
+     * only decoded for these rows.
+     */
+    @Override
+    public void copyRows(int[] rows, int count, int[] columns, Batch batch){
+        for (int i=0; i<columns.length; i++){
+            int column = columns[i];
+            if(intColumns[column] != null){
+                IntBuffer stored = intColumns[column];
+                int[] values = batch.getInts(i);
+                for (int k=0; k<count; k++) values[k] = stored.get(rows[k]);
+            }else {
+                String[] values = batch.getStrings(i);
+                for (int k=0; k<count; k++) values[k] = getString(rows[k], column);
+            }
+        }
+        batch.selectAll(count);
+    }
+
+    /**
+     * This method is used to copy a range of rows into a batch and select all
+     * of them, int columns are copied from the mapped buffers in bulk.
+     */
+    @Override
+    public void copyRows(int from, int count, int[] columns, Batch batch){
+        for (int i=0; i<columns.length; i++){
+            int column = columns[i];
+            if(intColumns[column] != null){
+                IntBuffer buffer = intColumns[column].duplicate();
+                buffer.position(from);
+                buffer.get(batch.getInts(i), 0, count);
+            }else {
+                String[] values = batch.getStrings(i);
+                for (int row=0; row<count; row++) values[row] = getString(from + row, column);
+            }
+        }
+        batch.selectAll(count);
+    }
+
+    @Override
+    public Tuple getTuple(int row, int[] columns, TupleLayout layout){
+        Tuple tuple = Tuple.allocate(layout);
+        for (int i=0; i<columns.length; i++){
+            int column = columns[i];
+            if(intColumns[column] != null) tuple.setInt(i, intColumns[column].get(row));
+            else tuple.setString(i, getString(row, column));
+        }
+        return tuple;
+    }
+}
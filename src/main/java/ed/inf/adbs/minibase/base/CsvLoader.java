@@ -0,0 +1,400 @@
+package ed.inf.adbs.minibase.base;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class is to load a csv file into a relation. The file is divided
+ * into byte ranges which start after a newline, and the ranges are parsed
+ * in parallel from memory mapped buffers by a hand-written tokenizer:
+ * ints are parsed directly from the bytes and quoted strings are decoded
+ * from the bytes between the quotes, without reading lines or splitting
+ * them into String arrays. The columns of the ranges are then
+ * concatenated in file order.
+ */
+public class CsvLoader {
+
+    // smallest range parsed by its own task
+    public static final long MIN_CHUNK_BYTES = 1L << 20;
+    // largest range, a mapped buffer is limited to 2GB
+    public static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    /**
+     * This method is used to parse the given csv file into a relation.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @param file csv file of the relation
+     * @param parallelism largest number of ranges parsed at the same time
+     * @return the parsed relation
+     * @throws IOException if the file cannot be read or a line is malformed
+     */
+    public static Relation load(String name, Schema schema, File file, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            int chunks = (int) Math.max(1, Math.min(parallelism, length / MIN_CHUNK_BYTES));
+            chunks = (int) Math.max(chunks, (length + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+            long[] bounds = new long[chunks + 1];
+            bounds[chunks] = length;
+            for (int i=1; i<chunks; i++){
+                bounds[i] = nextLineStart(channel, Math.max(bounds[i-1], length * i / chunks), length);
+            }
+
+            Chunk[] parsed = new Chunk[chunks];
+            if(chunks == 1){
+                parsed[0] = parse(channel, schema, 0, length);
+            }else {
+                List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+                for (int i=0; i<chunks; i++){
+                    long from = bounds[i];
+                    long to = bounds[i+1];
+                    tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                        try {
+                            return parse(channel, schema, from, to);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+                }
+                try {
+                    for (int i=0; i<chunks; i++) parsed[i] = tasks.get(i).join();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            return concat(name, schema, parsed);
+        }
+    }
+
+    /**
+     * This method is used to find the start of the first line at or after the given position.
+     * @return position after the first newline at or after position - 1, or the file length
+     */
+    private static long nextLineStart(FileChannel channel, long position, long length) throws IOException {
+        if(position == 0) return 0;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long offset = position - 1;
+        while (offset < length){
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if(read <= 0) break;
+            for (int i=0; i<read; i++){
+                if(buffer.get(i) == '\n') return offset + i + 1;
+            }
+            offset += read;
+        }
+        return length;
+    }
+
+    /**
+     * The columns parsed from one range of the file.
+     */
+    private static class Chunk {
+        private int size;
+        private int[][] intColumns;
+        private String[][] stringColumns;
+    }
+
+    private static Chunk parse(FileChannel channel, Schema schema, long from, long to) throws IOException {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        Tokenizer tokenizer = new Tokenizer(buffer, from);
+        int width = schema.getTypes().size();
+        int capacity = 16;
+        Chunk chunk = new Chunk();
+        chunk.intColumns = new int[width][];
+        chunk.stringColumns = new String[width][];
+        for (int i=0; i<width; i++){
+            if(schema.getType(i).equals("int")) chunk.intColumns[i] = new int[capacity];
+            else chunk.stringColumns[i] = new String[capacity];
+        }
+
+        int size = 0;
+        while (tokenizer.nextLine()){
+            if(size == capacity){
+                capacity = capacity * 2;
+                for (int i=0; i<width; i++){
+                    if(chunk.intColumns[i] != null) chunk.intColumns[i] = Arrays.copyOf(chunk.intColumns[i], capacity);
+                    else chunk.stringColumns[i] = Arrays.copyOf(chunk.stringColumns[i], capacity);
+                }
+            }
+            for (int i=0; i<width; i++){
+                if(i > 0) tokenizer.separator();
+                if(chunk.intColumns[i] != null) chunk.intColumns[i][size] = tokenizer.nextInt();
+                else chunk.stringColumns[i][size] = tokenizer.nextString();
+            }
+            tokenizer.endLine();
+            size++;
+        }
+        chunk.size = size;
+        return chunk;
+    }
+
+    private static Relation concat(String name, Schema schema, Chunk[] chunks){
+        if(chunks.length == 1){
+            Chunk chunk = chunks[0];
+            for (int i=0; i<chunk.intColumns.length; i++){
+                if(chunk.intColumns[i] != null) chunk.intColumns[i] = Arrays.copyOf(chunk.intColumns[i], chunk.size);
+                else chunk.stringColumns[i] = Arrays.copyOf(chunk.stringColumns[i], chunk.size);
+            }
+            return new Relation(name, schema, chunk.size, chunk.intColumns, chunk.stringColumns);
+        }
+        int width = schema.getTypes().size();
+        int size = 0;
+        for (Chunk chunk: chunks) size += chunk.size;
+        int[][] intColumns = new int[width][];
+        String[][] stringColumns = new String[width][];
+        for (int i=0; i<width; i++){
+            if(schema.getType(i).equals("int")) intColumns[i] = new int[size];
+            else stringColumns[i] = new String[size];
+        }
+        int offset = 0;
+        for (Chunk chunk: chunks){
+            for (int i=0; i<width; i++){
+                if(intColumns[i] != null) System.arraycopy(chunk.intColumns[i], 0, intColumns[i], offset, chunk.size);
+                else System.arraycopy(chunk.stringColumns[i], 0, stringColumns[i], offset, chunk.size);
+            }
+            offset += chunk.size;
+        }
+        return new Relation(name, schema, size, intColumns, stringColumns);
+    }
+
+    /**
+     * This class is to read single lines of a csv file at given byte offsets,
+     * for the index scans and the index builder. Lines are read through a
+     * window of the file, so reading the lines one after another only reads
+     * the file once, and reading a line at any offset reads a single window.
+     */
+    public static class RowReader implements Closeable {
+        private FileChannel channel;
+        private boolean[] intColumns;
+        private int[] ints;
+        private String[] strings;
+        private ByteBuffer buffer;
+        // range of the file held in the buffer
+        private long windowStart;
+        private int windowLength;
+        private long length;
+        private long offset;
+        private long nextOffset;
+
+        public RowReader(File file, Schema schema) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.length = channel.size();
+            int width = schema.getTypes().size();
+            this.intColumns = new boolean[width];
+            for (int i=0; i<width; i++) intColumns[i] = schema.getType(i).equals("int");
+            this.ints = new int[width];
+            this.strings = new String[width];
+            this.buffer = ByteBuffer.allocate(64 * 1024);
+            this.windowStart = 0;
+            this.windowLength = 0;
+        }
+
+        /**
+         * This method is used to read the first line starting at or after the
+         * given offset, skipping blank lines.
+         * @param from byte offset of the line
+         * @return false if there is no line left
+         * @throws IOException if the file cannot be read or the line is malformed
+         */
+        public boolean read(long from) throws IOException {
+            if(from < windowStart || from > windowStart + windowLength) fill(from);
+            while (true){
+                int start = (int) (from - windowStart);
+                int lineStart = start;
+                while (lineStart < windowLength && (buffer.get(lineStart) == '\n' || buffer.get(lineStart) == ' '
+                        || buffer.get(lineStart) == '\t' || buffer.get(lineStart) == '\r')) lineStart++;
+                int end = lineStart;
+                while (end < windowLength && buffer.get(end) != '\n') end++;
+                boolean complete = end < windowLength || windowStart + windowLength >= length;
+                if(complete){
+                    if(lineStart >= windowLength) return false;
+                    parseLine(lineStart);
+                    return true;
+                }
+                // the line continues after the window
+                if(start == 0 && windowLength == buffer.capacity()) buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                fill(from);
+            }
+        }
+
+        private void fill(long from) throws IOException {
+            buffer.clear();
+            windowStart = from;
+            while (buffer.hasRemaining()){
+                int read = channel.read(buffer, from + buffer.position());
+                if(read <= 0) break;
+            }
+            windowLength = buffer.position();
+            buffer.limit(windowLength);
+        }
+
+        private void parseLine(int lineStart) throws IOException {
+            Tokenizer tokenizer = new Tokenizer(buffer, windowStart);
+            tokenizer.position = lineStart;
+            for (int i=0; i<intColumns.length; i++){
+                if(i > 0) tokenizer.separator();
+                if(intColumns[i]) ints[i] = tokenizer.nextInt();
+                else strings[i] = tokenizer.nextString();
+            }
+            tokenizer.endLine();
+            offset = windowStart + lineStart;
+            nextOffset = Math.min(windowStart + tokenizer.position, length);
+        }
+
+        /**
+         * @return byte offset of the line read last
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return byte offset after the line read last
+         */
+        public long getNextOffset() {
+            return nextOffset;
+        }
+
+        public int getInt(int column){
+            return ints[column];
+        }
+
+        public String getString(int column){
+            return strings[column];
+        }
+
+        public Object getValue(int column){
+            return intColumns[column] ? (Object) ints[column] : strings[column];
+        }
+
+        /**
+         * This method is used to copy the values of the line read last into a tuple
+         * whose slot i holds column i.
+         */
+        public void copyTo(Tuple tuple){
+            for (int i=0; i<intColumns.length; i++){
+                if(intColumns[i]) tuple.setInt(i, ints[i]);
+                else tuple.setString(i, strings[i]);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * This class reads the values of the lines of a buffer. Values are separated
+     * by a comma and optional blanks, and string values are written in quotes.
+     */
+    private static class Tokenizer {
+        private ByteBuffer buffer;
+        // position of the buffer in the file, for error messages
+        private long base;
+        private int position;
+        private int limit;
+
+        private Tokenizer(ByteBuffer buffer, long base) {
+            this.buffer = buffer;
+            this.base = base;
+            this.position = 0;
+            this.limit = buffer.limit();
+        }
+
+        private boolean isBlank(byte c){
+            return c == ' ' || c == '\t' || c == '\r';
+        }
+
+        private void skipBlanks(){
+            while (position < limit && isBlank(buffer.get(position))) position++;
+        }
+
+        /**
+         * Skip blank lines.
+         * @return true if there is another line to read
+         */
+        private boolean nextLine(){
+            while (position < limit){
+                byte c = buffer.get(position);
+                if(c != '\n' && !isBlank(c)) return true;
+                position++;
+            }
+            return false;
+        }
+
+        private void separator() throws IOException {
+            skipBlanks();
+            if(position >= limit || buffer.get(position) != ',') throw malformed("expected ','");
+            position++;
+        }
+
+        private void endLine() throws IOException {
+            skipBlanks();
+            if(position < limit && buffer.get(position) != '\n') throw malformed("expected end of line");
+            position++;
+        }
+
+        private int nextInt() throws IOException {
+            skipBlanks();
+            boolean negative = false;
+            if(position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')){
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            int start = position;
+            long value = 0;
+            while (position < limit){
+                int digit = buffer.get(position) - '0';
+                if(digit < 0 || digit > 9) break;
+                value = value * 10 + digit;
+                if(value > Integer.MAX_VALUE + 1L) throw malformed("int out of range");
+                position++;
+            }
+            if(position == start) throw malformed("expected an int");
+            value = negative ? -value : value;
+            if(value > Integer.MAX_VALUE) throw malformed("int out of range");
+            return (int) value;
+        }
+
+        /**
+         * Read a string value without its quotes. A value without quotes
+         * ends at the next comma or at the end of the line.
+         */
+        private String nextString() throws IOException {
+            skipBlanks();
+            int start;
+            int end;
+            if(position < limit && buffer.get(position) == '\''){
+                start = position + 1;
+                end = start;
+                while (end < limit && buffer.get(end) != '\'' && buffer.get(end) != '\n') end++;
+                if(end >= limit || buffer.get(end) != '\'') throw malformed("unterminated string");
+                position = end + 1;
+            }else {
+                start = position;
+                while (position < limit && buffer.get(position) != ',' && buffer.get(position) != '\n') position++;
+                end = position;
+                while (end > start && isBlank(buffer.get(end - 1))) end--;
+            }
+            byte[] bytes = new byte[end - start];
+            for (int i=0; i<bytes.length; i++) bytes[i] = buffer.get(start + i);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private IOException malformed(String message){
+            return new IOException("Malformed csv at byte " + (base + position) + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package ed.inf.adbs.minibase.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * This class holds the rows of a relation in memory, parsed once
+ * from its csv file into typed columns. Int attributes are stored
+ * in primitive arrays and string attributes, without their quotes,
+ * in String arrays, so that rows can be read by index without
+ * parsing them again.
+ */
+public class Relation implements ColumnSource {
+
+    private String name;
+    private Schema schema;
+    private int size;
+    // one array per attribute, null if the attribute has the other type
+    private int[][] intColumns;
+    private String[][] stringColumns;
+    // rows repeating an earlier row, found once when first needed
+    private BitSet duplicateRows;
+    private boolean duplicatesFound;
+
+    public Relation(String name, Schema schema, int size, int[][] intColumns, String[][] stringColumns) {
+        this.name = name;
+        this.schema = schema;
+        this.size = size;
+        this.intColumns = intColumns;
+        this.stringColumns = stringColumns;
+    }
+
+    /**
+     * This method is used to parse the given csv file into a relation,
+     * using as many threads as there are processors for large files.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @param file csv file of the relation
+     * @return the parsed relation
+     * @throws IOException if the file cannot be read
+     * @see CsvLoader#load(String, Schema, File, int)
+     */
+    public static Relation load(String name, Schema schema, File file) throws IOException {
+        return CsvLoader.load(name, schema, file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * This method is used to remove the quotes around a string value once
+     * when it is loaded, so that it can be compared with string constants
+     * directly. The quotes are added back when the value is written.
+     * @param value a string value as written in the csv file
+     * @return the value without the surrounding quotes
+     */
+    public static String unquote(String value){
+        if(value.length() >= 2 && value.charAt(0) == '\'' && value.charAt(value.length()-1) == '\''){
+            return value.substring(1, value.length()-1);
+        }
+        return value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Schema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public Object getValue(int row, int column){
+        if(intColumns[column] != null) return intColumns[column][row];
+        return stringColumns[column][row];
+    }
+
+    @Override
+    public int getInt(int row, int column){
+        return intColumns[column][row];
+    }
+
+    @Override
+    public String getString(int row, int column){
+        return stringColumns[column][row];
+    }
+
+    @Override
+    public boolean isInt(int column){
+        return intColumns[column] != null;
+    }
+
+    /**
+     * This method is used to create a tuple of the given row.
+     * @param row index of the row
+     * @param columns attribute read into every slot of the tuple
+     * @param layout layout of the scan
+     * @return a new tuple holding the values of the row
+     */
+    @Override
+    public Tuple getTuple(int row, int[] columns, TupleLayout layout){
+        Tuple tuple = Tuple.allocate(layout);
+        for (int i=0; i<columns.length; i++){
+            int column = columns[i];
+            if(intColumns[column] != null) tuple.setInt(i, intColumns[column][row]);
+            else tuple.setString(i, stringColumns[column][row]);
+        }
+        return tuple;
+    }
+
+    /**
+     * This method is used to copy a range of rows into a batch,
+     * one array copy per attribute, and select all of them.
+     */
+    @Override
+    public void copyRows(int from, int count, int[] columns, Batch batch){
+        for (int i=0; i<columns.length; i++){
+            int column = columns[i];
+            if(intColumns[column] != null) System.arraycopy(intColumns[column], from, batch.getInts(i), 0, count);
+            else System.arraycopy(stringColumns[column], from, batch.getStrings(i), 0, count);
+        }
+        batch.selectAll(count);
+    }
+
+    @Override
+    public void copyRows(int[] rows, int count, int[] columns, Batch batch){
+        for (int i=0; i<columns.length; i++){
+            int column = columns[i];
+            if(intColumns[column] != null){
+                int[] stored = intColumns[column];
+                int[] values = batch.getInts(i);
+                for (int k=0; k<count; k++) values[k] = stored[rows[k]];
+            }else {
+                String[] stored = stringColumns[column];
+                String[] values = batch.getStrings(i);
+                for (int k=0; k<count; k++) values[k] = stored[rows[k]];
+            }
+        }
+        batch.selectAll(count);
+    }
+
+    /**
+     * This method is used to find the rows repeating an earlier row, once for the
+     * cached relation, so every query summing over it reuses them.
+     * @return the indexes of the repeated rows, or null if all rows are distinct
+     */
+    @Override
+    public synchronized BitSet getDuplicateRows(){
+        if(!duplicatesFound){
+            duplicateRows = ColumnSource.findDuplicateRows(this);
+            duplicatesFound = true;
+        }
+        return duplicateRows;
+    }
+
+    /**
+     * This method is used to estimate the heap size of this relation in bytes,
+     * counting 4 bytes per int value and the characters and header of every string.
+     * @return estimated size in bytes
+     */
+    public long estimateBytes(){
+        long bytes = 64;
+        for (int i=0; i<intColumns.length; i++){
+            if(intColumns[i] != null){
+                bytes += 16 + 4L * intColumns[i].length;
+            }else {
+                bytes += 16 + 8L * stringColumns[i].length;
+                for (int j=0; j<size; j++){
+                    bytes += 40 + 2L * stringColumns[i][j].length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Relation{" +
+                "name=" + name +
+                ", size=" + size +
+                ", schema=" + schema +
+                '}';
+    }
+}
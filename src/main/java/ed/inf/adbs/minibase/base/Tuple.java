@@ -1,99 +1,143 @@
 package ed.inf.adbs.minibase.base;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.ArrayList;
-import java.util.Objects;
+import java.util.List;
 
 /**
- * This class encapsulate the data of tuple, with corresponding
- * schema and terms. The list of values, terms and the schema
- * holds the actual value, variable names, value types in sequence.
- * A HashMap mapping is for the convenience of finding the value
- * with given variable name.
+ * This class encapsulate the data of tuple, with a shared layout
+ * holding the terms and the schema of its slots. The values of int
+ * slots are held in a primitive int array and the values of string
+ * slots in a String array, both indexed by slot. Aggregated sums
+ * are held in a long array, only allocated if the layout has them.
+ * The slot of a variable is resolved once in the layout, so the
+ * operators read values by slot instead of looking them up by name.
  * For convenience, its toString, hashcode and equals method are
- * overridden.
+ * overridden, comparing the values only.
  */
 public class Tuple {
-    private List<Object> values;
-    private List<Term> terms;
-    private Schema schema;
-    private HashMap<Term,Object> mapping;
-
-    public Tuple(String row, List<Term> terms, Schema schema) {
-        assert row != null && terms != null && schema != null: "null";
-        this.terms = terms;
-        this.schema = schema;
-        row = row.trim();
-        String[] value = row.split(", ");
-        assert value.length==terms.size() && value.length==schema.getTypes().size(): "size";
-//        if(value.length != schema.getTypes().size()) value[value.length] = "";
-        this.values = new ArrayList<>();
-        this.mapping = new HashMap<>();
-        for(int i=0;i<value.length;i++){
-            Object o;
-            if(this.schema.getTypes().get(i).equals("int")){
-                o = Integer.parseInt(value[i]);
-            }else {
-//                o = ((String) value[i]).replace("'", "");
-                o = (String) value[i];
-            }
-            values.add(o);
-            mapping.put(terms.get(i), o);
-        }
+    private TupleLayout layout;
+    private int[] ints;
+    private String[] strings;
+    private long[] longs;
+
+    public Tuple(TupleLayout layout, int[] ints, String[] strings, long[] longs) {
+        assert layout != null && ints != null: "null";
+        assert ints.length == layout.size(): "size";
+        this.layout = layout;
+        this.ints = ints;
+        this.strings = strings;
+        this.longs = longs;
+    }
+
+    /**
+     * This method is used to create an empty tuple of the given layout,
+     * whose slots are then filled by the operator creating it.
+     * @param layout layout of the tuple
+     * @return a new tuple
+     */
+    public static Tuple allocate(TupleLayout layout){
+        int size = layout.size();
+        return new Tuple(layout, new int[size],
+                layout.hasStrings() ? new String[size] : null,
+                layout.hasLongs() ? new long[size] : null);
+    }
+
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    public int size(){
+        return ints.length;
+    }
+
+    public int getInt(int slot){
+        return ints[slot];
+    }
+
+    public long getLong(int slot){
+        return longs[slot];
     }
 
-    public Tuple(List<Object> values, List<Term> terms, Schema schema) {
-        assert values != null && terms != null && schema != null: "null";
-        assert values.size()==terms.size() && values.size()==schema.getTypes().size():"size";
-        this.values = values;
-        this.terms = terms;
-        this.schema = schema;
-        this.mapping = new HashMap<>();
-        for(int i = 0; i< values.size(); i++){
-            mapping.put(terms.get(i), values.get(i));
+    public String getString(int slot){
+        return strings[slot];
+    }
+
+    public void setInt(int slot, int value){
+        ints[slot] = value;
+    }
+
+    public void setLong(int slot, long value){
+        longs[slot] = value;
+    }
+
+    public void setString(int slot, String value){
+        strings[slot] = value;
+    }
+
+    /**
+     * This method is used to copy a value from the given tuple into this one.
+     * @param slot slot of this tuple to write
+     * @param from tuple to read
+     * @param fromSlot slot of the tuple to read
+     */
+    public void copySlot(int slot, Tuple from, int fromSlot){
+        if(from.layout.isInt(fromSlot)) ints[slot] = from.ints[fromSlot];
+        else if(from.layout.isLong(fromSlot)) longs[slot] = from.longs[fromSlot];
+        else strings[slot] = from.strings[fromSlot];
+    }
+
+    /**
+     * This method is used to create a tuple of the given layout holding the
+     * values of the given slots of this tuple.
+     * @param target layout of the new tuple
+     * @param slots slot of this tuple for every slot of the new tuple
+     * @return a new tuple
+     */
+    public Tuple project(TupleLayout target, int[] slots){
+        Tuple tuple = allocate(target);
+        for (int i=0; i<slots.length; i++){
+            tuple.copySlot(i, this, slots[i]);
         }
+        return tuple;
     }
 
     public Object getValue(int index){
-        return values.get(index);
+        if(layout.isInt(index)) return ints[index];
+        if(layout.isLong(index)) return longs[index];
+        return strings[index];
     }
 
     public Object getValue(Term key) {
-        if(key instanceof Variable){
-            for(Term term: mapping.keySet()){
-                if(((Variable) term).getName().equals(((Variable) key).getName())) return mapping.get(term);
-            }
-        }else if(key instanceof SumAggregate){
-            for(Term term: mapping.keySet()){
-                if(term instanceof SumAggregate && term.toString().equals(key.toString())) return mapping.get(term);
-            }
-        }
-        return null;
+        int slot = layout.slotOf(key);
+        return slot < 0 ? null : getValue(slot);
     }
 
     public List<Object> getValues() {
+        List<Object> values = new ArrayList<>(size());
+        for (int i=0; i<size(); i++){
+            values.add(getValue(i));
+        }
         return values;
     }
 
     public Term getTerm(int index) {
-        return terms.get(index);
+        return layout.getTerm(index);
     }
 
     public List<Term> getTerms() {
-        return terms;
+        return layout.getTerms();
     }
 
     public Schema getSchema() {
-        return schema;
+        return layout.getSchema();
     }
 
     @Override
     public String toString() {
         return "Tuple{" +
-                "value=" + values +
-                ", terms=" + terms +
-                ", schema=" + schema +
+                "value=" + getValues() +
+                ", terms=" + getTerms() +
+                ", schema=" + getSchema() +
                 '}';
     }
 
@@ -102,16 +146,29 @@ public class Tuple {
         if (this == o) return true;
         if (!(o instanceof Tuple)) return false;
         Tuple tuple1 = (Tuple) o;
-        if(!getSchema().equals(tuple1.getSchema())) return false;
-        for(int i = 0; i< getValues().size(); i++){
-            if(!getValue(i).equals(tuple1.getValue(i)) || !getTerm(i).equals(tuple1.getTerm(i))) return false;
+        if(size() != tuple1.size()) return false;
+        for(int i = 0; i < size(); i++){
+            if(layout.isInt(i) != tuple1.layout.isInt(i) || layout.isLong(i) != tuple1.layout.isLong(i)) return false;
+            if(layout.isInt(i)){
+                if(ints[i] != tuple1.ints[i]) return false;
+            }else if(layout.isLong(i)){
+                if(longs[i] != tuple1.longs[i]) return false;
+            }else if(!strings[i].equals(tuple1.strings[i])) return false;
         }
         return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getValues(), getTerms(), getSchema());
+        int hash = 1;
+        for(int i = 0; i < size(); i++){
+            int h;
+            if(layout.isInt(i)) h = ints[i];
+            else if(layout.isLong(i)) h = Long.hashCode(longs[i]);
+            else h = strings[i].hashCode();
+            hash = 31 * hash + h;
+        }
+        return hash;
     }
 
 }
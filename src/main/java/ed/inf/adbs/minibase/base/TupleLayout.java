@@ -0,0 +1,133 @@
+package ed.inf.adbs.minibase.base;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class describes the slots of the tuples produced by an
+ * operator: the term and the type of every slot. It is created
+ * once when the query plan is built and shared by all tuples of
+ * the operator, so that the position of a variable is resolved
+ * once instead of being looked up by name for every tuple.
+ */
+public class TupleLayout {
+
+    public static final String INT = "int";
+    public static final String LONG = "long";
+    public static final String STRING = "string";
+
+    private List<Term> terms;
+    private Schema schema;
+    private boolean[] isInt;
+    private boolean[] isLong;
+    private boolean hasStrings;
+    private boolean hasLongs;
+    // term name to its first slot
+    private Map<String, Integer> slots;
+
+    public TupleLayout(List<Term> terms, Schema schema) {
+        assert terms != null && schema != null: "null";
+        assert terms.size() == schema.getTypes().size(): "size";
+        this.terms = terms;
+        this.schema = schema;
+        this.isInt = new boolean[terms.size()];
+        this.isLong = new boolean[terms.size()];
+        this.slots = new HashMap<>();
+        for (int i=0; i<terms.size(); i++){
+            String type = schema.getType(i);
+            isInt[i] = type.equals(INT);
+            isLong[i] = type.equals(LONG);
+            hasStrings |= type.equals(STRING);
+            hasLongs |= isLong[i];
+            slots.putIfAbsent(terms.get(i).toString(), i);
+        }
+    }
+
+    /**
+     * This method is used to create the layout of the given terms, taking
+     * the type of each term from the given layout.
+     * @param terms terms of the new layout
+     * @param source layout holding the terms
+     * @return a new layout
+     */
+    public static TupleLayout of(List<? extends Term> terms, TupleLayout source){
+        List<String> types = new ArrayList<>();
+        for (Term term: terms){
+            types.add(source.getType(source.slotOf(term)));
+        }
+        return new TupleLayout(new ArrayList<>(terms), new Schema(types));
+    }
+
+    /**
+     * This method is used to find the slot of the given term.
+     * @param term a variable or aggregate
+     * @return index of the first slot holding the term, or -1 if there is none
+     */
+    public int slotOf(Term term){
+        Integer slot = slots.get(term.toString());
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * This method is used to find the slots of the given terms.
+     * @param terms a list of variables or aggregates
+     * @return the slot of each term, -1 for missing terms
+     */
+    public int[] slotsOf(List<? extends Term> terms){
+        int[] result = new int[terms.size()];
+        for (int i=0; i<terms.size(); i++){
+            result[i] = slotOf(terms.get(i));
+        }
+        return result;
+    }
+
+    public boolean contains(Term term){
+        return slotOf(term) >= 0;
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    public boolean isInt(int slot){
+        return isInt[slot];
+    }
+
+    public boolean isLong(int slot){
+        return isLong[slot];
+    }
+
+    public boolean hasStrings() {
+        return hasStrings;
+    }
+
+    public boolean hasLongs() {
+        return hasLongs;
+    }
+
+    public Term getTerm(int slot){
+        return terms.get(slot);
+    }
+
+    public String getType(int slot){
+        return schema.getType(slot);
+    }
+
+    public List<Term> getTerms() {
+        return terms;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public String toString() {
+        return "TupleLayout{" +
+                "terms=" + terms +
+                ", schema=" + schema +
+                '}';
+    }
+}
@@ -0,0 +1,311 @@
+package ed.inf.adbs.minibase.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is a disk-based B+-tree mapping the values of one column
+ * of a relation to the byte offsets of the rows in its csv file. The
+ * tree is bulk loaded from sorted entries into pages of PAGE_SIZE bytes:
+ * <pre>
+ *   page 0   header: magic, key type, column, root page, height,
+ *            entry count, source length and modification time
+ *   leaf     0, count (short), next leaf (int), count (key, offset) entries
+ *   internal 1, count (short), first child (int), count (key, child) entries
+ * </pre>
+ * where a separator key is the first key of its child. Int keys take
+ * 4 bytes and string keys a short length and their UTF-8 bytes. The file
+ * is memory mapped, so a lookup only reads the pages on its path from
+ * the root and the leaves it scans. Entries with equal keys are kept in
+ * offset order.
+ */
+public class BPlusTree {
+
+    public static final String EXTENSION = ".idx";
+    public static final int PAGE_SIZE = 4096;
+    // longest string key, so that a page holds several entries
+    public static final int MAX_KEY_BYTES = 512;
+
+    private static final int MAGIC = 0x4D424958;
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+    // bytes before the first entry of a leaf
+    private static final int PAGE_HEADER = 7;
+
+    private ByteBuffer buffer;
+    private boolean intKeys;
+    private int column;
+    private int root;
+    private int height;
+    private long entryCount;
+    private long sourceLength;
+    private long sourceModified;
+
+    private BPlusTree(ByteBuffer buffer){
+        this.buffer = buffer;
+    }
+
+    /**
+     * This method is used to map an index file.
+     * @param file index file
+     * @return the opened index
+     * @throws IOException if the file cannot be read or is not an index
+     */
+    public static BPlusTree open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            BPlusTree tree = new BPlusTree(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            ByteBuffer header = tree.buffer;
+            if(channel.size() < PAGE_SIZE || header.getInt(0) != MAGIC) throw new IOException("Not an index file: " + file);
+            tree.intKeys = header.get(4) == 0;
+            tree.column = header.getInt(5);
+            tree.root = header.getInt(9);
+            tree.height = header.getInt(13);
+            tree.entryCount = header.getLong(17);
+            tree.sourceLength = header.getLong(25);
+            tree.sourceModified = header.getLong(33);
+            return tree;
+        }
+    }
+
+    public boolean isIntKeys() {
+        return intKeys;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    public long getSourceModified() {
+        return sourceModified;
+    }
+
+    /**
+     * This method is used to find the first entry whose key is not lower than
+     * the given key, or greater than it if exclusive.
+     * @param low lowest key, an Integer or a String, or null to start from the first entry
+     * @param inclusive whether an entry equal to low is included
+     * @return a cursor before that entry
+     */
+    public Cursor seek(Object low, boolean inclusive){
+        int page = root;
+        for (int level=1; level<height; level++){
+            // go to the last child whose separator is lower than the key,
+            // equal keys may continue from the child before it
+            int position = page * PAGE_SIZE + 3;
+            int count = buffer.getShort(page * PAGE_SIZE + 1);
+            int child = buffer.getInt(position);
+            position += 4;
+            for (int i=0; i<count && low != null; i++){
+                Object key = readKey(position);
+                position += keyLength(position);
+                if(compare(key, low) >= 0) break;
+                child = buffer.getInt(position);
+                position += 4;
+            }
+            page = child;
+        }
+        Cursor cursor = new Cursor(page);
+        if(low != null){
+            while (cursor.peek()){
+                int cmp = compare(cursor.peekKey(), low);
+                if(cmp > 0 || (cmp == 0 && inclusive)) break;
+                cursor.next();
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * This class iterates the entries of the tree in key order from a position.
+     */
+    public class Cursor {
+        private int page;
+        private int index;
+        private int position;
+        private Object key;
+        private long value;
+
+        private Cursor(int page){
+            this.page = page;
+            this.index = 0;
+            this.position = page * PAGE_SIZE + PAGE_HEADER;
+        }
+
+        /**
+         * Move to the next leaf until there is an entry to read.
+         * @return false at the end of the tree
+         */
+        private boolean peek(){
+            while (page > 0 && index >= buffer.getShort(page * PAGE_SIZE + 1)){
+                page = buffer.getInt(page * PAGE_SIZE + 3);
+                index = 0;
+                position = page * PAGE_SIZE + PAGE_HEADER;
+            }
+            return page > 0;
+        }
+
+        private Object peekKey(){
+            return readKey(position);
+        }
+
+        /**
+         * This method is used to advance to the next entry.
+         * @return false if there is no entry left
+         */
+        public boolean next(){
+            if(!peek()) return false;
+            key = readKey(position);
+            position += keyLength(position);
+            value = buffer.getLong(position);
+            position += 8;
+            index++;
+            return true;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        public long getValue() {
+            return value;
+        }
+    }
+
+    private Object readKey(int position){
+        if(intKeys) return buffer.getInt(position);
+        int length = buffer.getShort(position);
+        byte[] bytes = new byte[length];
+        for (int i=0; i<length; i++) bytes[i] = buffer.get(position + 2 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int keyLength(int position){
+        return intKeys ? 4 : 2 + buffer.getShort(position);
+    }
+
+    /**
+     * This method is used to compare two keys of the same type.
+     */
+    public static int compare(Object key1, Object key2){
+        if(key1 instanceof Integer) return Integer.compare((Integer) key1, (Integer) key2);
+        return ((String) key1).compareTo((String) key2);
+    }
+
+    /**
+     * This method is used to bulk load a tree from entries sorted by key and offset.
+     * @param file index file to write
+     * @param column indexed column
+     * @param intKeys whether the keys are Integer or String
+     * @param keys keys, sorted
+     * @param offsets byte offset of the row of every key
+     * @param sourceLength length of the csv file
+     * @param sourceModified modification time of the csv file
+     * @throws IOException if the file cannot be written or a key is too long
+     */
+    public static void write(File file, int column, boolean intKeys, List<?> keys, long[] offsets, long sourceLength, long sourceModified) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+            int pageCount = 1;
+
+            // leaves, each linked to the next one
+            List<Object> firstKeys = new ArrayList<>();
+            List<Integer> pages = new ArrayList<>();
+            int entry = 0;
+            do {
+                int pageNumber = pageCount++;
+                page.clear();
+                page.put(LEAF).putShort((short) 0).putInt(0);
+                int count = 0;
+                while (entry < keys.size() && page.remaining() >= encodedLength(keys.get(entry)) + 8){
+                    if(count == 0) firstKeys.add(keys.get(entry));
+                    putKey(page, keys.get(entry));
+                    page.putLong(offsets[entry]);
+                    entry++;
+                    count++;
+                }
+                if(count == 0 && entry < keys.size()) throw new IOException("Key too long for an index page");
+                if(count == 0) firstKeys.add(null);
+                page.putShort(1, (short) count);
+                page.putInt(3, entry < keys.size() ? pageCount : 0);
+                writePage(channel, page, pageNumber);
+                pages.add(pageNumber);
+            } while (entry < keys.size());
+
+            // internal levels, up to a single root
+            int height = 1;
+            while (pages.size() > 1){
+                List<Object> upperKeys = new ArrayList<>();
+                List<Integer> upperPages = new ArrayList<>();
+                int child = 0;
+                while (child < pages.size()){
+                    int pageNumber = pageCount++;
+                    page.clear();
+                    page.put(INTERNAL).putShort((short) 0).putInt(pages.get(child));
+                    upperKeys.add(firstKeys.get(child));
+                    child++;
+                    int count = 0;
+                    while (child < pages.size() && page.remaining() >= encodedLength(firstKeys.get(child)) + 4){
+                        putKey(page, firstKeys.get(child));
+                        page.putInt(pages.get(child));
+                        child++;
+                        count++;
+                    }
+                    page.putShort(1, (short) count);
+                    writePage(channel, page, pageNumber);
+                    upperPages.add(pageNumber);
+                }
+                firstKeys = upperKeys;
+                pages = upperPages;
+                height++;
+            }
+
+            page.clear();
+            page.putInt(MAGIC).put((byte) (intKeys ? 0 : 1)).putInt(column).putInt(pages.get(0)).putInt(height)
+                    .putLong(keys.size()).putLong(sourceLength).putLong(sourceModified);
+            writePage(channel, page, 0);
+        }
+    }
+
+    private static int encodedLength(Object key){
+        if(key instanceof Integer) return 4;
+        int length = ((String) key).getBytes(StandardCharsets.UTF_8).length;
+        return 2 + Math.min(length, MAX_KEY_BYTES + 1);
+    }
+
+    private static void putKey(ByteBuffer page, Object key) throws IOException {
+        if(key instanceof Integer){
+            page.putInt((Integer) key);
+            return;
+        }
+        byte[] bytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > MAX_KEY_BYTES) throw new IOException("Key too long for an index: " + key);
+        page.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static void writePage(FileChannel channel, ByteBuffer page, int pageNumber) throws IOException {
+        page.position(0).limit(PAGE_SIZE);
+        long position = (long) pageNumber * PAGE_SIZE;
+        while (page.hasRemaining()) position += channel.write(page, position);
+    }
+}
@@ -0,0 +1,90 @@
+package ed.inf.adbs.minibase.index;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.CsvLoader;
+import ed.inf.adbs.minibase.base.Schema;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class is to build a B+-tree index on one column of a relation.
+ * The column is given by its position in the schema file, and the
+ * index files/name.column.idx maps its values to the byte offsets of
+ * the rows in files/name.csv. The planner uses the index as long as
+ * the csv file is not modified.
+ * @see BPlusTree
+ */
+public class IndexBuilder {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: IndexBuilder database_dir relation column");
+            return;
+        }
+        String dbRoot = args[0];
+        String name = args[1];
+        int column = Integer.parseInt(args[2]);
+        Schema schema = Catalog.readSchemas(dbRoot).get(name);
+        if(schema == null || column < 0 || column >= schema.getTypes().size()){
+            System.err.println("Unknown column " + column + " of relation " + name);
+            return;
+        }
+        File csv = new File(dbRoot + File.separator + "files" + File.separator + name + ".csv");
+        File target = getIndexFile(dbRoot, name, column);
+        build(schema, column, csv, target);
+        System.out.println(name + "." + column + ": " + target);
+    }
+
+    /**
+     * This method is used to get the index file of a column of a relation.
+     * @param dbRoot database directory
+     * @param name name of the relation
+     * @param column position of the column
+     * @return the index file, which may not exist
+     */
+    public static File getIndexFile(String dbRoot, String name, int column){
+        return new File(dbRoot + File.separator + "files" + File.separator + name + "." + column + BPlusTree.EXTENSION);
+    }
+
+    /**
+     * This method is used to read the values of a column with the offsets of
+     * their rows, sort them by value and offset, and bulk load the index.
+     * @param schema schema of the relation
+     * @param column position of the indexed column
+     * @param csv csv file of the relation
+     * @param target index file to be written
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void build(Schema schema, int column, File csv, File target) throws IOException {
+        long length = csv.length();
+        long lastModified = csv.lastModified();
+        List<Object> values = new ArrayList<>();
+        long[] offsets = new long[16];
+        try (CsvLoader.RowReader reader = new CsvLoader.RowReader(csv, schema)) {
+            long offset = 0;
+            while (reader.read(offset)){
+                if(values.size() == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                offsets[values.size()] = reader.getOffset();
+                values.add(reader.getValue(column));
+                offset = reader.getNextOffset();
+            }
+        }
+
+        // rows are read in offset order, so a stable sort keeps equal keys in offset order
+        Integer[] order = new Integer[values.size()];
+        for (int i=0; i<order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparing(values::get, BPlusTree::compare));
+        List<Object> keys = new ArrayList<>(order.length);
+        long[] sortedOffsets = new long[order.length];
+        for (int i=0; i<order.length; i++){
+            keys.add(values.get(order[i]));
+            sortedOffsets[i] = offsets[order[i]];
+        }
+        BPlusTree.write(target, column, schema.getType(column).equals("int"), keys, sortedOffsets, length, lastModified);
+    }
+}
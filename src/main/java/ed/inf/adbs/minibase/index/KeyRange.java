@@ -0,0 +1,86 @@
+package ed.inf.adbs.minibase.index;
+
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+
+/**
+ * This class is a range of keys of an index, given by the comparisons
+ * of the indexed column with constants. A missing bound is null.
+ */
+public class KeyRange {
+
+    private Object low;
+    private boolean lowInclusive;
+    private Object high;
+    private boolean highInclusive;
+
+    public KeyRange(){
+    }
+
+    public Object getLow() {
+        return low;
+    }
+
+    public boolean isLowInclusive() {
+        return lowInclusive;
+    }
+
+    public Object getHigh() {
+        return high;
+    }
+
+    public boolean isHighInclusive() {
+        return highInclusive;
+    }
+
+    /**
+     * This method is used to narrow the range to the keys k passing k op value.
+     * @param op the Comparison Operator, != does not narrow the range
+     * @param value an Integer or String constant
+     * @return false if op cannot narrow the range
+     */
+    public boolean restrict(ComparisonOperator op, Object value){
+        switch (op){
+            case EQ:
+                restrictLow(value, true);
+                restrictHigh(value, true);
+                return true;
+            case GT: restrictLow(value, false); return true;
+            case GEQ: restrictLow(value, true); return true;
+            case LT: restrictHigh(value, false); return true;
+            case LEQ: restrictHigh(value, true); return true;
+            default: return false;
+        }
+    }
+
+    private void restrictLow(Object value, boolean inclusive){
+        int cmp = low == null ? 1 : BPlusTree.compare(value, low);
+        if(cmp > 0 || (cmp == 0 && !inclusive)){
+            low = value;
+            lowInclusive = inclusive;
+        }
+    }
+
+    private void restrictHigh(Object value, boolean inclusive){
+        int cmp = high == null ? -1 : BPlusTree.compare(value, high);
+        if(cmp < 0 || (cmp == 0 && !inclusive)){
+            high = value;
+            highInclusive = inclusive;
+        }
+    }
+
+    /**
+     * This method is used to check whether a key is not above the high bound,
+     * the keys of a cursor from the low bound are read until it is false.
+     */
+    public boolean belowHigh(Object key){
+        if(high == null) return true;
+        int cmp = BPlusTree.compare(key, high);
+        return cmp < 0 || (cmp == 0 && highInclusive);
+    }
+
+    @Override
+    public String toString() {
+        return (low == null ? "(-inf" : (lowInclusive ? "[" : "(") + low) + ", "
+                + (high == null ? "+inf)" : high + (highInclusive ? "]" : ")"));
+    }
+}
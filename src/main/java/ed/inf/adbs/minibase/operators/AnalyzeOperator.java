@@ -0,0 +1,132 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * This class is to create AnalyzeOperator instance to wrap an
+ * operator of the plan for EXPLAIN ANALYZE. It passes every call
+ * to the wrapped operator and counts the rows it produces, the
+ * calls of getNextTuple(), nextBatch() and reset(), and the wall
+ * and CPU time spent in them. The times include the time of the
+ * children, which are wrapped as well. The plan is run on one
+ * thread while it is analyzed, so it is not split.
+ */
+public class AnalyzeOperator extends Operator{
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private Operator childOp;
+    private long rows;
+    private long tupleCalls;
+    private long batchCalls;
+    private long resetCalls;
+    private long wallNanos;
+    private long cpuNanos;
+
+    public AnalyzeOperator(Operator childOp){
+        this.childOp = childOp;
+    }
+
+    public Operator getChildOp() {
+        return childOp;
+    }
+
+    private static long cpuTime(){
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        Tuple tuple = childOp.getNextTuple();
+        cpuNanos += cpuTime() - cpu;
+        wallNanos += System.nanoTime() - wall;
+        tupleCalls++;
+        if(tuple != null) rows++;
+        return tuple;
+    }
+
+    @Override
+    public Batch nextBatch() {
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        Batch batch = childOp.nextBatch();
+        cpuNanos += cpuTime() - cpu;
+        wallNanos += System.nanoTime() - wall;
+        batchCalls++;
+        if(batch != null) rows += batch.getSelectedCount();
+        return batch;
+    }
+
+    @Override
+    public void reset() {
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        childOp.reset();
+        cpuNanos += cpuTime() - cpu;
+        wallNanos += System.nanoTime() - wall;
+        resetCalls++;
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return childOp.getLayout();
+    }
+
+    @Override
+    public String describe() {
+        return childOp.describe();
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return childOp.getChildren();
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getTupleCalls() {
+        return tupleCalls;
+    }
+
+    public long getBatchCalls() {
+        return batchCalls;
+    }
+
+    public long getResetCalls() {
+        return resetCalls;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
+        }
+    }
+}
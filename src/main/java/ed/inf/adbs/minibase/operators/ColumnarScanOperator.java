@@ -0,0 +1,211 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.ColumnarFile;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ed.inf.adbs.minibase.operators.PredicateCompiler.RowPredicate;
+
+/**
+ * This class is to create ColumnarScanOperator instance to
+ * scan records from the columnar file of a relation and create
+ * tuples, with a given RelationalAtom ra. The columns are memory
+ * mapped, so values are read in place without parsing.
+ * Pushed-down conditions are tested on the mapped values,
+ * comparing strings for equality as UTF-8 bytes, and the
+ * string values are only decoded for the rows passing them
+ * and the attributes still needed.
+ */
+public class ColumnarScanOperator extends Operator implements Splittable{
+
+    private Catalog catalog;
+    private RelationalAtom ra;
+    private ColumnarFile columnar;
+    private int index;
+    // range of rows read by this scan
+    private int from;
+    private int to;
+    private Batch batch;
+    private TupleLayout layout;
+    // pushed-down conditions on the stored row, and the rows passing them in a batch
+    private List<ComparisonAtom> cas;
+    private RowPredicate predicate;
+    // whether the rows repeating an earlier row are left out
+    private boolean distinct;
+    private int[] rows;
+    // attribute of the relation read into every slot
+    private int[] columns;
+
+    /**
+     * Constructor method, initialize instance variables.
+     * @param ra the scanned relational atom
+     * @param columnar the opened columnar file of its relation
+     */
+    public ColumnarScanOperator(RelationalAtom ra, ColumnarFile columnar){
+        this(ra, columnar, Collections.emptyList());
+    }
+
+    /**
+     * Constructor method with pushed-down conditions, which are tested on the stored
+     * values of every row before a tuple is created for it.
+     * @param cas ComparisonAtoms on the scanned relation alone
+     */
+    public ColumnarScanOperator(RelationalAtom ra, ColumnarFile columnar, List<ComparisonAtom> cas){
+        this(ra, columnar, cas, ra.getTerms());
+    }
+
+    /**
+     * Constructor method with pushed-down conditions and narrowed tuples, which
+     * only hold the attributes of the given terms of the atom.
+     * @param cas ComparisonAtoms on the scanned relation alone
+     * @param terms terms of the atom still needed above the scan
+     */
+    public ColumnarScanOperator(RelationalAtom ra, ColumnarFile columnar, List<ComparisonAtom> cas, List<? extends Term> terms){
+        this(ra, columnar, cas, terms, false);
+    }
+
+    /**
+     * Constructor method which can also leave out the rows repeating an earlier
+     * row of the file, which are found when the scan is created.
+     * @param cas ComparisonAtoms on the scanned relation alone
+     * @param terms terms of the atom still needed above the scan
+     * @param distinct whether every distinct row is only read once
+     */
+    public ColumnarScanOperator(RelationalAtom ra, ColumnarFile columnar, List<ComparisonAtom> cas, List<? extends Term> terms, boolean distinct){
+        this.catalog = Catalog.getInstance();
+        this.ra = ra;
+        this.columnar = columnar;
+        TupleLayout stored = new TupleLayout(new ArrayList<>(ra.getTerms()), columnar.getSchema());
+        this.layout = TupleLayout.of(terms, stored);
+        this.columns = stored.slotsOf(terms);
+        this.from = 0;
+        this.to = columnar.size();
+        this.cas = cas;
+        this.distinct = distinct;
+        this.predicate = PredicateCompiler.compileRows(cas, stored, columnar, distinct ? columnar.getDuplicateRows() : null);
+        reset();
+    }
+
+    /**
+     * Constructor of a split, reading a range of rows of the file of the given scan.
+     */
+    private ColumnarScanOperator(ColumnarScanOperator scan, int from, int to){
+        this.catalog = scan.catalog;
+        this.ra = scan.ra;
+        this.columnar = scan.columnar;
+        this.layout = scan.layout;
+        this.cas = scan.cas;
+        this.predicate = scan.predicate;
+        this.distinct = scan.distinct;
+        this.columns = scan.columns;
+        this.from = from;
+        this.to = to;
+        reset();
+    }
+
+    /**
+     * This method is used to get next tuple from the columnar file.
+     * If the file still has a next row, create a tuple of it and
+     * return it. If not, return null as a terminator.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        while (index < to) {
+            int row = index++;
+            if(predicate.test(row)) return columnar.getTuple(row, columns, layout);
+        }
+        return null;
+    }
+
+    /**
+     * This method is used to get the next batch of rows, copied column
+     * by column from the mapped columns.
+     * With pushed-down conditions, the rows passing them are collected first
+     * and only these rows are copied.
+     * @return the next batch, or null if all rows have been read
+     */
+    @Override
+    public Batch nextBatch() {
+        if(index >= to) return null;
+        if(batch == null) batch = new Batch(layout);
+        if(PredicateCompiler.isTrue(predicate)){
+            int count = Math.min(batch.capacity(), to - index);
+            columnar.copyRows(index, count, columns, batch);
+            index += count;
+            return batch;
+        }
+        if(rows == null) rows = new int[batch.capacity()];
+        int count = 0;
+        while (index < to && count < rows.length){
+            int row = index++;
+            if(predicate.test(row)) rows[count++] = row;
+        }
+        if(count == 0) return null;
+        columnar.copyRows(rows, count, columns, batch);
+        return batch;
+    }
+
+    /**
+     * This method is used reset the index of this operator,
+     * so that the scan will read from the first row next time.
+     */
+    @Override
+    public void reset() {
+        index = from;
+    }
+
+    @Override
+    public boolean canSplit() {
+        return true;
+    }
+
+    @Override
+    public int getSplitSize() {
+        return columnar.size();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        return new ColumnarScanOperator(this, from, to);
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Description of the atom, the terms kept if some are left out, and the pushed-down conditions.
+     */
+    @Override
+    public String describe() {
+        String description = "ColumnarScanOperator " + ra;
+        if(layout.size() < ra.getTerms().size()) description += " keeping " + layout.getTerms();
+        if(distinct) description += " distinct";
+        return cas.isEmpty() ? description : description + " filter " + cas;
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            catalog.writeOutputBatch(batch);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * This class is to create ExternalSort instance to sort tuples of one
+ * layout which may not fit in memory. Tuples are collected in memory
+ * until their estimated size exceeds the memory limit, then they are
+ * sorted and written to a temporary file as a sorted run. Once all
+ * tuples have been added, the runs are merged with a k-way merge on a
+ * heap holding the current tuple of every run. If nothing was spilled
+ * the tuples are just sorted in memory. The sort is stable.
+ */
+public class ExternalSort implements Closeable {
+
+    // system property to configure the memory limit in bytes
+    public static final String MEMORY_PROPERTY = "minibase.sort.bytes";
+    public static final long DEFAULT_MEMORY = 64L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private TupleLayout layout;
+    private Comparator<Tuple> comparator;
+    private long memoryLimit;
+    private List<Tuple> buffer;
+    private long bufferBytes;
+    private List<File> runs;
+    private List<Integer> runSizes;
+
+    // state of the output, either the sorted buffer or the heap of runs
+    private boolean finished;
+    private int bufferIndex;
+    private PriorityQueue<RunCursor> heap;
+    private List<RunCursor> cursors;
+
+    public ExternalSort(TupleLayout layout, Comparator<Tuple> comparator, long memoryLimit){
+        this.layout = layout;
+        this.comparator = comparator;
+        this.memoryLimit = memoryLimit;
+        this.buffer = new ArrayList<>();
+        this.runs = new ArrayList<>();
+        this.runSizes = new ArrayList<>();
+    }
+
+    public ExternalSort(TupleLayout layout, Comparator<Tuple> comparator){
+        this(layout, comparator, Long.getLong(MEMORY_PROPERTY, DEFAULT_MEMORY));
+    }
+
+    /**
+     * A sorted run being read, with its current tuple.
+     */
+    private class RunCursor {
+        private int run;
+        private DataInputStream in;
+        private int remaining;
+        private Tuple current;
+
+        private RunCursor(int run) throws IOException {
+            this.run = run;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(runs.get(run)), BUFFER_SIZE));
+            this.remaining = runSizes.get(run);
+            advance();
+        }
+
+        private void advance() throws IOException {
+            current = remaining-- > 0 ? read(in) : null;
+        }
+    }
+
+    public int getRunCount(){
+        return runs.size();
+    }
+
+    /**
+     * This method is used to add a tuple, spilling a sorted run
+     * to disk if the memory limit is exceeded.
+     * @param tuple tuple of the layout of this sort
+     */
+    public void add(Tuple tuple){
+        buffer.add(tuple);
+        bufferBytes += estimateBytes(tuple);
+        if(bufferBytes > memoryLimit) spill();
+    }
+
+    /**
+     * This method is used to read all tuples of an operator.
+     * @param input operator producing tuples of the layout of this sort
+     */
+    public void addAll(Operator input){
+        while (true){
+            Tuple tuple = input.getNextTuple();
+            if(tuple == null) break;
+            add(tuple);
+        }
+    }
+
+    /**
+     * This method is used to get the next tuple in sorted order,
+     * the first call ends the input.
+     * @return next tuple, or null if all tuples have been returned
+     */
+    public Tuple next(){
+        try {
+            if(!finished){
+                finished = true;
+                if(runs.isEmpty()) buffer.sort(comparator);
+                else startMerge();
+            }
+            if(heap == null){
+                return bufferIndex < buffer.size() ? buffer.get(bufferIndex++) : null;
+            }
+            RunCursor cursor = heap.poll();
+            if(cursor == null) return null;
+            Tuple tuple = cursor.current;
+            cursor.advance();
+            if(cursor.current != null) heap.add(cursor);
+            return tuple;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void startMerge() throws IOException {
+        if(!buffer.isEmpty()) spill();
+        // ties are broken by run, which keeps the sort stable
+        heap = new PriorityQueue<>(Math.max(1, runs.size()), (c1, c2) -> {
+            int cmp = comparator.compare(c1.current, c2.current);
+            return cmp != 0 ? cmp : Integer.compare(c1.run, c2.run);
+        });
+        cursors = new ArrayList<>();
+        for (int i=0; i<runs.size(); i++){
+            RunCursor cursor = new RunCursor(i);
+            cursors.add(cursor);
+            if(cursor.current != null) heap.add(cursor);
+        }
+    }
+
+    private void spill(){
+        buffer.sort(comparator);
+        try {
+            File file = File.createTempFile("minibase-run", ".bin");
+            file.deleteOnExit();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+                for (Tuple tuple: buffer) write(out, tuple);
+            }
+            runs.add(file);
+            runSizes.add(buffer.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+    }
+
+    private void write(DataOutputStream out, Tuple tuple) throws IOException {
+        for (int i=0; i<layout.size(); i++){
+            if(layout.isInt(i)) out.writeInt(tuple.getInt(i));
+            else if(layout.isLong(i)) out.writeLong(tuple.getLong(i));
+            else {
+                byte[] bytes = tuple.getString(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    private Tuple read(DataInputStream in) throws IOException {
+        Tuple tuple = Tuple.allocate(layout);
+        for (int i=0; i<layout.size(); i++){
+            if(layout.isInt(i)) tuple.setInt(i, in.readInt());
+            else if(layout.isLong(i)) tuple.setLong(i, in.readLong());
+            else {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                tuple.setString(i, new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return tuple;
+    }
+
+    /**
+     * This method is used to estimate the heap size of a tuple in bytes,
+     * counting the arrays of its values and the characters of its strings.
+     */
+    private long estimateBytes(Tuple tuple){
+        long bytes = 48 + 12L * layout.size();
+        if(layout.hasStrings()){
+            for (int i=0; i<layout.size(); i++){
+                if(!layout.isInt(i) && !layout.isLong(i)) bytes += 40 + 2L * tuple.getString(i).length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * This method is used to close the runs being read and delete the temporary files.
+     */
+    @Override
+    public void close(){
+        if(cursors != null){
+            for (RunCursor cursor: cursors){
+                try {
+                    cursor.in.close();
+                } catch (IOException e) {
+                    System.err.println("Exception occurred during closing a sorted run");
+                }
+            }
+        }
+        for (File run: runs) run.delete();
+        runs.clear();
+        runSizes.clear();
+        buffer = new ArrayList<>();
+        heap = null;
+        cursors = null;
+    }
+}
@@ -0,0 +1,440 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ed.inf.adbs.minibase.operators.PredicateCompiler.BatchPredicate;
+import ed.inf.adbs.minibase.operators.PredicateCompiler.TuplePredicate;
+
+/**
+ * This class is to create HashJoinOperator instance to
+ * merge tuples from two child operators on the equi-join
+ * ComparisonAtoms (e.g. x = a), based on classic hash join.
+ * The smaller input is used to build the hash table, the
+ * other one probes it, and the non-equality ComparisonAtoms
+ * are applied to the merged tuples as a residual filter.
+ * In batch mode both children are read in batches, the
+ * probe rows are looked up directly from the probe batches
+ * and the residual filter is applied a batch at a time.
+ * The join is split on its left child, the pipeline of a
+ * left-deep plan, and the splits share one hash table of
+ * the right child.
+ */
+public class HashJoinOperator extends Operator implements Splittable{
+
+    private Operator childOp1;
+    private Operator childOp2;
+    private List<ComparisonAtom> cas;
+    // equi-join atoms, term1 refers to the left child and term2 to the right child
+    private List<ComparisonAtom> equiCAS;
+    // remaining atoms checked against every merged tuple
+    private List<ComparisonAtom> residualCAS;
+    private TuplePredicate residualPredicate;
+    private TupleMerger merger;
+    // the join key is held in a tuple of the key layout
+    private TupleLayout keyLayout;
+    private int[] leftKeySlots;
+    private int[] rightKeySlots;
+    // an equality between an int and a string attribute never holds, so the join is empty
+    private boolean neverMatches;
+
+    private Map<Tuple, List<Tuple>> hashTable;
+    private boolean buildLeft;
+    // tuples of the probe side that were read while looking for the smaller input
+    private List<Tuple> probeBuffer;
+    private int probeBufferIndex;
+    private Tuple probeTuple;
+    private List<Tuple> matches;
+    private int matchIndex;
+    // state of the batch mode, the probe row is probeTuple if set, else probeRow of probeBatch
+    private BatchPredicate residualBatchPredicate;
+    private Batch batch;
+    private Batch probeBatch;
+    private int probeIndex;
+    private int probeRow;
+    private boolean probeDone;
+    // hash table of the right child, shared by the splits of this operator
+    private Map<Tuple, List<Tuple>> sharedTable;
+    // whether this operator is a split, probing the shared table
+    private boolean isSplit;
+
+    public HashJoinOperator(Operator childOp1, Operator childOp2, List<ComparisonAtom> cas) {
+        this.childOp1 = childOp1;
+        this.childOp2 = childOp2;
+        this.cas = cas;
+        this.merger = new TupleMerger(childOp1.getLayout(), childOp2.getLayout());
+        splitComparisonAtoms(childOp1.getLayout(), childOp2.getLayout());
+        this.hashTable = null;
+    }
+
+    /**
+     * Constructor of a split, probing the shared hash table of the given
+     * operator with the tuples of the given split of its left child.
+     */
+    private HashJoinOperator(HashJoinOperator join, Operator leftSplit){
+        this.childOp1 = leftSplit;
+        this.cas = join.cas;
+        this.merger = join.merger;
+        this.equiCAS = join.equiCAS;
+        this.residualCAS = join.residualCAS;
+        this.residualPredicate = join.residualPredicate;
+        this.residualBatchPredicate = join.residualBatchPredicate;
+        this.keyLayout = join.keyLayout;
+        this.leftKeySlots = join.leftKeySlots;
+        this.rightKeySlots = join.rightKeySlots;
+        this.neverMatches = join.neverMatches;
+        this.sharedTable = join.sharedTable;
+        this.isSplit = true;
+        reset();
+    }
+
+    /**
+     * This method is used to check whether the given ComparisonAtom
+     * can be used as a hash join key, i.e. an equality between two variables.
+     * @param ca ComparisonAtom to be checked
+     * @return boolean flag of check result
+     */
+    public static boolean isEquiJoin(ComparisonAtom ca){
+        return ca.getOp() == ComparisonOperator.EQ
+                && ca.getTerm1() instanceof Variable
+                && ca.getTerm2() instanceof Variable;
+    }
+
+    /**
+     * This method is used to build the hash table.
+     * Both children are read alternately until one of them runs out, so the
+     * smaller input is found without reading the larger one to its end.
+     * The exhausted side becomes the build side, the other one probes it,
+     * starting with the tuples that have already been read. If the table of the
+     * right child has been built for the splits, it is reused and the left child
+     * probes it from its start.
+     * @param batched whether the children are read in batches
+     */
+    private void build(boolean batched){
+        if(sharedTable != null){
+            hashTable = sharedTable;
+            buildLeft = false;
+            probeBuffer = new ArrayList<>();
+            probeBufferIndex = 0;
+            return;
+        }
+        if(neverMatches){
+            hashTable = new HashMap<>();
+            probeBuffer = new ArrayList<>();
+            probeBufferIndex = 0;
+            return;
+        }
+        List<Tuple> left = new ArrayList<>();
+        List<Tuple> right = new ArrayList<>();
+        buildLeft = readSmaller(left, right, batched);
+        hashTable = new HashMap<>();
+        if(left.isEmpty() || right.isEmpty()){
+            probeBuffer = new ArrayList<>();
+            probeBufferIndex = 0;
+            return;
+        }
+
+        List<Tuple> buildTuples = buildLeft ? left : right;
+        for (Tuple tuple: buildTuples){
+            hashTable.computeIfAbsent(getKey(tuple, buildLeft), k -> new ArrayList<>()).add(tuple);
+        }
+        probeBuffer = buildLeft ? right : left;
+        probeBufferIndex = 0;
+    }
+
+    /**
+     * This method is used to read both children alternately until one of them runs out.
+     * @param left list to add the tuples of the left child to
+     * @param right list to add the tuples of the right child to
+     * @param batched whether the children are read in batches
+     * @return whether the left child is the build side, i.e. it ran out first
+     */
+    private boolean readSmaller(List<Tuple> left, List<Tuple> right, boolean batched){
+        boolean leftDone = false;
+        boolean rightDone = false;
+        while (!leftDone && !rightDone){
+            leftDone = !read(childOp1, left, batched);
+            rightDone = !read(childOp2, right, batched);
+        }
+        // prefer the right child as build side on a tie, which keeps the left order in the output
+        return leftDone && !rightDone;
+    }
+
+    /**
+     * This method is used to read the next tuple, or the next batch of tuples, of a child.
+     * @param childOp the child to read
+     * @param tuples list to add the tuples to
+     * @param batched whether to read a batch
+     * @return false if the child has no tuple left
+     */
+    private boolean read(Operator childOp, List<Tuple> tuples, boolean batched){
+        if(!batched){
+            Tuple tuple = childOp.getNextTuple();
+            if(tuple == null) return false;
+            tuples.add(tuple);
+            return true;
+        }
+        Batch childBatch = childOp.nextBatch();
+        if(childBatch == null) return false;
+        int[] selection = childBatch.getSelection();
+        for (int k=0; k<childBatch.getSelectedCount(); k++){
+            tuples.add(childBatch.getTuple(selection[k]));
+        }
+        return true;
+    }
+
+    /**
+     * This method is used to divide the ComparisonAtoms into equi-join keys
+     * and residual conditions, orienting the key atoms to (left, right),
+     * and to resolve the slots of the keys and compile the residual conditions.
+     * An equality between attributes of different types never holds, the
+     * join is then known to be empty and its children are never read.
+     * @param leftLayout layout of the tuples from the left child
+     * @param rightLayout layout of the tuples from the right child
+     */
+    private void splitComparisonAtoms(TupleLayout leftLayout, TupleLayout rightLayout){
+        equiCAS = new ArrayList<>();
+        residualCAS = new ArrayList<>();
+        for (ComparisonAtom ca: cas){
+            if(isEquiJoin(ca)){
+                ComparisonAtom oriented = null;
+                if(leftLayout.contains(ca.getTerm1()) && rightLayout.contains(ca.getTerm2())){
+                    oriented = ca;
+                }else if(rightLayout.contains(ca.getTerm1()) && leftLayout.contains(ca.getTerm2())){
+                    oriented = new ComparisonAtom(ca.getTerm2(), ca.getTerm1(), ca.getOp());
+                }
+                if(oriented != null){
+                    String leftType = leftLayout.getType(leftLayout.slotOf(oriented.getTerm1()));
+                    String rightType = rightLayout.getType(rightLayout.slotOf(oriented.getTerm2()));
+                    if(leftType.equals(rightType)) equiCAS.add(oriented);
+                    else neverMatches = true;
+                    continue;
+                }
+            }
+            residualCAS.add(ca);
+        }
+        residualPredicate = PredicateCompiler.compile(residualCAS, merger.getLayout());
+        residualBatchPredicate = PredicateCompiler.compileBatch(residualCAS, merger.getLayout());
+
+        List<Term> leftKeys = new ArrayList<>();
+        List<Term> rightKeys = new ArrayList<>();
+        for (ComparisonAtom ca: equiCAS){
+            leftKeys.add(ca.getTerm1());
+            rightKeys.add(ca.getTerm2());
+        }
+        keyLayout = TupleLayout.of(leftKeys, leftLayout);
+        leftKeySlots = leftLayout.slotsOf(leftKeys);
+        rightKeySlots = rightLayout.slotsOf(rightKeys);
+    }
+
+    /**
+     * This method is used to get the join key of the given tuple.
+     * @param tuple tuple to extract key values from
+     * @param fromLeft whether the tuple comes from the left child
+     * @return a tuple holding the key values
+     */
+    private Tuple getKey(Tuple tuple, boolean fromLeft){
+        return tuple.project(keyLayout, fromLeft ? leftKeySlots : rightKeySlots);
+    }
+
+    /**
+     * This method is used to get next probe tuple, first from the tuples
+     * buffered while building, then from the probe child itself.
+     * @return next probe tuple or null
+     */
+    private Tuple nextProbeTuple(){
+        if(probeBufferIndex < probeBuffer.size()){
+            return probeBuffer.get(probeBufferIndex++);
+        }
+        if(hashTable.isEmpty()) return null;
+        return buildLeft ? childOp2.getNextTuple() : childOp1.getNextTuple();
+    }
+
+    /**
+     * This method is used to get next tuple.
+     * The hash table is built on the first call. Each probe tuple is looked up
+     * in the hash table and merged with every match, left columns first.
+     * If there are residual conditions, it would test the compiled residual
+     * predicate to check whether the merged tuple satisfy it.
+     * @see PredicateCompiler#compile(List, TupleLayout)
+     */
+    @Override
+    public Tuple getNextTuple() {
+        if(hashTable == null) build(false);
+
+        while (true){
+            if(matches == null || matchIndex >= matches.size()){
+                probeTuple = nextProbeTuple();
+                if(probeTuple == null) return null;
+                matches = hashTable.get(getKey(probeTuple, !buildLeft));
+                matchIndex = 0;
+                continue;
+            }
+            Tuple buildTuple = matches.get(matchIndex++);
+            Tuple tuple = buildLeft ? merger.merge(buildTuple, probeTuple) : merger.merge(probeTuple, buildTuple);
+            if(residualPredicate.test(tuple)){
+                return tuple;
+            }
+        }
+    }
+
+    /**
+     * This method is used to get the next batch of merged tuples.
+     * The hash table is built from batches on the first call. Every probe row
+     * is looked up in the hash table and merged with every match into the
+     * batch, which is then filtered with the compiled residual batch predicate.
+     * @see PredicateCompiler#compileBatch(List, TupleLayout)
+     */
+    @Override
+    public Batch nextBatch() {
+        if(hashTable == null) build(true);
+        if(batch == null) batch = new Batch(getLayout());
+
+        while (true){
+            batch.clear();
+            while (!batch.isFull()){
+                if(matches == null || matchIndex >= matches.size()){
+                    if(!nextProbeRow()) break;
+                    continue;
+                }
+                Tuple buildTuple = matches.get(matchIndex++);
+                if(probeTuple != null){
+                    if(buildLeft) merger.mergeInto(batch, buildTuple, probeTuple);
+                    else merger.mergeInto(batch, probeTuple, buildTuple);
+                }else {
+                    if(buildLeft) merger.mergeInto(batch, buildTuple, probeBatch, probeRow);
+                    else merger.mergeInto(batch, probeBatch, probeRow, buildTuple);
+                }
+            }
+            if(batch.size() == 0) return null;
+            residualBatchPredicate.filter(batch);
+            if(batch.getSelectedCount() > 0) return batch;
+        }
+    }
+
+    /**
+     * This method is used to advance to the next probe row in batch mode, first
+     * from the tuples buffered while building, then from the batches of the probe
+     * child, and to look up its matches.
+     * @return false if there is no probe row left
+     */
+    private boolean nextProbeRow(){
+        if(probeBufferIndex < probeBuffer.size()){
+            probeTuple = probeBuffer.get(probeBufferIndex++);
+            matches = hashTable.get(getKey(probeTuple, !buildLeft));
+            matchIndex = 0;
+            return true;
+        }
+        probeTuple = null;
+        if(hashTable.isEmpty()) return false;
+        while (!probeDone && (probeBatch == null || probeIndex == probeBatch.getSelectedCount())){
+            probeBatch = buildLeft ? childOp2.nextBatch() : childOp1.nextBatch();
+            probeIndex = 0;
+            probeDone = probeBatch == null;
+        }
+        if(probeDone) return false;
+        probeRow = probeBatch.getSelection()[probeIndex++];
+        matches = hashTable.get(probeBatch.project(probeRow, keyLayout, buildLeft ? rightKeySlots : leftKeySlots));
+        matchIndex = 0;
+        return true;
+    }
+
+    /**
+     * This method is used reset this operator, by resetting its child operators
+     * and dropping the hash table, so it will be built again next time.
+     */
+    @Override
+    public void reset() {
+        probeTuple = null;
+        matches = null;
+        probeBatch = null;
+        probeDone = false;
+        if(isSplit){
+            // a split keeps the shared table and probes it from its left child
+            buildLeft = false;
+            childOp1.reset();
+            hashTable = sharedTable;
+            probeBuffer = new ArrayList<>();
+            probeBufferIndex = 0;
+            return;
+        }
+        childOp1.reset();
+        childOp2.reset();
+        hashTable = null;
+        probeBuffer = null;
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return merger.getLayout();
+    }
+
+    /**
+     * This method is used to build the hash table of the right child shared by the splits.
+     */
+    private void buildShared(){
+        if(sharedTable != null) return;
+        sharedTable = new HashMap<>();
+        if(neverMatches) return;
+        List<Tuple> right = new ArrayList<>();
+        childOp2.reset();
+        while (read(childOp2, right, true));
+        for (Tuple tuple: right){
+            sharedTable.computeIfAbsent(getKey(tuple, false), k -> new ArrayList<>()).add(tuple);
+        }
+    }
+
+    /**
+     * A hash join is split on its left child, without reading any input, and the
+     * splits probe one hash table of the right child, built when the first split
+     * is created. The splits produce the tuples of a serial join building on the
+     * right child in the same order. If the left input turns out to be smaller,
+     * the serial join builds on it instead and returns the same tuples in another order.
+     */
+    @Override
+    public boolean canSplit() {
+        return !isSplit && Splittable.isSplittable(childOp1);
+    }
+
+    @Override
+    public int getSplitSize() {
+        return ((Splittable) childOp1).getSplitSize();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        buildShared();
+        return new HashJoinOperator(this, ((Splittable) childOp1).split(from, to));
+    }
+
+    @Override
+    public String describe() {
+        return "HashJoinOperator on " + cas;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(childOp1, childOp2);
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
+        }
+    }
+}
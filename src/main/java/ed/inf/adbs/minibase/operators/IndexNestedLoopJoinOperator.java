@@ -0,0 +1,139 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import ed.inf.adbs.minibase.operators.PredicateCompiler.TuplePredicate;
+
+/**
+ * This class is to create IndexNestedLoopJoinOperator instance to
+ * merge tuples from an outer child operator with the rows of an
+ * inner relation found through an index on its join column. For
+ * every outer tuple, the index is probed with the value of the
+ * outer join variable, so only the matching inner rows are read,
+ * and all the given ComparisonAtoms are then checked against the
+ * merged tuples, including the ones on the inner relation alone.
+ */
+public class IndexNestedLoopJoinOperator extends Operator implements Splittable{
+
+    private Operator childOp1;
+    private IndexScanOperator childOp2;
+    private Term outerTerm;
+    private List<ComparisonAtom> cas;
+    private TupleMerger merger;
+    private TuplePredicate predicate;
+    // slot of the outer join variable
+    private int outerSlot;
+    private boolean intKey;
+    private Tuple tuple1;
+
+    /**
+     * Constructor method, initialize instance variables.
+     * @param childOp1 the outer child
+     * @param childOp2 index scan of the inner relation, on its join column
+     * @param outerTerm variable of the outer child equal to the indexed column
+     * @param cas ComparisonAtoms checked against the merged tuples
+     */
+    public IndexNestedLoopJoinOperator(Operator childOp1, IndexScanOperator childOp2, Term outerTerm, List<ComparisonAtom> cas) {
+        this.childOp1 = childOp1;
+        this.childOp2 = childOp2;
+        this.outerTerm = outerTerm;
+        this.cas = cas;
+        this.merger = new TupleMerger(childOp1.getLayout(), childOp2.getLayout());
+        this.predicate = PredicateCompiler.compile(cas, merger.getLayout());
+        this.outerSlot = childOp1.getLayout().slotOf(outerTerm);
+        this.intKey = childOp1.getLayout().isInt(outerSlot);
+        this.tuple1 = null;
+    }
+
+    /**
+     * This method is used to get next tuple.
+     * Whenever the probe of the current outer tuple has no row left, advance
+     * the outer child and probe the index with its join value. Each inner row
+     * is merged with the outer tuple and returned if it satisfies the predicate.
+     * When the outer child touch its end, return null.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        while (true){
+            if(tuple1 == null){
+                tuple1 = childOp1.getNextTuple();
+                if(tuple1 == null){
+                    // close the csv file of the inner relation
+                    childOp2.reset();
+                    return null;
+                }
+                childOp2.probe(intKey ? (Object) tuple1.getInt(outerSlot) : tuple1.getString(outerSlot));
+            }
+            Tuple tuple2 = childOp2.getNextTuple();
+            if(tuple2 == null){
+                tuple1 = null;
+                continue;
+            }
+            Tuple tuple = merger.merge(tuple1, tuple2);
+            if(predicate.test(tuple)) return tuple;
+        }
+    }
+
+    /**
+     * This method is used reset this operator, by resetting its child operators.
+     */
+    @Override
+    public void reset() {
+        childOp1.reset();
+        childOp2.reset();
+        tuple1 = null;
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return merger.getLayout();
+    }
+
+    /**
+     * An index nested loop join is split on its outer child,
+     * every split probing the index through a scan of its own.
+     */
+    @Override
+    public boolean canSplit() {
+        return Splittable.isSplittable(childOp1);
+    }
+
+    @Override
+    public int getSplitSize() {
+        return ((Splittable) childOp1).getSplitSize();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        return new IndexNestedLoopJoinOperator(((Splittable) childOp1).split(from, to), childOp2.copy(), outerTerm, cas);
+    }
+
+    @Override
+    public String describe() {
+        return "IndexNestedLoopJoinOperator probing with " + outerTerm + " on " + cas;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(childOp1, childOp2);
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
+        }
+    }
+}
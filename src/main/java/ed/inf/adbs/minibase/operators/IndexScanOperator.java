@@ -0,0 +1,150 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+import ed.inf.adbs.minibase.base.CsvLoader;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.Schema;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+import ed.inf.adbs.minibase.index.BPlusTree;
+import ed.inf.adbs.minibase.index.KeyRange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+/**
+ * This class is to create IndexScanOperator instance to
+ * scan the records of a relation whose indexed column lies in
+ * a range of keys, with a given RelationalAtom ra. The B+-tree
+ * gives the byte offsets of the matching rows, and only these
+ * rows are read from the csv file, in key order. An index
+ * nested loop join probes the scan with one key at a time.
+ */
+public class IndexScanOperator extends Operator{
+
+    private Catalog catalog;
+    private RelationalAtom ra;
+    private Schema schema;
+    private File csv;
+    private BPlusTree index;
+    private KeyRange range;
+    private TupleLayout layout;
+    private BPlusTree.Cursor cursor;
+    private CsvLoader.RowReader reader;
+    // whether the csv file is kept open for the next probe
+    private boolean probing;
+
+    /**
+     * Constructor method, initialize instance variables.
+     * @param ra the scanned relational atom
+     * @param schema schema of its relation
+     * @param csv csv file of its relation
+     * @param index up-to-date index of a column of the relation
+     * @param range range of keys to be read
+     */
+    public IndexScanOperator(RelationalAtom ra, Schema schema, File csv, BPlusTree index, KeyRange range){
+        this.catalog = Catalog.getInstance();
+        this.ra = ra;
+        this.schema = schema;
+        this.csv = csv;
+        this.index = index;
+        this.range = range;
+        this.layout = new TupleLayout(new ArrayList<>(ra.getTerms()), schema);
+        reset();
+    }
+
+    /**
+     * This method is used to get the next row in the key range. The csv
+     * file is opened on the first row and closed after the last one.
+     * @return the tuple of the row, or null if there is no row left
+     */
+    @Override
+    public Tuple getNextTuple() {
+        try {
+            if(cursor == null) return null;
+            if(!cursor.next() || !range.belowHigh(cursor.getKey())){
+                cursor = null;
+                if(!probing) close();
+                return null;
+            }
+            if(reader == null) reader = new CsvLoader.RowReader(csv, schema);
+            if(!reader.read(cursor.getValue())) throw new IOException("Index of " + ra.getName() + " is out of date");
+            Tuple tuple = Tuple.allocate(layout);
+            reader.copyTo(tuple);
+            return tuple;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void close() throws IOException {
+        cursor = null;
+        if(reader != null) reader.close();
+        reader = null;
+    }
+
+    /**
+     * This method is used to reset the cursor of this operator,
+     * so that the scan will read from the lowest key next time.
+     * The csv file is closed, even after probes.
+     */
+    @Override
+    public void reset() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        probing = false;
+        cursor = index.seek(range.getLow(), range.isLowInclusive());
+    }
+
+    /**
+     * This method is used to restrict the scan to the rows whose indexed column
+     * equals the given key, keeping the csv file open between probes.
+     * @param key an Integer or String key
+     */
+    public void probe(Object key) {
+        range = new KeyRange();
+        range.restrict(ComparisonOperator.EQ, key);
+        probing = true;
+        cursor = index.seek(key, true);
+    }
+
+    /**
+     * This method is used to create a scan of the same index, for another
+     * thread to probe.
+     */
+    IndexScanOperator copy() {
+        return new IndexScanOperator(ra, schema, csv, index, range);
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public String describe() {
+        return "IndexScanOperator " + ra + " keys " + range + " of column " + index.getColumn();
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            catalog.writeOutputBatch(batch);
+        }
+    }
+}
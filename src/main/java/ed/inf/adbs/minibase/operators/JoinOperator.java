@@ -3,28 +3,44 @@ package ed.inf.adbs.minibase.operators;
 import ed.inf.adbs.minibase.Catalog;
 import ed.inf.adbs.minibase.base.*;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import static ed.inf.adbs.minibase.operators.SelectOperator.compareTuple;
+import ed.inf.adbs.minibase.operators.PredicateCompiler.BatchPredicate;
+import ed.inf.adbs.minibase.operators.PredicateCompiler.TuplePredicate;
 
 /**
  * This class is to create JoinOperator instance to
  * merge tuples from two child operators, with given
  * ComparisonAtoms, based on simple nested loop join.
+ * In batch mode the inner child is read in batches, and
+ * the merged rows are filtered a batch at a time.
  */
-public class JoinOperator extends Operator{
+public class JoinOperator extends Operator implements Splittable{
 
     private Operator childOp1;
     private Operator childOp2;
     private List<ComparisonAtom> cas;
+    private TupleMerger merger;
+    private TuplePredicate predicate;
     private Tuple tuple1;
     private Tuple tuple2;
+    // state of the batch mode
+    private BatchPredicate batchPredicate;
+    private Batch batch;
+    private Batch outerBatch;
+    private int outerIndex;
+    private Batch innerBatch;
+    private int innerIndex;
+    private boolean outerDone;
 
     public JoinOperator(Operator childOp1, Operator childOp2, List<ComparisonAtom> cas) {
         this.childOp1 = childOp1;
         this.childOp2 = childOp2;
         this.cas = cas;
+        this.merger = new TupleMerger(childOp1.getLayout(), childOp2.getLayout());
+        this.predicate = PredicateCompiler.compile(cas, merger.getLayout());
+        this.batchPredicate = PredicateCompiler.compileBatch(cas, merger.getLayout());
         this.tuple1 = null;
         this.tuple2 = null;
     }
@@ -35,10 +51,10 @@ public class JoinOperator extends Operator{
      * The left child is in outer and the right child is in inner.
      * Each time this method is called, it would grasp tuples from both the left and the right operator.
      * If there are no join conditions, it would directly return the merged tuple. Otherwise, it
-     * would call compareTuple method to check whether the merged tuple satisfy it.
+     * would test the compiled predicate to check whether the merged tuple satisfy it.
      * Whenever the inner loop arrive its end, reset it and advance the left operator.
      * When the left operator touch its end, return null.
-     * @see ed.inf.adbs.minibase.operators.SelectOperator#compareTuple(Tuple, List)
+     * @see PredicateCompiler#compile(List, TupleLayout)
      */
     @Override
     public Tuple getNextTuple() {
@@ -49,11 +65,12 @@ public class JoinOperator extends Operator{
                 if(tuple1 == null) return null;
                 childOp2.reset();
                 tuple2 = childOp2.getNextTuple();
+                if(tuple2 == null) continue;
             }
-            Tuple tuple = mergeTuple(tuple1, tuple2);
+            Tuple tuple = merger.merge(tuple1, tuple2);
             tuple2 = childOp2.getNextTuple();
             if(cas.size()!=0){
-                if (compareTuple(tuple, cas)) {
+                if (predicate.test(tuple)) {
                     return tuple;
                 }
             }else return tuple;
@@ -61,26 +78,54 @@ public class JoinOperator extends Operator{
     }
 
     /**
-     * A method that used to create a new tuple based on the merge of given two tuples
-     * @param tuple1 First tuple to merge.
-     * @param tuple2 Second tuple to merge.
-     * @return Merged tuple.
+     * This method is used to get the next batch of merged tuples.
+     * For every row of the outer child, the inner child is reset and read
+     * in batches, and each inner row is merged with the outer row into the
+     * batch. The full batch is then filtered with the compiled batch predicate.
+     * @see PredicateCompiler#compileBatch(List, TupleLayout)
      */
-    public static Tuple mergeTuple(Tuple tuple1, Tuple tuple2){
-        List<Object> newValues = new ArrayList<>();
-        List<String> newTypes = new ArrayList<>();
-        List<Term> newTerms = new ArrayList<>();
-
-        for(Tuple t: new Tuple[]{tuple1, tuple2}){
-            for (int i=0; i<t.getValues().size(); i++){
-                if(!newTerms.contains(t.getTerm(i))){
-                    newValues.add(t.getValue(i));
-                    newTerms.add(t.getTerm(i));
-                    newTypes.add(t.getSchema().getType(i));
+    @Override
+    public Batch nextBatch() {
+        if(batch == null) batch = new Batch(getLayout());
+        while (true){
+            batch.clear();
+            while (!batch.isFull()){
+                if(innerBatch == null){
+                    if(!nextOuterTuple()) break;
+                    childOp2.reset();
+                    innerBatch = childOp2.nextBatch();
+                    innerIndex = 0;
+                    continue;
+                }
+                int[] selection = innerBatch.getSelection();
+                int count = innerBatch.getSelectedCount();
+                while (innerIndex < count && !batch.isFull()){
+                    merger.mergeInto(batch, tuple1, innerBatch, selection[innerIndex++]);
+                }
+                if(innerIndex == count){
+                    innerBatch = childOp2.nextBatch();
+                    innerIndex = 0;
                 }
             }
+            if(batch.size() == 0) return null;
+            batchPredicate.filter(batch);
+            if(batch.getSelectedCount() > 0) return batch;
         }
-        return new Tuple(newValues, newTerms, new Schema(newTypes));
+    }
+
+    /**
+     * This method is used to advance to the next row of the outer child in batch mode.
+     * @return false if the outer child has no row left
+     */
+    private boolean nextOuterTuple(){
+        while (!outerDone && (outerBatch == null || outerIndex == outerBatch.getSelectedCount())){
+            outerBatch = childOp1.nextBatch();
+            outerIndex = 0;
+            outerDone = outerBatch == null;
+        }
+        if(outerDone) return false;
+        tuple1 = outerBatch.getTuple(outerBatch.getSelection()[outerIndex++]);
+        return true;
     }
 
     /**
@@ -90,21 +135,60 @@ public class JoinOperator extends Operator{
     public void reset() {
         childOp1.reset();
         childOp2.reset();
+        tuple1 = null;
+        tuple2 = null;
+        outerBatch = null;
+        innerBatch = null;
+        outerDone = false;
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return merger.getLayout();
+    }
+
+    /**
+     * A nested loop join is split on its outer child, every split
+     * reading the whole inner child through a copy of its own.
+     */
+    @Override
+    public boolean canSplit() {
+        return Splittable.isSplittable(childOp1) && Splittable.isSplittable(childOp2);
+    }
+
+    @Override
+    public int getSplitSize() {
+        return ((Splittable) childOp1).getSplitSize();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        Splittable inner = (Splittable) childOp2;
+        return new JoinOperator(((Splittable) childOp1).split(from, to), inner.split(0, inner.getSplitSize()), cas);
+    }
+
+    @Override
+    public String describe() {
+        return "JoinOperator on " + cas;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(childOp1, childOp2);
     }
 
     /**
-     * This method is used dump the tuple, keep calling this.getNextTuple()
-     * until it returns null, meanwhile write the tuple back to output file.
-     * @see Catalog#writeOutputFile(Tuple)
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
      */
     @Override
     public void dump() {
         reset();
         while (true){
-            Tuple tuple = this.getNextTuple();
-            if(tuple == null) break;
-            Catalog.getInstance().writeOutputFile(tuple);
-//            System.out.println("joinOp: "+tuple);
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
         }
     }
 }
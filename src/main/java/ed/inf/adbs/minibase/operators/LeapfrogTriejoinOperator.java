@@ -0,0 +1,421 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.QueryHypergraph;
+import ed.inf.adbs.minibase.base.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ed.inf.adbs.minibase.operators.PredicateCompiler.TuplePredicate;
+
+/**
+ * This class is to create LeapfrogTriejoinOperator instance to join
+ * all the relational atoms of a query at once, by the Leapfrog Triejoin
+ * algorithm. Every input is sorted into a trie whose levels are its
+ * variable classes in one global order. The classes are then bound one
+ * at a time: the tries holding the current class are intersected by
+ * seeking each of them in turn to the largest key of the others, and
+ * the next class is only bound below a key found in all of them. No
+ * pairwise intermediate result is built, so the work stays within the
+ * worst-case (AGM) bound of the query up to a logarithmic factor, which
+ * matters for cyclic queries such as triangles. Duplicate rows of an
+ * input are kept as a count in its trie, and every result is returned
+ * as many times as the product of the counts, as a pairwise join would.
+ */
+public class LeapfrogTriejoinOperator extends Operator{
+
+    private List<Operator> children;
+    private QueryHypergraph graph;
+    // class bound at every level
+    private int[] order;
+    private TupleLayout layout;
+    private List<ComparisonAtom> cas;
+    private TuplePredicate predicate;
+    // level of the class of every output slot
+    private int[] slotLevels;
+
+    private Trie[] tries;
+    // tries holding the class of every level, kept sorted by key while joining
+    private Trie[][] levelTries;
+    private boolean[] intLevels;
+    private int[] positions;
+    private int[] intBinding;
+    private String[] stringBinding;
+    private int level;
+    private boolean advance;
+    private boolean done;
+    private long pending;
+
+    /**
+     * Constructor method, initialize instance variables.
+     * @param children inputs of the relational atoms, with their own selections applied
+     * @param graph hypergraph of the query, giving the classes of the variables
+     * @param order classes in binding order
+     * @param cas ComparisonAtoms across atoms that are not implied by the classes
+     */
+    public LeapfrogTriejoinOperator(List<Operator> children, QueryHypergraph graph, int[] order, List<ComparisonAtom> cas){
+        this.children = children;
+        this.graph = graph;
+        this.order = order;
+        List<Term> terms = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for (Operator child: children){
+            terms.addAll(child.getLayout().getTerms());
+            types.addAll(child.getLayout().getSchema().getTypes());
+        }
+        this.layout = new TupleLayout(terms, new Schema(types));
+        this.cas = cas;
+        this.predicate = PredicateCompiler.compile(cas, layout);
+        int[] levels = new int[graph.getClassCount()];
+        for (int l=0; l<order.length; l++) levels[order[l]] = l;
+        this.slotLevels = new int[terms.size()];
+        for (int i=0; i<terms.size(); i++) slotLevels[i] = levels[graph.getClass(terms.get(i))];
+        reset();
+    }
+
+    /**
+     * The rows of one input sorted by the values of its classes in binding
+     * order, with an iterator over the keys of one level at a time: the rows
+     * from lows[d] to highs[d] share the keys of the levels above d, and the
+     * current key of level d starts at positions[d].
+     */
+    private static class Trie {
+        private int size;
+        // global level of every level of the trie
+        private int[] levels;
+        private int[][] intColumns;
+        private String[][] stringColumns;
+        private int depth;
+        private int[] lows;
+        private int[] highs;
+        private int[] positions;
+
+        private boolean isInt(int d){
+            return intColumns[d] != null;
+        }
+
+        private void open(){
+            depth++;
+            if(depth == 0){
+                lows[0] = 0;
+                highs[0] = size;
+            }else {
+                lows[depth] = positions[depth-1];
+                highs[depth] = upperBound(depth-1, positions[depth-1], highs[depth-1]);
+            }
+            positions[depth] = lows[depth];
+        }
+
+        private void up(){
+            depth--;
+        }
+
+        private boolean atEnd(){
+            return positions[depth] >= highs[depth];
+        }
+
+        private int compareKey(Trie other){
+            int p = positions[depth];
+            int q = other.positions[other.depth];
+            if(isInt(depth)) return Integer.compare(intColumns[depth][p], other.intColumns[other.depth][q]);
+            return stringColumns[depth][p].compareTo(other.stringColumns[other.depth][q]);
+        }
+
+        /**
+         * Move to the first key not lower than the current key of the other trie.
+         */
+        private void seek(Trie other){
+            int low = positions[depth];
+            int high = highs[depth];
+            int q = other.positions[other.depth];
+            while (low < high){
+                int mid = (low + high) >>> 1;
+                int cmp = isInt(depth) ? Integer.compare(intColumns[depth][mid], other.intColumns[other.depth][q])
+                        : stringColumns[depth][mid].compareTo(other.stringColumns[other.depth][q]);
+                if(cmp < 0) low = mid + 1;
+                else high = mid;
+            }
+            positions[depth] = low;
+        }
+
+        private void next(){
+            positions[depth] = upperBound(depth, positions[depth], highs[depth]);
+        }
+
+        /**
+         * @return first row after from, below high, whose key of level d differs from the key of from
+         */
+        private int upperBound(int d, int from, int high){
+            int low = from + 1;
+            while (low < high){
+                int mid = (low + high) >>> 1;
+                boolean equal = isInt(d) ? intColumns[d][mid] == intColumns[d][from] : stringColumns[d][mid].equals(stringColumns[d][from]);
+                if(equal) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        /**
+         * @return number of rows holding the current key of the last level
+         */
+        private long count(){
+            return upperBound(depth, positions[depth], highs[depth]) - positions[depth];
+        }
+    }
+
+    /**
+     * This method is used to read every input and sort its rows into a trie.
+     * Rows whose variables of one class hold different values are dropped.
+     */
+    private void build(){
+        tries = new Trie[children.size()];
+        int[] levels = new int[graph.getClassCount()];
+        for (int l=0; l<order.length; l++) levels[order[l]] = l;
+        intLevels = new boolean[order.length];
+        List<List<Trie>> holders = new ArrayList<>();
+        for (int l=0; l<order.length; l++) holders.add(new ArrayList<>());
+
+        for (int a=0; a<children.size(); a++){
+            Operator child = children.get(a);
+            TupleLayout childLayout = child.getLayout();
+            List<Term> terms = childLayout.getTerms();
+            // first column of every class of the atom, by level
+            int[] columnOfLevel = new int[order.length];
+            Arrays.fill(columnOfLevel, -1);
+            for (int j=0; j<terms.size(); j++){
+                int l = levels[graph.getClass(terms.get(j))];
+                if(columnOfLevel[l] < 0) columnOfLevel[l] = j;
+            }
+            Trie trie = new Trie();
+            int depths = 0;
+            for (int l=0; l<order.length; l++) if(columnOfLevel[l] >= 0) depths++;
+            trie.levels = new int[depths];
+            int[] columns = new int[depths];
+            int d = 0;
+            for (int l=0; l<order.length; l++){
+                if(columnOfLevel[l] < 0) continue;
+                trie.levels[d] = l;
+                columns[d] = columnOfLevel[l];
+                intLevels[l] = childLayout.isInt(columns[d]);
+                holders.get(l).add(trie);
+                d++;
+            }
+
+            List<Tuple> rows = new ArrayList<>();
+            child.reset();
+            Tuple tuple;
+            while ((tuple = child.getNextTuple()) != null){
+                boolean consistent = true;
+                for (int j=0; j<terms.size() && consistent; j++){
+                    int first = columnOfLevel[levels[graph.getClass(terms.get(j))]];
+                    consistent = childLayout.isInt(j) ? tuple.getInt(j) == tuple.getInt(first) : tuple.getString(j).equals(tuple.getString(first));
+                }
+                if(consistent) rows.add(tuple);
+            }
+            rows.sort((t1, t2) -> {
+                for (int c: columns){
+                    int cmp = childLayout.isInt(c) ? Integer.compare(t1.getInt(c), t2.getInt(c)) : t1.getString(c).compareTo(t2.getString(c));
+                    if(cmp != 0) return cmp;
+                }
+                return 0;
+            });
+            trie.size = rows.size();
+            trie.intColumns = new int[depths][];
+            trie.stringColumns = new String[depths][];
+            for (d=0; d<depths; d++){
+                if(childLayout.isInt(columns[d])){
+                    trie.intColumns[d] = new int[rows.size()];
+                    for (int r=0; r<rows.size(); r++) trie.intColumns[d][r] = rows.get(r).getInt(columns[d]);
+                }else {
+                    trie.stringColumns[d] = new String[rows.size()];
+                    for (int r=0; r<rows.size(); r++) trie.stringColumns[d][r] = rows.get(r).getString(columns[d]);
+                }
+            }
+            trie.lows = new int[depths];
+            trie.highs = new int[depths];
+            trie.positions = new int[depths];
+            trie.depth = -1;
+            tries[a] = trie;
+        }
+        levelTries = new Trie[order.length][];
+        for (int l=0; l<order.length; l++) levelTries[l] = holders.get(l).toArray(new Trie[0]);
+        positions = new int[order.length];
+        intBinding = new int[order.length];
+        stringBinding = new String[order.length];
+    }
+
+    /**
+     * Open the tries of a level and find their first common key.
+     * @return false if they have no common key
+     */
+    private boolean leapfrogInit(int l){
+        Trie[] its = levelTries[l];
+        boolean empty = false;
+        for (Trie trie: its){
+            trie.open();
+            empty |= trie.atEnd();
+        }
+        if(empty) return false;
+        // sort by key, the largest key is then before position 0
+        for (int i=1; i<its.length; i++){
+            for (int j=i; j>0 && its[j].compareKey(its[j-1]) < 0; j--){
+                Trie swap = its[j];
+                its[j] = its[j-1];
+                its[j-1] = swap;
+            }
+        }
+        positions[l] = 0;
+        return leapfrogSearch(l);
+    }
+
+    /**
+     * Seek the trie at the current position to the largest key, until all keys are equal.
+     * @return false if a trie has no key left
+     */
+    private boolean leapfrogSearch(int l){
+        Trie[] its = levelTries[l];
+        int k = its.length;
+        int p = positions[l];
+        Trie max = its[(p + k - 1) % k];
+        while (true){
+            Trie trie = its[p];
+            if(trie.compareKey(max) == 0){
+                positions[l] = p;
+                return true;
+            }
+            trie.seek(max);
+            if(trie.atEnd()) return false;
+            max = trie;
+            p = (p + 1) % k;
+        }
+    }
+
+    private boolean leapfrogNext(int l){
+        Trie[] its = levelTries[l];
+        int p = positions[l];
+        its[p].next();
+        if(its[p].atEnd()) return false;
+        positions[l] = (p + 1) % its.length;
+        return leapfrogSearch(l);
+    }
+
+    private void bind(int l){
+        Trie trie = levelTries[l][0];
+        int row = trie.positions[trie.depth];
+        if(intLevels[l]) intBinding[l] = trie.intColumns[trie.depth][row];
+        else stringBinding[l] = trie.stringColumns[trie.depth][row];
+    }
+
+    private Tuple createTuple(){
+        Tuple tuple = Tuple.allocate(layout);
+        for (int i=0; i<slotLevels.length; i++){
+            if(layout.isInt(i)) tuple.setInt(i, intBinding[slotLevels[i]]);
+            else tuple.setString(i, stringBinding[slotLevels[i]]);
+        }
+        return tuple;
+    }
+
+    /**
+     * This method is used to get next tuple.
+     * The levels are bound depth first: a level whose tries have a common key
+     * binds it and opens the next level, a level without keys left is closed
+     * and the level above moves on to its next common key. When all levels are
+     * bound, the tuple is returned once per combination of duplicate rows,
+     * if it satisfies the remaining ComparisonAtoms.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        if(tries == null) build();
+        while (true){
+            if(pending > 0){
+                pending--;
+                return createTuple();
+            }
+            if(done) return null;
+            boolean found = advance ? leapfrogNext(level) : leapfrogInit(level);
+            if(!found){
+                for (Trie trie: levelTries[level]) trie.up();
+                if(level == 0){
+                    done = true;
+                }else {
+                    level--;
+                    advance = true;
+                }
+                continue;
+            }
+            bind(level);
+            if(level < order.length - 1){
+                level++;
+                advance = false;
+                continue;
+            }
+            advance = true;
+            Tuple tuple = createTuple();
+            if(!predicate.test(tuple)) continue;
+            long count = 1;
+            for (Trie trie: tries) count *= trie.count();
+            pending = count - 1;
+            return tuple;
+        }
+    }
+
+    /**
+     * This method is used reset this operator, so the join starts again
+     * from the first key. The tries are kept.
+     */
+    @Override
+    public void reset() {
+        if(tries != null){
+            for (Trie trie: tries) trie.depth = -1;
+        }
+        level = 0;
+        advance = false;
+        done = order.length == 0;
+        pending = 0;
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Description of the variables of every level, the first of each class, and the other conditions.
+     */
+    @Override
+    public String describe() {
+        List<Term> levels = new ArrayList<>();
+        for (int c: order){
+            for (Term term: layout.getTerms()){
+                if(graph.getClass(term) == c){
+                    levels.add(term);
+                    break;
+                }
+            }
+        }
+        return "LeapfrogTriejoinOperator order " + levels + " on " + cas;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return children;
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+
+import java.util.List;
+
+/**
+ * This class is to create MaterializedOperator instance to return
+ * the tuples of a list held in memory, e.g. an input reduced by
+ * semi-joins. It can be split into ranges of the list.
+ */
+public class MaterializedOperator extends Operator implements Splittable{
+
+    private List<Tuple> tuples;
+    private TupleLayout layout;
+    private int index;
+
+    public MaterializedOperator(List<Tuple> tuples, TupleLayout layout){
+        this.tuples = tuples;
+        this.layout = layout;
+        reset();
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+        return index < tuples.size() ? tuples.get(index++) : null;
+    }
+
+    @Override
+    public void reset() {
+        index = 0;
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    public List<Tuple> getTuples() {
+        return tuples;
+    }
+
+    @Override
+    public boolean canSplit() {
+        return true;
+    }
+
+    @Override
+    public int getSplitSize() {
+        return tuples.size();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        return new MaterializedOperator(tuples.subList(from, to), layout);
+    }
+
+    @Override
+    public String describe() {
+        return "MaterializedOperator " + tuples.size() + " tuples " + layout.getTerms();
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
+        }
+    }
+}
@@ -1,12 +1,66 @@
 package ed.inf.adbs.minibase.operators;
 
+import ed.inf.adbs.minibase.base.Batch;
 import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This class defines the interface of Operator.
+ * Every operator knows the layout of the tuples it produces
+ * when it is created, so its parent can resolve slots once.
+ * Tuples can be read one at a time with getNextTuple() or
+ * in column-oriented batches with nextBatch(); between two
+ * resets an operator is read through one of them only.
+ * Operators driven by a scan can implement Splittable to be
+ * split into copies reading a range of rows of that scan,
+ * which the ParallelExecutor runs on several threads. Every operator describes itself
+ * and lists its children, so that the plan can be printed
+ * by EXPLAIN.
  */
 public abstract class Operator {
+
+    // batch filled by the default nextBatch()
+    private Batch adapterBatch;
+
     public abstract Tuple getNextTuple();
     public abstract void reset();
     public abstract void dump();
-}
\ No newline at end of file
+    public abstract TupleLayout getLayout();
+
+    /**
+     * This method is used to describe this operator in one line for EXPLAIN,
+     * with the conditions it applies.
+     * @return the description
+     */
+    public String describe(){
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * This method is used to get the operators this operator reads from.
+     * @return the child operators, empty for a scan
+     */
+    public List<Operator> getChildren(){
+        return Collections.emptyList();
+    }
+
+    /**
+     * This method is used to get the next batch of tuples. The default
+     * implementation collects tuples from getNextTuple(), operators with
+     * a faster way to fill a batch override it.
+     * @return a batch with at least one selected row, or null at the end
+     */
+    public Batch nextBatch(){
+        if(adapterBatch == null) adapterBatch = new Batch(getLayout());
+        adapterBatch.clear();
+        while (!adapterBatch.isFull()){
+            Tuple tuple = getNextTuple();
+            if(tuple == null) break;
+            adapterBatch.append(tuple);
+        }
+        return adapterBatch.getSelectedCount() == 0 ? null : adapterBatch;
+    }
+}
@@ -0,0 +1,388 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.operators.SelectOperator.compareOperate;
+
+/**
+ * This class is to compile a list of ComparisonAtoms into a
+ * TuplePredicate for tuples of a given layout. The slots of the
+ * variables are resolved and the constants are unwrapped and typed
+ * once for all three kinds of predicate, together with the comparator
+ * of the operator, and every atom becomes a small lambda reading its
+ * operands, so evaluating a tuple does not allocate or dispatch on the
+ * term classes.
+ * The atoms can also be compiled into a BatchPredicate, which filters
+ * the selection vector of a batch in one loop per atom, or into a
+ * RowPredicate, which a scan tests on the stored columns of a row
+ * before creating anything for it.
+ */
+public class PredicateCompiler {
+
+    /**
+     * This interface defines a compiled condition on a tuple.
+     */
+    public interface TuplePredicate {
+        boolean test(Tuple tuple);
+    }
+
+    /**
+     * This interface defines a compiled condition on the selected rows of a
+     * batch, removing the rows which do not pass it from the selection vector.
+     */
+    public interface BatchPredicate {
+        void filter(Batch batch);
+    }
+
+    /**
+     * This interface defines a compiled condition on a row of a ColumnSource.
+     */
+    public interface RowPredicate {
+        boolean test(int row);
+    }
+
+    private static final TuplePredicate TRUE = tuple -> true;
+    private static final TuplePredicate FALSE = tuple -> false;
+    private static final BatchPredicate ALL = batch -> {};
+    private static final BatchPredicate NONE = batch -> batch.setSelectedCount(0);
+    private static final RowPredicate ANY_ROW = row -> true;
+    private static final RowPredicate NO_ROW = row -> false;
+
+    /**
+     * Compile the conjunction of the given ComparisonAtoms.
+     * @param comparisonAtoms a list of comparison atoms
+     * @param layout layout of the tuples to be tested
+     * @return a predicate which is true if the tuple passes all conditions
+     */
+    public static TuplePredicate compile(List<ComparisonAtom> comparisonAtoms, TupleLayout layout){
+        List<TuplePredicate> predicates = new ArrayList<>();
+        for (ComparisonAtom ca: comparisonAtoms){
+            TuplePredicate predicate = compile(ca, layout);
+            if(predicate == FALSE) return FALSE;
+            if(predicate != TRUE) predicates.add(predicate);
+        }
+        switch (predicates.size()){
+            case 0: return TRUE;
+            case 1: return predicates.get(0);
+            case 2: {
+                TuplePredicate p1 = predicates.get(0);
+                TuplePredicate p2 = predicates.get(1);
+                return tuple -> p1.test(tuple) && p2.test(tuple);
+            }
+            default: {
+                TuplePredicate[] array = predicates.toArray(new TuplePredicate[0]);
+                return tuple -> {
+                    for (TuplePredicate predicate: array){
+                        if(!predicate.test(tuple)) return false;
+                    }
+                    return true;
+                };
+            }
+        }
+    }
+
+    /**
+     * Check whether the given predicate is known to be false for every tuple.
+     * @param predicate a compiled predicate
+     * @return true if the predicate was compiled from a contradiction
+     */
+    public static boolean isFalse(TuplePredicate predicate){
+        return predicate == FALSE;
+    }
+
+    /**
+     * Compile a single ComparisonAtom. Comparing an int with a string is
+     * always false, as in SelectOperator#compareOperate.
+     * @param ca a comparison atom
+     * @param layout layout of the tuples to be tested
+     * @return the compiled predicate
+     */
+    public static TuplePredicate compile(ComparisonAtom ca, TupleLayout layout){
+        Operands operands = resolve(ca, layout);
+        if(operands.isConstant()) return operands.result ? TRUE : FALSE;
+        int slot1 = operands.slot1, slot2 = operands.slot2;
+        if(operands.isInt){
+            IntComparator comparator = intComparator(operands.op);
+            int c = operands.intConstant;
+            if(slot2 < 0) return tuple -> comparator.test(tuple.getInt(slot1), c);
+            return tuple -> comparator.test(tuple.getInt(slot1), tuple.getInt(slot2));
+        }
+        StringComparator comparator = stringComparator(operands.op);
+        String c = operands.stringConstant;
+        if(slot2 < 0) return tuple -> comparator.test(tuple.getString(slot1), c);
+        return tuple -> comparator.test(tuple.getString(slot1), tuple.getString(slot2));
+    }
+
+    /**
+     * Compile the conjunction of the given ComparisonAtoms for batches,
+     * the atoms are applied one after the other to the selected rows.
+     * @param comparisonAtoms a list of comparison atoms
+     * @param layout layout of the batches to be filtered
+     * @return a predicate keeping the rows which pass all conditions
+     */
+    public static BatchPredicate compileBatch(List<ComparisonAtom> comparisonAtoms, TupleLayout layout){
+        List<BatchPredicate> predicates = new ArrayList<>();
+        for (ComparisonAtom ca: comparisonAtoms){
+            BatchPredicate predicate = compileBatch(ca, layout);
+            if(predicate == NONE) return NONE;
+            if(predicate != ALL) predicates.add(predicate);
+        }
+        switch (predicates.size()){
+            case 0: return ALL;
+            case 1: return predicates.get(0);
+            default: {
+                BatchPredicate[] array = predicates.toArray(new BatchPredicate[0]);
+                return batch -> {
+                    for (BatchPredicate predicate: array){
+                        if(batch.getSelectedCount() == 0) return;
+                        predicate.filter(batch);
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * Compile a single ComparisonAtom for batches, which tests the
+     * selected rows in one loop over the int or string arrays.
+     * @param ca a comparison atom
+     * @param layout layout of the batches to be filtered
+     * @return the compiled predicate
+     */
+    public static BatchPredicate compileBatch(ComparisonAtom ca, TupleLayout layout){
+        Operands operands = resolve(ca, layout);
+        if(operands.isConstant()) return operands.result ? ALL : NONE;
+        int slot1 = operands.slot1, slot2 = operands.slot2;
+        if(operands.isInt){
+            IntComparator comparator = intComparator(operands.op);
+            int c = operands.intConstant;
+            return batch -> {
+                int[] values1 = batch.getInts(slot1);
+                int[] values2 = slot2 >= 0 ? batch.getInts(slot2) : null;
+                int[] selection = batch.getSelection();
+                int n = batch.getSelectedCount(), k = 0;
+                for (int i=0; i<n; i++){
+                    int row = selection[i];
+                    if(comparator.test(values1[row], values2 == null ? c : values2[row])) selection[k++] = row;
+                }
+                batch.setSelectedCount(k);
+            };
+        }
+        StringComparator comparator = stringComparator(operands.op);
+        String c = operands.stringConstant;
+        return batch -> {
+            String[] values1 = batch.getStrings(slot1);
+            String[] values2 = slot2 >= 0 ? batch.getStrings(slot2) : null;
+            int[] selection = batch.getSelection();
+            int n = batch.getSelectedCount(), k = 0;
+            for (int i=0; i<n; i++){
+                int row = selection[i];
+                if(comparator.test(values1[row], values2 == null ? c : values2[row])) selection[k++] = row;
+            }
+            batch.setSelectedCount(k);
+        };
+    }
+
+    /**
+     * Compile the conjunction of the given ComparisonAtoms for the rows of a
+     * stored relation, whose column i is slot i of the layout.
+     * @param comparisonAtoms a list of comparison atoms on the relation
+     * @param layout layout of the scan of the relation
+     * @param source the stored relation
+     * @return a predicate which is true if the row passes all conditions
+     */
+    public static RowPredicate compileRows(List<ComparisonAtom> comparisonAtoms, TupleLayout layout, ColumnSource source){
+        List<RowPredicate> predicates = new ArrayList<>();
+        for (ComparisonAtom ca: comparisonAtoms){
+            RowPredicate predicate = compileRow(ca, layout, source);
+            if(predicate == NO_ROW) return NO_ROW;
+            if(predicate != ANY_ROW) predicates.add(predicate);
+        }
+        switch (predicates.size()){
+            case 0: return ANY_ROW;
+            case 1: return predicates.get(0);
+            default: {
+                RowPredicate[] array = predicates.toArray(new RowPredicate[0]);
+                return row -> {
+                    for (RowPredicate predicate: array){
+                        if(!predicate.test(row)) return false;
+                    }
+                    return true;
+                };
+            }
+        }
+    }
+
+    /**
+     * Compile the conjunction of the given ComparisonAtoms for the rows of a
+     * stored relation, which also fails the given rows, e.g. repeated ones.
+     * @param comparisonAtoms a list of comparison atoms on the relation
+     * @param layout layout of the scan of the relation
+     * @param source the stored relation
+     * @param skippedRows indexes of the rows to leave out, or null
+     * @return a predicate which is true if the row is not skipped and passes all conditions
+     */
+    public static RowPredicate compileRows(List<ComparisonAtom> comparisonAtoms, TupleLayout layout, ColumnSource source, BitSet skippedRows){
+        RowPredicate predicate = compileRows(comparisonAtoms, layout, source);
+        if(skippedRows == null || predicate == NO_ROW) return predicate;
+        if(predicate == ANY_ROW) return row -> !skippedRows.get(row);
+        return row -> !skippedRows.get(row) && predicate.test(row);
+    }
+
+    /**
+     * Check whether the given row predicate passes every row.
+     * @param predicate a compiled predicate
+     * @return true if the predicate was compiled from no condition
+     */
+    public static boolean isTrue(RowPredicate predicate){
+        return predicate == ANY_ROW;
+    }
+
+    /**
+     * Compile a single ComparisonAtom for the rows of a stored relation. String
+     * equalities with a constant are tested with ColumnSource#stringEquals, so
+     * a columnar file compares the encoded bytes.
+     */
+    private static RowPredicate compileRow(ComparisonAtom ca, TupleLayout layout, ColumnSource source){
+        Operands operands = resolve(ca, layout);
+        if(operands.isConstant()) return operands.result ? ANY_ROW : NO_ROW;
+        int column1 = operands.slot1, column2 = operands.slot2;
+        if(operands.isInt){
+            IntComparator comparator = intComparator(operands.op);
+            int c = operands.intConstant;
+            if(column2 < 0) return row -> comparator.test(source.getInt(row, column1), c);
+            return row -> comparator.test(source.getInt(row, column1), source.getInt(row, column2));
+        }
+        String c = operands.stringConstant;
+        if(column2 < 0 && (operands.op == ComparisonOperator.EQ || operands.op == ComparisonOperator.NEQ)){
+            byte[] utf8 = c.getBytes(StandardCharsets.UTF_8);
+            if(operands.op == ComparisonOperator.EQ) return row -> source.stringEquals(row, column1, c, utf8);
+            return row -> !source.stringEquals(row, column1, c, utf8);
+        }
+        StringComparator comparator = stringComparator(operands.op);
+        if(column2 < 0) return row -> comparator.test(source.getString(row, column1), c);
+        return row -> comparator.test(source.getString(row, column1), source.getString(row, column2));
+    }
+
+    /**
+     * This class holds the operands of a ComparisonAtom resolved against a layout:
+     * the slot of a variable compared with another slot or with a typed constant,
+     * or the result of the atom if it does not depend on the tuple.
+     */
+    private static class Operands {
+        // result of a comparison of two constants or of an int with a string, null otherwise
+        Boolean result;
+        // operator, flipped if the constant was on the left
+        ComparisonOperator op;
+        int slot1;
+        // -1 if the variable is compared with a constant
+        int slot2 = -1;
+        boolean isInt;
+        int intConstant;
+        String stringConstant;
+
+        boolean isConstant(){
+            return result != null;
+        }
+    }
+
+    /**
+     * Resolve the operands of a ComparisonAtom, rewriting c op x to x op' c.
+     * @param ca a comparison atom
+     * @param layout layout of the tuples, batches or stored rows to be tested
+     * @return the resolved operands
+     */
+    private static Operands resolve(ComparisonAtom ca, TupleLayout layout){
+        Term term1 = ca.getTerm1();
+        Term term2 = ca.getTerm2();
+        Operands operands = new Operands();
+        operands.op = ca.getOp();
+
+        if(term1 instanceof Constant && term2 instanceof Constant){
+            operands.result = compareOperate(term1, term2, operands.op);
+            return operands;
+        }
+        if(term1 instanceof Constant){
+            Term swap = term1;
+            term1 = term2;
+            term2 = swap;
+            operands.op = flip(operands.op);
+        }
+
+        operands.slot1 = layout.slotOf(term1);
+        assert operands.slot1 >= 0: "unknown variable " + term1;
+        operands.isInt = layout.isInt(operands.slot1);
+        if(term2 instanceof Variable){
+            operands.slot2 = layout.slotOf(term2);
+            assert operands.slot2 >= 0: "unknown variable " + term2;
+            if(operands.isInt != layout.isInt(operands.slot2)) operands.result = false;
+        } else if(operands.isInt && term2 instanceof IntegerConstant){
+            operands.intConstant = ((IntegerConstant) term2).getValue();
+        } else if(!operands.isInt && term2 instanceof StringConstant){
+            operands.stringConstant = ((StringConstant) term2).getValue();
+        } else {
+            operands.result = false;
+        }
+        return operands;
+    }
+
+    /**
+     * Get the operator which gives the same result with swapped operands.
+     * @param op a Comparison Operator
+     * @return the flipped operator
+     */
+    public static ComparisonOperator flip(ComparisonOperator op){
+        switch (op){
+            case GT: return ComparisonOperator.LT;
+            case GEQ: return ComparisonOperator.LEQ;
+            case LT: return ComparisonOperator.GT;
+            case LEQ: return ComparisonOperator.GEQ;
+            default: return op;
+        }
+    }
+
+    private interface IntComparator {
+        boolean test(int v1, int v2);
+    }
+
+    private interface StringComparator {
+        boolean test(String v1, String v2);
+    }
+
+    private static final IntComparator INT_EQ = (v1, v2) -> v1 == v2;
+    private static final IntComparator INT_NEQ = (v1, v2) -> v1 != v2;
+    private static final IntComparator INT_GT = (v1, v2) -> v1 > v2;
+    private static final IntComparator INT_GEQ = (v1, v2) -> v1 >= v2;
+    private static final IntComparator INT_LT = (v1, v2) -> v1 < v2;
+    private static final IntComparator INT_LEQ = (v1, v2) -> v1 <= v2;
+
+    private static IntComparator intComparator(ComparisonOperator op){
+        switch (op){
+            case EQ: return INT_EQ;
+            case NEQ: return INT_NEQ;
+            case GT: return INT_GT;
+            case GEQ: return INT_GEQ;
+            case LT: return INT_LT;
+            default: return INT_LEQ;
+        }
+    }
+
+    /**
+     * Equalities use String#equals, the other operators test the result of compareTo.
+     */
+    private static StringComparator stringComparator(ComparisonOperator op){
+        switch (op){
+            case EQ: return String::equals;
+            case NEQ: return (v1, v2) -> !v1.equals(v2);
+            default: {
+                IntComparator comparator = intComparator(op);
+                return (v1, v2) -> comparator.test(v1.compareTo(v2), 0);
+            }
+        }
+    }
+}
@@ -4,60 +4,74 @@ import ed.inf.adbs.minibase.Catalog;
 import ed.inf.adbs.minibase.base.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class is to create ProjectOperator instance to
  * get tuples from its child operator, project them on
- * the given Variables. It maintains a list of tuples
- * that has been returned to eliminate duplicates.
+ * the given Variables. It maintains a hash set of the
+ * projected values that have been returned to eliminate
+ * duplicates, unless it is asked to keep them, as the
+ * planner does to drop the variables no longer needed
+ * between joins.
  */
-public class ProjectOperator extends Operator{
+public class ProjectOperator extends Operator implements Splittable{
     private Operator childOp;
     private List<Variable> dvs;
     private SumAggregate sumAggregate;
-    private List<Tuple> buffer = new ArrayList<>();
+    private boolean distinct;
+    private TupleLayout layout;
+    // slot of the child tuple for every projected slot
+    private int[] slots;
+    // the returned tuples, holding only the projected values
+    private Set<Tuple> seen = new HashSet<>();
+    private Batch batch;
 
     public ProjectOperator(Operator childOp, List<Variable> dvs, SumAggregate sumAggregate){
+        this(childOp, dvs, sumAggregate, true);
+    }
+
+    /**
+     * Constructor method of a projection which keeps duplicates if distinct is false,
+     * so that an aggregate above it still sums every tuple.
+     * @param distinct whether duplicates are eliminated
+     */
+    public ProjectOperator(Operator childOp, List<Variable> dvs, SumAggregate sumAggregate, boolean distinct){
         this.childOp = childOp;
         this.dvs = dvs;
         this.sumAggregate = sumAggregate;
+        this.distinct = distinct;
+        List<Term> terms = new ArrayList<>(dvs);
+        if(sumAggregate != null) terms.add(sumAggregate);
+        this.layout = TupleLayout.of(terms, childOp.getLayout());
+        this.slots = childOp.getLayout().slotsOf(terms);
     }
 
     public Operator getChildOp() {
         return childOp;
     }
 
+    public boolean isDistinct() {
+        return distinct;
+    }
+
     /**
      * This method is used to get the projected tuple.
      * @param t the tuple provided to project on.
      * @return the tuple after projection
      */
     private Tuple project(Tuple t){
-        List<Object> newValues = new ArrayList<>();
-        List<String> newTypes = new ArrayList<>();
-        List<Term> newTerms = new ArrayList<>(dvs);
-
-        for (Variable dv: dvs){
-            newValues.add(t.getValue(dv));
-            if(t.getValue(dv) instanceof Integer) newTypes.add("int");
-            if(t.getValue(dv) instanceof String) newTypes.add("string");
-        }
-        if(sumAggregate != null){
-//            System.out.println("sumAggregate value: "+t.getValue(sumAggregate));
-            newValues.add(t.getValue(t.getValues().size()-1));
-            newTypes.add("int");
-            newTerms.add(sumAggregate);
-        }
-
-        return new Tuple(newValues, newTerms, new Schema(newTypes));
+        return t.project(layout, slots);
     }
 
     /**
      * This method is used to get next tuple from child operator,
      * if child operator still has tuple, then get and project it.
-     * If tuple has been returned then grasp next tuple from child,
-     * until no tuple left.
+     * If its projected values have been returned then grasp next
+     * tuple from child, until no tuple left.
      */
     @Override
     public Tuple getNextTuple() {
@@ -67,42 +81,102 @@ public class ProjectOperator extends Operator{
             if(tuple == null) return null;
             tuple = project(tuple);
 //            System.out.println(tuple);
-            if(!buffer.contains(tuple)){
-                buffer.add(tuple);
+            if(!distinct || seen.add(tuple)){
                 return tuple;
             }
         }
 
     }
 
+    /**
+     * This method is used to get the next batch of projected tuples. The
+     * projected values of every selected row of a child batch are checked
+     * against the returned values, and new ones are copied into the batch.
+     * Child batches are read until one of them has a new value.
+     * Without duplicate elimination the slots are copied directly.
+     */
+    @Override
+    public Batch nextBatch() {
+        if(batch == null) batch = new Batch(layout);
+        batch.clear();
+        while (batch.size() == 0){
+            Batch childBatch = childOp.nextBatch();
+            if(childBatch == null) return null;
+            assert childBatch.getSelectedCount() <= batch.capacity(): "capacity";
+            int[] selection = childBatch.getSelection();
+            for (int k=0; k<childBatch.getSelectedCount(); k++){
+                if(!distinct){
+                    int row = batch.addRow();
+                    for (int i=0; i<slots.length; i++) batch.copySlot(row, i, childBatch, selection[k], slots[i]);
+                    continue;
+                }
+                Tuple tuple = childBatch.project(selection[k], layout, slots);
+                if(seen.add(tuple)){
+                    batch.append(tuple);
+                }
+            }
+        }
+        return batch;
+    }
+
     /**
      * This method is used reset this operator,
-     * by resetting its child operator and buffer.
+     * by resetting its child operator and the returned values.
      */
     @Override
     public void reset() {
-        buffer = new ArrayList<>();
+        seen = new HashSet<>();
         childOp.reset();
     }
 
+    @Override
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
     /**
-     * This method is used dump the tuple, keep calling this.getNextTuple()
-     * until it returns null, meanwhile write the tuple back to output file.
-     * @see Catalog#writeOutputFile(Tuple)
+     * A split only eliminates the duplicates of its own rows, the
+     * results of the splits still have to be merged through one set.
+     */
+    @Override
+    public boolean canSplit() {
+        return Splittable.isSplittable(childOp);
+    }
+
+    @Override
+    public int getSplitSize() {
+        return ((Splittable) childOp).getSplitSize();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        return new ProjectOperator(((Splittable) childOp).split(from, to), dvs, sumAggregate, distinct);
+    }
+
+    @Override
+    public String describe() {
+        List<Term> terms = new ArrayList<>(dvs);
+        if(sumAggregate != null) terms.add(sumAggregate);
+        return "ProjectOperator " + terms + (distinct ? "" : " keeping duplicates");
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(childOp);
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
      */
     @Override
     public void dump() {
         reset();
         while (true){
-            Tuple tuple = this.getNextTuple();
-            if(tuple == null) break;
-            if(!buffer.contains(tuple)){
-                buffer.add(tuple);
-            }
-        }
-        for(Tuple tuple: buffer){
-            Catalog.getInstance().writeOutputFile(tuple);
-//            System.out.println("projOp: "+tuple);
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
         }
     }
 
@@ -2,78 +2,215 @@ package ed.inf.adbs.minibase.operators;
 
 import ed.inf.adbs.minibase.Interpreter;
 import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.Relation;
 import ed.inf.adbs.minibase.base.RelationalAtom;
 import ed.inf.adbs.minibase.base.Schema;
+import ed.inf.adbs.minibase.base.Term;
 import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ed.inf.adbs.minibase.operators.PredicateCompiler.RowPredicate;
 
 /**
  * This class is to create ScanOperator instance to
- * scan records from corresponding database csv files
+ * scan records from corresponding database relation
  * and create tuples, with a given RelationalAtom ra.
+ * The relation is parsed once by the relation cache
+ * and then read by index. Pushed-down conditions are
+ * tested on the cached columns, and only the rows
+ * passing them are copied into tuples or batches,
+ * leaving out the attributes no longer needed.
  */
-public class ScanOperator extends Operator{
+public class ScanOperator extends Operator implements Splittable{
 
     private Catalog catalog;
     private RelationalAtom ra;
-    private Scanner scanner = null;
+    private Relation relation;
+    private int index;
+    // range of rows read by this scan
+    private int from;
+    private int to;
+    private Batch batch;
     private Schema schema;
+    private TupleLayout layout;
+    // pushed-down conditions on the stored row, and the rows passing them in a batch
+    private List<ComparisonAtom> cas;
+    private RowPredicate predicate;
+    // whether the rows repeating an earlier row are left out
+    private boolean distinct;
+    private int[] rows;
+    // attribute of the relation read into every slot
+    private int[] columns;
 
     /**
-     * Constructor method, initialize instance variables and get the schema.
+     * Constructor method, initialize instance variables, get the schema
+     * and the relation from the catalog.
      */
     public ScanOperator(RelationalAtom ra){
+        this(ra, Collections.emptyList());
+    }
+
+    /**
+     * Constructor method with pushed-down conditions, which are tested on the stored
+     * values of every row before a tuple is created for it.
+     * @param cas ComparisonAtoms on the scanned relation alone
+     */
+    public ScanOperator(RelationalAtom ra, List<ComparisonAtom> cas){
+        this(ra, cas, ra.getTerms());
+    }
+
+    /**
+     * Constructor method with pushed-down conditions and narrowed tuples, which
+     * only hold the attributes of the given terms of the atom.
+     * @param cas ComparisonAtoms on the scanned relation alone
+     * @param terms terms of the atom still needed above the scan
+     */
+    public ScanOperator(RelationalAtom ra, List<ComparisonAtom> cas, List<? extends Term> terms){
+        this(ra, cas, terms, false);
+    }
+
+    /**
+     * Constructor method which can also leave out the rows repeating an earlier
+     * row of the relation, which are found once for the cached relation.
+     * @param cas ComparisonAtoms on the scanned relation alone
+     * @param terms terms of the atom still needed above the scan
+     * @param distinct whether every distinct row is only read once
+     */
+    public ScanOperator(RelationalAtom ra, List<ComparisonAtom> cas, List<? extends Term> terms, boolean distinct){
         this.catalog = Catalog.getInstance();
         this.ra = ra;
         this.schema = Interpreter.getInstance().getScheme(ra.getName());
+        this.relation = catalog.getRelation(ra.getName(), schema);
+        TupleLayout stored = new TupleLayout(new ArrayList<>(ra.getTerms()), schema);
+        this.layout = TupleLayout.of(terms, stored);
+        this.columns = stored.slotsOf(terms);
+        this.from = 0;
+        this.to = relation.size();
+        this.cas = cas;
+        this.distinct = distinct;
+        this.predicate = PredicateCompiler.compileRows(cas, stored, relation, distinct ? relation.getDuplicateRows() : null);
         reset();
     }
 
     /**
-     * This method is used to get next tuple from scanner.
-     * If scanner shows that the file still has a next line,
-     * load it and new a tuple and return it.
+     * Constructor of a split, reading a range of rows of the relation of the given scan.
+     */
+    private ScanOperator(ScanOperator scan, int from, int to){
+        this.catalog = scan.catalog;
+        this.ra = scan.ra;
+        this.schema = scan.schema;
+        this.relation = scan.relation;
+        this.layout = scan.layout;
+        this.cas = scan.cas;
+        this.predicate = scan.predicate;
+        this.distinct = scan.distinct;
+        this.columns = scan.columns;
+        this.from = from;
+        this.to = to;
+        reset();
+    }
+
+    /**
+     * This method is used to get next tuple from the relation.
+     * If the relation still has a next row, create a tuple
+     * of it and return it.
      * If not, return null as a terminator.
      */
     @Override
     public Tuple getNextTuple() {
-        if(scanner.hasNextLine()) {
-            return new Tuple(scanner.nextLine(), ra.getTerms(), schema);
-        }else {
-            return null;
+        while (index < to) {
+            int row = index++;
+            if(predicate.test(row)) return relation.getTuple(row, columns, layout);
         }
+        return null;
     }
 
     /**
-     * This method is used reset the scanner of this operator,
-     * so that the scanner will read from the beginning next time.
+     * This method is used to get the next batch of rows, copied column
+     * by column from the cached relation.
+     * With pushed-down conditions, the rows passing them are collected first
+     * and only these rows are copied.
+     * @return the next batch, or null if all rows have been read
      */
     @Override
-    public void reset() {
-        if(scanner != null) scanner.close();
-        try {
-            scanner = new Scanner(new File(catalog.getFilePath(ra.getName())));
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+    public Batch nextBatch() {
+        if(index >= to) return null;
+        if(batch == null) batch = new Batch(layout);
+        if(PredicateCompiler.isTrue(predicate)){
+            int count = Math.min(batch.capacity(), to - index);
+            relation.copyRows(index, count, columns, batch);
+            index += count;
+            return batch;
+        }
+        if(rows == null) rows = new int[batch.capacity()];
+        int count = 0;
+        while (index < to && count < rows.length){
+            int row = index++;
+            if(predicate.test(row)) rows[count++] = row;
         }
+        if(count == 0) return null;
+        relation.copyRows(rows, count, columns, batch);
+        return batch;
+    }
+
+    /**
+     * This method is used reset the index of this operator,
+     * so that the scan will read from the first row next time.
+     */
+    @Override
+    public void reset() {
+        index = from;
+    }
+
+    @Override
+    public boolean canSplit() {
+        return true;
+    }
+
+    @Override
+    public int getSplitSize() {
+        return relation.size();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        return new ScanOperator(this, from, to);
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Description of the atom, the terms kept if some are left out, and the pushed-down conditions.
+     */
+    @Override
+    public String describe() {
+        String description = "ScanOperator " + ra;
+        if(layout.size() < ra.getTerms().size()) description += " keeping " + layout.getTerms();
+        if(distinct) description += " distinct";
+        return cas.isEmpty() ? description : description + " filter " + cas;
     }
 
     /**
-     * This method is used dump the tuple, keep calling this.getNextTuple()
-     * until it returns null, meanwhile write the tuple back to output file.
-     * @see Catalog#writeOutputFile(Tuple)
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
      */
     @Override
     public void dump() {
         reset();
         while (true){
-            Tuple tuple = this.getNextTuple();
-            if(tuple == null) break;
-            catalog.writeOutputFile(tuple);
-//            System.out.println("scanOp: "+tuple);
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            catalog.writeOutputBatch(batch);
         }
     }
 }
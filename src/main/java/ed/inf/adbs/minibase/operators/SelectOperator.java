@@ -3,6 +3,10 @@ package ed.inf.adbs.minibase.operators;
 import ed.inf.adbs.minibase.Catalog;
 import ed.inf.adbs.minibase.base.*;
 
+import ed.inf.adbs.minibase.operators.PredicateCompiler.BatchPredicate;
+import ed.inf.adbs.minibase.operators.PredicateCompiler.TuplePredicate;
+
+import java.util.Collections;
 import java.util.List;
 
 
@@ -11,14 +15,19 @@ import java.util.List;
  * select tuples from its child operator, with given
  * ComparisonAtoms.
  */
-public class SelectOperator extends Operator{
+public class SelectOperator extends Operator implements Splittable{
 //    private Catalog Catalog = Catalog.getInstance();
     private List<ComparisonAtom> comparisonAtoms;
     private Operator childOp;
+    // the ComparisonAtoms compiled for the layout of the child
+    private TuplePredicate predicate;
+    private BatchPredicate batchPredicate;
 
     public SelectOperator(Operator childOp, List<ComparisonAtom> comparisonAtoms) {
         this.comparisonAtoms = comparisonAtoms;
         this.childOp = childOp;
+        this.predicate = PredicateCompiler.compile(comparisonAtoms, childOp.getLayout());
+        this.batchPredicate = PredicateCompiler.compileBatch(comparisonAtoms, childOp.getLayout());
     }
 
     public Operator getChildOp() {
@@ -27,21 +36,41 @@ public class SelectOperator extends Operator{
 
     /**
      * This method is used to get next tuple from child operator,
-     * if child operator still has tuple, then get and test it.
+     * if child operator still has tuple, then get and test it
+     * with the compiled predicate.
      * If tuple passes these conditions then return it, else
      * grasp next tuple from child, until no tuple left.
+     * @see PredicateCompiler#compile(List, TupleLayout)
      */
     @Override
     public Tuple getNextTuple() {
         while (true){
             Tuple tuple = childOp.getNextTuple();
             if(tuple == null) return null;
-            if(compareTuple(tuple, comparisonAtoms)){
+            if(predicate.test(tuple)){
                 return tuple;
             }
         }
     }
 
+    /**
+     * This method is used to get the next batch from child operator and
+     * filter its selection vector with the compiled batch predicate,
+     * skipping batches in which no row is left.
+     * @see PredicateCompiler#compileBatch(List, TupleLayout)
+     */
+    @Override
+    public Batch nextBatch() {
+        while (true){
+            Batch batch = childOp.nextBatch();
+            if(batch == null) return null;
+            batchPredicate.filter(batch);
+            if(batch.getSelectedCount() > 0){
+                return batch;
+            }
+        }
+    }
+
     /**
      * This method is used reset this operator, by resetting its child operator.
      */
@@ -50,68 +79,49 @@ public class SelectOperator extends Operator{
         childOp.reset();
     }
 
-    /**
-     * This method is used dump the tuple, keep calling this.getNextTuple()
-     * until it returns null, meanwhile write the tuple back to output file.
-     * @see Catalog#writeOutputFile(Tuple)
-     */
     @Override
-    public void dump() {
-        reset();
-        while (true){
-            Tuple tuple = this.getNextTuple();
-            if(tuple == null) break;
-//            System.out.println("selectOp: "+tuple);
-            Catalog.getInstance().writeOutputFile(tuple);
-        }
+    public TupleLayout getLayout() {
+        return childOp.getLayout();
     }
 
-    /**
-     * Compare whether a tuple pass given lists of ComparisonAtom.
-     * @param tuple tuple to compare.
-     * @param comparisonAtoms a list of comparison atoms
-     * @return true, if the tuple pass these conditions, else return false.
-     */
-    public static boolean compareTuple(Tuple tuple, List<ComparisonAtom> comparisonAtoms){
-        for(ComparisonAtom ca: comparisonAtoms){
-            if(!singleCompareTuple(tuple, ca)){
-                return false;
-            }
-        }
-        return true;
+    @Override
+    public boolean canSplit() {
+        return Splittable.isSplittable(childOp);
+    }
+
+    @Override
+    public int getSplitSize() {
+        return ((Splittable) childOp).getSplitSize();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        return new SelectOperator(((Splittable) childOp).split(from, to), comparisonAtoms);
+    }
+
+    @Override
+    public String describe() {
+        return "SelectOperator " + comparisonAtoms;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(childOp);
     }
 
     /**
-     * Compare whether a tuple pass the given ComparisonAtom.
-     * @param tuple tuple to compare.
-     * @param ca a comparison atom
-     * @return true, if the tuple pass this condition, else return false.
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
      */
-    public static boolean singleCompareTuple(Tuple tuple, ComparisonAtom ca){
-        Term term1 = ca.getTerm1();
-        Term term2 = ca.getTerm2();
-        ComparisonOperator op = ca.getOp();
-
-        // replace variable with value
-        if(term1 instanceof Variable){
-            Object value1 = tuple.getValue(term1);
-            if(value1 instanceof String){
-                term1 = new StringConstant(((String) value1).replace("'", ""));
-            }else {
-                term1 = new IntegerConstant((Integer) value1);
-            }
-        }
-
-        if(term2 instanceof Variable){
-            Object value2 = tuple.getValue(term2);
-            if(value2 instanceof String){
-                term2 = new StringConstant(((String) value2).replace("'", ""));
-            }else {
-                term2 = new IntegerConstant((Integer) value2);
-            }
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
         }
-
-        return compareOperate(term1, term2, op);
     }
 
     /**
@@ -0,0 +1,107 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.SemiJoinReducer;
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is to create SemiJoinReduceOperator instance to return
+ * the tuples of the input of one relational atom which are left by
+ * the semi-join reduction of an acyclic query. The reduction of all
+ * atoms is shared, it runs when the first of their operators is read
+ * (or split), so the time and rows of reading every input are counted
+ * by EXPLAIN ANALYZE, the semi-join passes within that first operator.
+ * The reduced tuples are kept across resets.
+ * @see SemiJoinReducer
+ */
+public class SemiJoinReduceOperator extends Operator implements Splittable{
+
+    private SemiJoinReducer reducer;
+    private int atom;
+
+    /**
+     * @param reducer reduction of the inputs of all atoms
+     * @param atom index of the relational atom in the hypergraph
+     */
+    public SemiJoinReduceOperator(SemiJoinReducer reducer, int atom){
+        this.reducer = reducer;
+        this.atom = atom;
+    }
+
+    /**
+     * @return whether the inputs have been read and reduced
+     */
+    public boolean isReduced(){
+        return reducer.isReduced();
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+        return reducer.getReduced(atom).getNextTuple();
+    }
+
+    @Override
+    public Batch nextBatch() {
+        return reducer.getReduced(atom).nextBatch();
+    }
+
+    /**
+     * This method is used reset this operator, rereading the reduced
+     * tuples, without reducing the inputs again. Nothing is read if
+     * the inputs have not been reduced yet.
+     */
+    @Override
+    public void reset() {
+        if(reducer.isReduced()) reducer.getReduced(atom).reset();
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return reducer.getInput(atom).getLayout();
+    }
+
+    @Override
+    public boolean canSplit() {
+        return true;
+    }
+
+    @Override
+    public int getSplitSize() {
+        return reducer.getReduced(atom).getSplitSize();
+    }
+
+    @Override
+    public Operator split(int from, int to) {
+        return reducer.getReduced(atom).split(from, to);
+    }
+
+    @Override
+    public String describe() {
+        return "SemiJoinReduceOperator " + getLayout().getTerms();
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(reducer.getInput(atom));
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ed.inf.adbs.minibase.operators.PredicateCompiler.TuplePredicate;
+
+/**
+ * This class is to create SortMergeJoinOperator instance to
+ * merge tuples from two child operators on the equi-join
+ * ComparisonAtoms (e.g. x = a), based on sort-merge join.
+ * Both inputs are sorted on their join keys by an ExternalSort,
+ * which spills sorted runs to disk beyond its memory limit, so
+ * inputs larger than memory can be joined. The sorted inputs are
+ * then merged: the right tuples sharing a key are kept as a group
+ * and merged with every left tuple of that key, and the remaining
+ * ComparisonAtoms are applied to the merged tuples as a residual
+ * filter. Input which is already sorted is sorted in linear time.
+ */
+public class SortMergeJoinOperator extends Operator{
+
+    private Operator childOp1;
+    private Operator childOp2;
+    private List<ComparisonAtom> cas;
+    private TuplePredicate residualPredicate;
+    private TupleMerger merger;
+    private int[] leftKeySlots;
+    private int[] rightKeySlots;
+    private boolean[] intKeys;
+    // true if a key compares an int with a string, so no tuples match
+    private boolean typeMismatch;
+
+    private ExternalSort leftSort;
+    private ExternalSort rightSort;
+    private Tuple leftTuple;
+    // first right tuple after the current group
+    private Tuple rightNext;
+    // right tuples with the key of the current left tuple
+    private List<Tuple> group;
+    private int groupIndex;
+
+    public SortMergeJoinOperator(Operator childOp1, Operator childOp2, List<ComparisonAtom> cas) {
+        this.childOp1 = childOp1;
+        this.childOp2 = childOp2;
+        this.cas = cas;
+        this.merger = new TupleMerger(childOp1.getLayout(), childOp2.getLayout());
+        splitComparisonAtoms(childOp1.getLayout(), childOp2.getLayout());
+    }
+
+    /**
+     * This method is used to take the equi-join ComparisonAtoms as sort keys,
+     * oriented to (left, right), and compile the other ones as residual conditions.
+     * @param leftLayout layout of the tuples from the left child
+     * @param rightLayout layout of the tuples from the right child
+     */
+    private void splitComparisonAtoms(TupleLayout leftLayout, TupleLayout rightLayout){
+        List<Term> leftKeys = new ArrayList<>();
+        List<Term> rightKeys = new ArrayList<>();
+        List<ComparisonAtom> residualCAS = new ArrayList<>();
+        for (ComparisonAtom ca: cas){
+            if(HashJoinOperator.isEquiJoin(ca)){
+                if(leftLayout.contains(ca.getTerm1()) && rightLayout.contains(ca.getTerm2())){
+                    leftKeys.add(ca.getTerm1());
+                    rightKeys.add(ca.getTerm2());
+                    continue;
+                }else if(rightLayout.contains(ca.getTerm1()) && leftLayout.contains(ca.getTerm2())){
+                    leftKeys.add(ca.getTerm2());
+                    rightKeys.add(ca.getTerm1());
+                    continue;
+                }
+            }
+            residualCAS.add(ca);
+        }
+        residualPredicate = PredicateCompiler.compile(residualCAS, merger.getLayout());
+        leftKeySlots = leftLayout.slotsOf(leftKeys);
+        rightKeySlots = rightLayout.slotsOf(rightKeys);
+        intKeys = new boolean[leftKeySlots.length];
+        for (int i=0; i<leftKeySlots.length; i++){
+            intKeys[i] = leftLayout.isInt(leftKeySlots[i]);
+            typeMismatch |= intKeys[i] != rightLayout.isInt(rightKeySlots[i]);
+        }
+    }
+
+    /**
+     * This method is used to compare the join keys of two tuples.
+     * @param tuple1 first tuple
+     * @param slots1 key slots of the first tuple
+     * @param tuple2 second tuple
+     * @param slots2 key slots of the second tuple
+     * @return negative, zero or positive as the first key is lower, equal or greater
+     */
+    private int compareKeys(Tuple tuple1, int[] slots1, Tuple tuple2, int[] slots2){
+        for (int i=0; i<slots1.length; i++){
+            int cmp = intKeys[i]
+                    ? Integer.compare(tuple1.getInt(slots1[i]), tuple2.getInt(slots2[i]))
+                    : tuple1.getString(slots1[i]).compareTo(tuple2.getString(slots2[i]));
+            if(cmp != 0) return cmp;
+        }
+        return 0;
+    }
+
+    /**
+     * This method is used to sort both children on their join keys.
+     */
+    private void sort(){
+        leftSort = new ExternalSort(childOp1.getLayout(), (t1, t2) -> compareKeys(t1, leftKeySlots, t2, leftKeySlots));
+        rightSort = new ExternalSort(childOp2.getLayout(), (t1, t2) -> compareKeys(t1, rightKeySlots, t2, rightKeySlots));
+        if(typeMismatch) return;
+        leftSort.addAll(childOp1);
+        rightSort.addAll(childOp2);
+        leftTuple = leftSort.next();
+        rightNext = rightSort.next();
+    }
+
+    /**
+     * This method is used to get next tuple.
+     * Both children are sorted on the first call. The current left tuple is
+     * merged with every tuple of the right group of the same key, and the next
+     * left tuple reuses the group if it has the same key. Otherwise the side
+     * with the lower key advances until both keys are equal, and the right
+     * tuples of that key are collected as the new group.
+     * If there are residual conditions, it would test the compiled residual
+     * predicate to check whether the merged tuple satisfy it.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        if(leftSort == null) sort();
+
+        while (true){
+            if(group != null){
+                if(groupIndex < group.size()){
+                    Tuple tuple = merger.merge(leftTuple, group.get(groupIndex++));
+                    if(residualPredicate.test(tuple)) return tuple;
+                    continue;
+                }
+                leftTuple = leftSort.next();
+                if(leftTuple != null && compareKeys(leftTuple, leftKeySlots, group.get(0), rightKeySlots) == 0){
+                    groupIndex = 0;
+                    continue;
+                }
+                group = null;
+            }
+            if(leftTuple == null || rightNext == null){
+                // remove the sorted runs as soon as the join is done
+                leftSort.close();
+                rightSort.close();
+                return null;
+            }
+            int cmp = compareKeys(leftTuple, leftKeySlots, rightNext, rightKeySlots);
+            if(cmp < 0){
+                leftTuple = leftSort.next();
+            }else if(cmp > 0){
+                rightNext = rightSort.next();
+            }else {
+                group = new ArrayList<>();
+                Tuple first = rightNext;
+                while (rightNext != null && compareKeys(rightNext, rightKeySlots, first, rightKeySlots) == 0){
+                    group.add(rightNext);
+                    rightNext = rightSort.next();
+                }
+                groupIndex = 0;
+            }
+        }
+    }
+
+    /**
+     * This method is used reset this operator, by resetting its child operators
+     * and dropping the sorted inputs, so they will be sorted again next time.
+     */
+    @Override
+    public void reset() {
+        childOp1.reset();
+        childOp2.reset();
+        if(leftSort != null) leftSort.close();
+        if(rightSort != null) rightSort.close();
+        leftSort = null;
+        rightSort = null;
+        leftTuple = null;
+        rightNext = null;
+        group = null;
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return merger.getLayout();
+    }
+
+    @Override
+    public String describe() {
+        return "SortMergeJoinOperator on " + cas;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(childOp1, childOp2);
+    }
+
+    /**
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
+     */
+    @Override
+    public void dump() {
+        reset();
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
+        }
+    }
+}
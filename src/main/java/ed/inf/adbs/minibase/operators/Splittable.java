@@ -0,0 +1,45 @@
+package ed.inf.adbs.minibase.operators;
+
+/**
+ * This interface is implemented by the operators which can be split
+ * into copies reading a range of rows of the scan driving them, which
+ * the ParallelExecutor runs on several threads. An operator reading
+ * other operators can only be split if they can, so canSplit() must
+ * hold before the rows are counted or the operator is split.
+ */
+public interface Splittable {
+
+    /**
+     * This method is used to check whether the operator can be split
+     * in its plan, e.g. whether the child driving it can be split.
+     * @return boolean flag of check result
+     */
+    boolean canSplit();
+
+    /**
+     * This method is used to get the number of rows of the scan driving this
+     * operator, which are the rows split(int, int) can divide.
+     * @return number of rows
+     */
+    int getSplitSize();
+
+    /**
+     * This method is used to create a copy of this operator whose driving scan
+     * only reads the rows in [from, to). Copies can run on different threads,
+     * read-only state such as hash tables is built once and shared by them.
+     * Splits are created on one thread before they are run.
+     * @param from index of the first row
+     * @param to index after the last row
+     * @return the copy
+     */
+    Operator split(int from, int to);
+
+    /**
+     * This method is used to check whether the given operator is Splittable and can be split.
+     * @param op an operator of the plan
+     * @return boolean flag of check result
+     */
+    static boolean isSplittable(Operator op){
+        return op instanceof Splittable && ((Splittable) op).canSplit();
+    }
+}
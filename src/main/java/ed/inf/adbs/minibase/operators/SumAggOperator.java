@@ -5,7 +5,9 @@ import ed.inf.adbs.minibase.Interpreter;
 import ed.inf.adbs.minibase.base.*;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,137 +16,208 @@ import java.util.Map;
  * This class is to create SumAggOperator instance to
  * get tuples from its child operator. It would calculate
  * the sum value of aggregated variable, for each distinct
- * group-by variables group.
+ * group-by variables group. The child is consumed once and
+ * only one accumulator is kept per group, then one tuple
+ * per group is returned. The child is read in batches
+ * and the contributions are computed from the columns.
+ * The sum is over the distinct assignments of the body
+ * variables, the scans below leave out repeated rows.
  */
 public class SumAggOperator extends Operator{
     private Interpreter it;
     private Operator childOp;
-    private List<Tuple> childTuples;
     private SumAggregate sumAggregate;
     private List<Variable> distVariables;
-    private Map<List<Object>, List<Tuple>> groupMap;
-    private Map<List<Object>, Integer> groupSums;
+    // layout and child slots of the group-by values
+    private TupleLayout groupLayout;
+    private int[] groupSlots;
+    // child slot of every variable product term, -1 for constants
+    private int[] productSlots;
+    private TupleLayout layout;
+    // group-by values to group sum, in the order the groups first appear
+    private Map<Tuple, long[]> groupSums;
+    private Iterator<Map.Entry<Tuple, long[]>> groupIterator;
+    private Batch batch;
 
 
     public SumAggOperator(Operator childOp, SumAggregate sumAggregate){
         this.it = Interpreter.getInstance();
         this.childOp = childOp;
-        this.childTuples = new ArrayList<>();
         this.sumAggregate = sumAggregate;
         this.distVariables = it.getDistVariables();
-        this.groupMap = new HashMap<>();
-        this.groupSums = new HashMap<>();
-        generateSumAgg();
+        this.groupSums = null;
+
+        TupleLayout childLayout = childOp.getLayout();
+        this.groupLayout = TupleLayout.of(distVariables, childLayout);
+        this.groupSlots = childLayout.slotsOf(distVariables);
+        List<Term> productTerms = sumAggregate.getProductTerms();
+        this.productSlots = new int[productTerms.size()];
+        for (int i=0; i<productTerms.size(); i++){
+            productSlots[i] = productTerms.get(i) instanceof Variable ? childLayout.slotOf(productTerms.get(i)) : -1;
+        }
+        List<Term> terms = new ArrayList<>(distVariables);
+        terms.add(sumAggregate);
+        List<String> types = new ArrayList<>(groupLayout.getSchema().getTypes());
+        types.add(TupleLayout.LONG);
+        this.layout = new TupleLayout(terms, new Schema(types));
     }
 
     /**
-     * This method is used to get all tuples from child operator.
-     * divide tuples into groups, calculate the sum of each group,
-     * and add a SumAgg term to the end of every singleTuple.
-     * (value:groupSum, term:sumAgg, type:int)
-     * Then, add this updated tuple to the tuple list.
+     * This method is used to get all tuples from child operator in batches,
+     * divide them into groups by the group-by values and add the
+     * contribution of each row to the sum of its group. Without group-by
+     * variables all rows are added to a single accumulator.
      */
     private void generateSumAgg(){
-        // get all child tuples
-        childOp.reset();
-        while (true){
-            Tuple singleTuple = childOp.getNextTuple();
-            if(singleTuple == null) break;
-            if(!childTuples.contains(singleTuple)) childTuples.add(singleTuple);
-        }
-
-        if(distVariables.size() == 0){
-            int sum = 0;
-            for (Tuple singleTuple: childTuples){
-                sum += getSingleContribute(singleTuple);
-            }
-            for (Tuple singleTuple: childTuples){
-                singleTuple.getValues().add(sum);
-                singleTuple.getSchema().getTypes().add("int");
-                singleTuple.getTerms().add(sumAggregate);
-            }
+        setGroups(aggregate(childOp));
+    }
 
-        }else {
-            // divide tuples into groups
-            for (Tuple singleTuple: childTuples){
-                List<Object> distValues = new ArrayList<>();
-                for (Variable distVar: distVariables){
-                    distValues.add(singleTuple.getValue(distVar));
-                }
-                if(groupMap.containsKey(distValues)){
-                    groupMap.get(distValues).add(singleTuple);
-                    groupSums.replace(distValues, groupSums.get(distValues)+getSingleContribute(singleTuple));
-                }else {
-                    List<Tuple> newGroup = new ArrayList<>();
-                    newGroup.add(singleTuple);
-                    groupMap.put(distValues, newGroup);
-                    groupSums.put(distValues, getSingleContribute(singleTuple));
+    /**
+     * This method is used to compute the group sums of the tuples of the given
+     * operator, which is the child or a split of it. It is safe to call from
+     * several threads on different inputs.
+     * @param input operator producing tuples of the child layout
+     * @return group-by values to group sum, in the order the groups first appear
+     */
+    public Map<Tuple, long[]> aggregate(Operator input){
+        Map<Tuple, long[]> groupSums = new LinkedHashMap<>();
+        long[] total = null;
+        while (true){
+            Batch childBatch = input.nextBatch();
+            if(childBatch == null) break;
+            int[] selection = childBatch.getSelection();
+            int count = childBatch.getSelectedCount();
+            if(groupSlots.length == 0){
+                if(total == null) total = groupSums.computeIfAbsent(Tuple.allocate(groupLayout), k -> new long[1]);
+                for (int k=0; k<count; k++){
+                    total[0] += getSingleContribute(childBatch, selection[k]);
                 }
+                continue;
             }
-
-            // update singleTuple from each group, add value:groupSum, term:sumAgg, type:int
-            for (List<Object> distValues: groupMap.keySet()){
-                List<Tuple> group = groupMap.get(distValues);
-                for (Tuple singleTuple: group){
-                    singleTuple.getValues().add(groupSums.get(distValues));
-                    singleTuple.getSchema().getTypes().add("int");
-                    singleTuple.getTerms().add(sumAggregate);
-                }
+            for (int k=0; k<count; k++){
+                int row = selection[k];
+                Tuple distValues = childBatch.project(row, groupLayout, groupSlots);
+                groupSums.computeIfAbsent(distValues, key -> new long[1])[0] += getSingleContribute(childBatch, row);
             }
         }
+        return groupSums;
     }
 
     /**
-     * This method calculate the contribution of the given tuple
+     * This method is used to set the groups returned by this operator,
+     * e.g. the merged results of aggregating the splits of the child.
+     * @param groupSums group-by values to group sum
+     */
+    public void setGroups(Map<Tuple, long[]> groupSums){
+        this.groupSums = groupSums;
+        this.groupIterator = groupSums.entrySet().iterator();
+    }
+
+    public Operator getChildOp() {
+        return childOp;
+    }
+
+    /**
+     * This method calculate the contribution of the given row
      * to the group sum by given product terms.
-     * @param tuple given tuple to be calculated
-     * @return int value of the product
+     * @param childBatch batch holding the row
+     * @param row given row to be calculated
+     * @return long value of the product
      */
-    private int getSingleContribute(Tuple tuple){
+    private long getSingleContribute(Batch childBatch, int row){
         List<Term> productTerms = sumAggregate.getProductTerms();
-        int contribute = 1;
-        for (Term productTerm: productTerms){
-            if(productTerm instanceof Variable){
-                contribute = contribute * ((int) tuple.getValue(productTerm));
-            }else if(productTerm instanceof IntegerConstant){
-                contribute = contribute * ((IntegerConstant) productTerm).getValue();
+        long contribute = 1;
+        for (int i=0; i<productSlots.length; i++){
+            if(productSlots[i] >= 0){
+                contribute = contribute * childBatch.getInts(productSlots[i])[row];
+            }else if(productTerms.get(i) instanceof IntegerConstant){
+                contribute = contribute * ((IntegerConstant) productTerms.get(i)).getValue();
             }
         }
         return contribute;
     }
 
     /**
-     * This method is used to return a tuple from its tuple list,
-     * remove the returned one from list, until empty the list.
+     * This method is used to return the tuple of the next group,
+     * holding the group-by values followed by the group sum.
+     * (value:groupSum, term:sumAgg, type:long)
+     * The groups are computed on the first call.
      */
     @Override
     public Tuple getNextTuple() {
-        if(childTuples.size() == 0) return null;
-        Tuple tuple = childTuples.get(0);
-        childTuples.remove(tuple);
+        if(groupSums == null) generateSumAgg();
+        if(!groupIterator.hasNext()) return null;
+
+        Map.Entry<Tuple, long[]> group = groupIterator.next();
+        Tuple tuple = Tuple.allocate(layout);
+        for (int i=0; i<groupSlots.length; i++){
+            tuple.copySlot(i, group.getKey(), i);
+        }
+        tuple.setLong(groupSlots.length, group.getValue()[0]);
 //        System.out.println("sumAggOp: "+tuple);
         return tuple;
     }
 
     /**
-     * This method is used reset this operator, by resetting its child operator.
+     * This method is used to return a batch of groups, each row holding
+     * the group-by values followed by the group sum.
+     * The groups are computed on the first call.
+     */
+    @Override
+    public Batch nextBatch() {
+        if(groupSums == null) generateSumAgg();
+        if(!groupIterator.hasNext()) return null;
+        if(batch == null) batch = new Batch(layout);
+        batch.clear();
+        while (!batch.isFull() && groupIterator.hasNext()){
+            Map.Entry<Tuple, long[]> group = groupIterator.next();
+            int row = batch.addRow();
+            for (int i=0; i<groupSlots.length; i++){
+                batch.copySlot(row, i, group.getKey(), i);
+            }
+            batch.getLongs(groupSlots.length)[row] = group.getValue()[0];
+        }
+        return batch;
+    }
+
+    /**
+     * This method is used reset this operator, by resetting its child operator
+     * and dropping the groups, so they will be computed again next time.
      */
     @Override
     public void reset() {
         childOp.reset();
+        groupSums = null;
+        groupIterator = null;
+    }
+
+    @Override
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public String describe() {
+        return "SumAggOperator " + sumAggregate + " by " + distVariables;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(childOp);
     }
 
     /**
-     * This method is used dump all tuples in the list,
-     * meanwhile write the tuple back to output file.
-     * @see Catalog#writeOutputFile(Tuple)
+     * This method is used dump the tuples, keep calling this.nextBatch()
+     * until it returns null, meanwhile write the batches back to output file.
+     * @see Catalog#writeOutputBatch(Batch)
      */
     @Override
     public void dump() {
         reset();
-        for(Tuple tuple: childTuples){
-            Catalog.getInstance().writeOutputFile(tuple);
-//            System.out.println("sumaggOp: "+tuple);
+        while (true){
+            Batch batch = this.nextBatch();
+            if(batch == null) break;
+            Catalog.getInstance().writeOutputBatch(batch);
         }
     }
 }
@@ -0,0 +1,121 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.Batch;
+import ed.inf.adbs.minibase.base.Schema;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Tuple;
+import ed.inf.adbs.minibase.base.TupleLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is to create TupleMerger instance to merge
+ * tuples of two given layouts into one tuple, used by the
+ * join operators. The merged layout holds the terms of the
+ * left layout followed by the terms of the right one which
+ * are not in the left one, resolved once at plan time.
+ */
+public class TupleMerger {
+
+    private TupleLayout layout;
+    // slots copied from the left tuple, then from the right tuple
+    private int[] leftSlots;
+    private int[] rightSlots;
+
+    public TupleMerger(TupleLayout left, TupleLayout right){
+        List<Term> terms = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        List<Integer> leftList = new ArrayList<>();
+        List<Integer> rightList = new ArrayList<>();
+        for (TupleLayout source: new TupleLayout[]{left, right}){
+            for (int i=0; i<source.size(); i++){
+                if(!terms.contains(source.getTerm(i))){
+                    terms.add(source.getTerm(i));
+                    types.add(source.getType(i));
+                    (source == left ? leftList : rightList).add(i);
+                }
+            }
+        }
+        this.layout = new TupleLayout(terms, new Schema(types));
+        this.leftSlots = leftList.stream().mapToInt(Integer::intValue).toArray();
+        this.rightSlots = rightList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public TupleLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * A method that used to create a new tuple based on the merge of given two tuples
+     * @param tuple1 First tuple to merge, of the left layout.
+     * @param tuple2 Second tuple to merge, of the right layout.
+     * @return Merged tuple.
+     */
+    public Tuple merge(Tuple tuple1, Tuple tuple2){
+        Tuple tuple = Tuple.allocate(layout);
+        int slot = 0;
+        for (int leftSlot: leftSlots){
+            tuple.copySlot(slot++, tuple1, leftSlot);
+        }
+        for (int rightSlot: rightSlots){
+            tuple.copySlot(slot++, tuple2, rightSlot);
+        }
+        return tuple;
+    }
+
+    /**
+     * This method is used to add the merge of two tuples as a new row of a batch.
+     * @param batch batch of the merged layout
+     * @param tuple1 First tuple to merge, of the left layout.
+     * @param tuple2 Second tuple to merge, of the right layout.
+     */
+    public void mergeInto(Batch batch, Tuple tuple1, Tuple tuple2){
+        int row = batch.addRow();
+        int slot = 0;
+        for (int leftSlot: leftSlots){
+            batch.copySlot(row, slot++, tuple1, leftSlot);
+        }
+        for (int rightSlot: rightSlots){
+            batch.copySlot(row, slot++, tuple2, rightSlot);
+        }
+    }
+
+    /**
+     * This method is used to add the merge of a tuple and a row of a batch
+     * as a new row of a batch.
+     * @param batch batch of the merged layout
+     * @param tuple1 First tuple to merge, of the left layout.
+     * @param batch2 batch of the right layout holding the second row
+     * @param row2 Second row to merge.
+     */
+    public void mergeInto(Batch batch, Tuple tuple1, Batch batch2, int row2){
+        int row = batch.addRow();
+        int slot = 0;
+        for (int leftSlot: leftSlots){
+            batch.copySlot(row, slot++, tuple1, leftSlot);
+        }
+        for (int rightSlot: rightSlots){
+            batch.copySlot(row, slot++, batch2, row2, rightSlot);
+        }
+    }
+
+    /**
+     * This method is used to add the merge of a row of a batch and a tuple
+     * as a new row of a batch.
+     * @param batch batch of the merged layout
+     * @param batch1 batch of the left layout holding the first row
+     * @param row1 First row to merge.
+     * @param tuple2 Second tuple to merge, of the right layout.
+     */
+    public void mergeInto(Batch batch, Batch batch1, int row1, Tuple tuple2){
+        int row = batch.addRow();
+        int slot = 0;
+        for (int leftSlot: leftSlots){
+            batch.copySlot(row, slot++, batch1, row1, leftSlot);
+        }
+        for (int rightSlot: rightSlots){
+            batch.copySlot(row, slot++, tuple2, rightSlot);
+        }
+    }
+}
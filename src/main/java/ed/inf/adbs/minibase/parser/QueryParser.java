@@ -4,9 +4,12 @@ import ed.inf.adbs.minibase.parser.generated.MinibaseBaseVisitor;
 import ed.inf.adbs.minibase.parser.generated.MinibaseLexer;
 import ed.inf.adbs.minibase.parser.generated.MinibaseParser;
 import ed.inf.adbs.minibase.base.*;
+import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.TokenStream;
 
 import java.io.IOException;
@@ -33,6 +36,30 @@ public class QueryParser {
         return parser.query().accept(queryVisitor);
     }
 
+    /**
+     * Parses the query like parse(String), but fails on the first syntax error
+     * instead of reporting it to stderr and recovering from it.
+     * @throws IllegalArgumentException with the position and description of the syntax error
+     */
+    public static Query parseStrict(String input) {
+        BaseErrorListener listener = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                throw new IllegalArgumentException("Syntax error at " + line + ":" + charPositionInLine + ": " + msg);
+            }
+        };
+        MinibaseLexer lexer = new MinibaseLexer(CharStreams.fromString(input));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(listener);
+        MinibaseParser parser = new MinibaseParser(new CommonTokenStream(lexer));
+        parser.removeErrorListeners();
+        parser.addErrorListener(listener);
+
+        QueryVisitor queryVisitor = new QueryVisitor();
+        return parser.query().accept(queryVisitor);
+    }
+
     private static class QueryVisitor extends MinibaseBaseVisitor<Query> {
         @Override
         public Query visitQuery(MinibaseParser.QueryContext ctx) {
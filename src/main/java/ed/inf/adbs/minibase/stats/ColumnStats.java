@@ -0,0 +1,148 @@
+package ed.inf.adbs.minibase.stats;
+
+import ed.inf.adbs.minibase.base.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * This class holds the statistics of one attribute of a relation:
+ * its minimum and maximum, a HyperLogLog sketch of its distinct
+ * values and, for int attributes, an equi-depth histogram.
+ */
+public class ColumnStats {
+
+    private boolean isInt;
+    private boolean empty;
+    private int intMin;
+    private int intMax;
+    private String stringMin;
+    private String stringMax;
+    private HyperLogLog sketch;
+    private Histogram histogram;
+
+    public ColumnStats(boolean isInt){
+        this.isInt = isInt;
+        this.empty = true;
+        this.sketch = new HyperLogLog();
+    }
+
+    public void add(int value){
+        if(empty || value < intMin) intMin = value;
+        if(empty || value > intMax) intMax = value;
+        empty = false;
+        sketch.add(value);
+        if(histogram != null) histogram.add(value);
+    }
+
+    public void add(String value){
+        if(empty || value.compareTo(stringMin) < 0) stringMin = value;
+        if(empty || value.compareTo(stringMax) > 0) stringMax = value;
+        empty = false;
+        sketch.add(value);
+    }
+
+    public void setHistogram(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
+    public boolean isInt() {
+        return isInt;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public Object getMin() {
+        if(empty) return null;
+        return isInt ? (Object) intMin : stringMin;
+    }
+
+    public Object getMax() {
+        if(empty) return null;
+        return isInt ? (Object) intMax : stringMax;
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public long estimateDistinct(){
+        return sketch.estimate();
+    }
+
+    /**
+     * This method is used to estimate the fraction of values v passing v op c.
+     * Constants out of the [min, max] range give 0 or 1, equality keeps one
+     * distinct value, and int ranges are estimated from the histogram.
+     * @param op a Comparison Operator
+     * @param c the constant
+     * @param distinct number of distinct values of the attribute
+     * @return estimated selectivity, or -1 if the statistics cannot tell
+     */
+    public double estimate(ComparisonOperator op, Constant c, long distinct){
+        if(empty) return 0;
+        int lower;
+        int upper;
+        if(isInt && c instanceof IntegerConstant){
+            int value = ((IntegerConstant) c).getValue();
+            lower = Integer.compare(value, intMin);
+            upper = Integer.compare(value, intMax);
+        }else if(!isInt && c instanceof StringConstant){
+            String value = ((StringConstant) c).getValue();
+            lower = Integer.signum(value.compareTo(stringMin));
+            upper = Integer.signum(value.compareTo(stringMax));
+        }else {
+            return 0;
+        }
+        switch (op){
+            case EQ: return lower < 0 || upper > 0 ? 0 : 1.0 / distinct;
+            case NEQ: return lower < 0 || upper > 0 ? 1 : 1 - 1.0 / distinct;
+            case LT: if(lower <= 0) return 0; if(upper > 0) return 1; break;
+            case LEQ: if(lower < 0) return 0; if(upper >= 0) return 1; break;
+            case GT: if(upper >= 0) return 0; if(lower < 0) return 1; break;
+            case GEQ: if(upper > 0) return 0; if(lower <= 0) return 1; break;
+        }
+        if(histogram != null) return histogram.estimate(op, ((IntegerConstant) c).getValue());
+        return -1;
+    }
+
+    /**
+     * This method is used to write the statistics as space separated fields:
+     * type, min, max, sketch and histogram, "-" standing for missing values.
+     * @return encoded statistics
+     */
+    public String encode(){
+        String type = isInt ? "int" : "string";
+        if(empty) return type + " - - " + sketch.encode() + " -";
+        String min = isInt ? Integer.toString(intMin) : encodeString(stringMin);
+        String max = isInt ? Integer.toString(intMax) : encodeString(stringMax);
+        return type + " " + min + " " + max + " " + sketch.encode() + " " + (histogram == null ? "-" : histogram.encode());
+    }
+
+    public static ColumnStats decode(String[] fields, int offset){
+        ColumnStats stats = new ColumnStats(fields[offset].equals("int"));
+        if(!fields[offset + 1].equals("-")){
+            stats.empty = false;
+            if(stats.isInt){
+                stats.intMin = Integer.parseInt(fields[offset + 1]);
+                stats.intMax = Integer.parseInt(fields[offset + 2]);
+            }else {
+                stats.stringMin = decodeString(fields[offset + 1]);
+                stats.stringMax = decodeString(fields[offset + 2]);
+            }
+        }
+        stats.sketch = HyperLogLog.decode(fields[offset + 3]);
+        if(!fields[offset + 4].equals("-")) stats.histogram = Histogram.decode(fields[offset + 4]);
+        return stats;
+    }
+
+    private static String encodeString(String value){
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeString(String text){
+        return new String(Base64.getDecoder().decode(text), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package ed.inf.adbs.minibase.stats;
+
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+
+import java.util.Arrays;
+
+/**
+ * This class is an equi-depth histogram of an int attribute.
+ * Bucket i holds the values in (bounds[i-1], bounds[i]], the first
+ * bucket starting at the minimum, and all buckets hold about the
+ * same number of values when the histogram is built. Values are
+ * assumed to be spread uniformly within a bucket.
+ */
+public class Histogram {
+
+    public static final int MAX_BUCKETS = 32;
+
+    private int min;
+    private int[] bounds;
+    private long[] counts;
+
+    public Histogram(int min, int[] bounds, long[] counts) {
+        this.min = min;
+        this.bounds = bounds;
+        this.counts = counts;
+    }
+
+    /**
+     * This method is used to build an equi-depth histogram of the given values.
+     * @param values values of the attribute, sorted in place
+     * @param size number of values to use
+     * @return the histogram, or null if there are no values
+     */
+    public static Histogram build(int[] values, int size){
+        if(size == 0) return null;
+        Arrays.sort(values, 0, size);
+        int buckets = Math.min(MAX_BUCKETS, size);
+        int[] bounds = new int[buckets];
+        long[] counts = new long[buckets];
+        int count = 0;
+        int start = 0;
+        for (int b=0; b<buckets; b++){
+            int end = (int) ((long) size * (b + 1) / buckets) - 1;
+            // keep equal values in one bucket
+            while (end + 1 < size && values[end + 1] == values[end]) end++;
+            if(end < start) continue;
+            bounds[count] = values[end];
+            counts[count] = end - start + 1;
+            count++;
+            start = end + 1;
+            if(start >= size) break;
+        }
+        return new Histogram(values[0], Arrays.copyOf(bounds, count), Arrays.copyOf(counts, count));
+    }
+
+    /**
+     * This method is used to add a value to the bucket holding it, widening
+     * the first or last bucket if it is out of range. The bounds are kept,
+     * they are only recomputed when the histogram is built again.
+     * @param value the new value
+     */
+    public void add(int value){
+        if(value < min) min = value;
+        int b = Arrays.binarySearch(bounds, value);
+        if(b < 0) b = -b - 1;
+        if(b == bounds.length){
+            b = bounds.length - 1;
+            bounds[b] = value;
+        }
+        counts[b]++;
+    }
+
+    private long total(){
+        long total = 0;
+        for (long count: counts) total += count;
+        return total;
+    }
+
+    /**
+     * This method is used to estimate the fraction of values lower than x.
+     * @param x the value to compare with
+     * @return estimated fraction between 0 and 1
+     */
+    public double fractionBelow(long x){
+        long total = total();
+        if(total == 0) return 0;
+        double below = 0;
+        long low = min;
+        for (int b=0; b<bounds.length; b++){
+            long high = (long) bounds[b] + 1;
+            if(x >= high){
+                below += counts[b];
+            }else {
+                if(x > low) below += counts[b] * (double) (x - low) / (high - low);
+                break;
+            }
+            low = high;
+        }
+        return below / total;
+    }
+
+    /**
+     * This method is used to estimate the fraction of values v passing v op c.
+     * @param op a range Comparison Operator
+     * @param c the constant
+     * @return estimated selectivity
+     */
+    public double estimate(ComparisonOperator op, int c){
+        switch (op){
+            case LT: return fractionBelow(c);
+            case LEQ: return fractionBelow((long) c + 1);
+            case GT: return 1 - fractionBelow((long) c + 1);
+            case GEQ: return 1 - fractionBelow(c);
+            default: return 1;
+        }
+    }
+
+    public String encode(){
+        StringBuilder sb = new StringBuilder().append(min);
+        for (int b=0; b<bounds.length; b++){
+            sb.append(';').append(bounds[b]).append(':').append(counts[b]);
+        }
+        return sb.toString();
+    }
+
+    public static Histogram decode(String text){
+        String[] parts = text.split(";");
+        int[] bounds = new int[parts.length - 1];
+        long[] counts = new long[parts.length - 1];
+        for (int b=1; b<parts.length; b++){
+            String[] bucket = parts[b].split(":");
+            bounds[b-1] = Integer.parseInt(bucket[0]);
+            counts[b-1] = Long.parseLong(bucket[1]);
+        }
+        return new Histogram(Integer.parseInt(parts[0]), bounds, counts);
+    }
+}
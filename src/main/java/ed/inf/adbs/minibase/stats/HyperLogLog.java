@@ -0,0 +1,94 @@
+package ed.inf.adbs.minibase.stats;
+
+import java.util.Base64;
+
+/**
+ * This class is a HyperLogLog sketch estimating the number of
+ * distinct values of an attribute in fixed memory. Sketches can
+ * be merged, so the estimate of a growing relation is refreshed
+ * by adding only the new rows.
+ */
+public class HyperLogLog {
+
+    // 2^PRECISION registers, about 1.6% standard error
+    public static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private byte[] registers;
+
+    public HyperLogLog(){
+        this.registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(byte[] registers){
+        this.registers = registers;
+    }
+
+    public void add(int value){
+        // mix(0) is 0, so the value is spread first not to give 0 the maximum rank
+        addHash(mix(value * 0x9E3779B97F4A7C15L + 1));
+    }
+
+    public void add(String value){
+        long hash = 0xcbf29ce484222325L;
+        for (int i=0; i<value.length(); i++){
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        addHash(mix(hash));
+    }
+
+    private void addHash(long hash){
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if(rank > registers[index]) registers[index] = (byte) rank;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading the bits of the given value.
+     */
+    private static long mix(long h){
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public void merge(HyperLogLog other){
+        for (int i=0; i<REGISTERS; i++){
+            if(other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    /**
+     * This method is used to estimate the number of distinct values added,
+     * using linear counting while many registers are still empty.
+     * @return estimated distinct count
+     */
+    public long estimate(){
+        double sum = 0;
+        int zeros = 0;
+        for (byte register: registers){
+            sum += 1.0 / (1L << register);
+            if(register == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if(estimate <= 2.5 * REGISTERS && zeros > 0){
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public String encode(){
+        return Base64.getEncoder().encodeToString(registers);
+    }
+
+    public static HyperLogLog decode(String text){
+        byte[] registers = Base64.getDecoder().decode(text);
+        if(registers.length != REGISTERS) throw new IllegalArgumentException("Invalid HyperLogLog sketch");
+        return new HyperLogLog(registers);
+    }
+}
@@ -0,0 +1,81 @@
+package ed.inf.adbs.minibase.stats;
+
+/**
+ * This class holds the statistics of a relation used by the
+ * optimizer: the number of rows and the statistics of every
+ * attribute, together with the length and modification time
+ * of the csv file they were computed from.
+ */
+public class RelationStats {
+
+    private String name;
+    private long rowCount;
+    private long fileLength;
+    private long lastModified;
+    private ColumnStats[] columns;
+
+    public RelationStats(String name, long rowCount, long fileLength, long lastModified, ColumnStats[] columns) {
+        this.name = name;
+        this.rowCount = rowCount;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.columns = columns;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getWidth(){
+        return columns.length;
+    }
+
+    public ColumnStats getColumn(int column){
+        return columns[column];
+    }
+
+    /**
+     * @param column index of the attribute
+     * @return estimated number of distinct values of the attribute,
+     * at least 1 and at most the number of rows
+     */
+    public long getDistinctCount(int column) {
+        return Math.max(1, Math.min(rowCount, columns[column].estimateDistinct()));
+    }
+
+    /**
+     * This method is used to write the statistics as lines of the sidecar file,
+     * one line for the relation followed by one line per attribute.
+     * @return encoded statistics
+     */
+    public String encode(){
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append(' ').append(rowCount).append(' ').append(fileLength).append(' ').append(lastModified).append(' ').append(columns.length).append('\n');
+        for (int i=0; i<columns.length; i++){
+            sb.append(name).append('.').append(i).append(' ').append(columns[i].encode()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("RelationStats{name=" + name + ", rowCount=" + rowCount + ", distinct=[");
+        for (int i=0; i<columns.length; i++){
+            if(i > 0) sb.append(", ");
+            sb.append(getDistinctCount(i));
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,175 @@
+package ed.inf.adbs.minibase.stats;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.base.Relation;
+import ed.inf.adbs.minibase.base.Schema;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class is to compute the statistics of relations from their
+ * csv files. A relation is analyzed in one pass over its file. When
+ * the file has only grown since it was last analyzed, the appended
+ * lines are added to the previous statistics: row count, min/max and
+ * sketches stay exact, while the histogram buckets keep their bounds
+ * and only their counts grow. Any other change of the file makes the
+ * relation be analyzed again.
+ *
+ * Running the main method analyzes every relation of a database and
+ * writes the statistics next to its schema file.
+ */
+public class StatisticsAnalyzer {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: StatisticsAnalyzer database_dir");
+            return;
+        }
+        String dbRoot = args[0];
+        StatisticsStore store = StatisticsStore.forDatabase(dbRoot);
+        for (Map.Entry<String, Schema> entry: Catalog.readSchemas(dbRoot).entrySet()){
+            String name = entry.getKey();
+            File file = new File(dbRoot + File.separator + "files" + File.separator + name + ".csv");
+            System.out.println(store.get(name, entry.getValue(), file));
+        }
+    }
+
+    /**
+     * This method is used to get up-to-date statistics of a relation, reusing
+     * the given previous statistics if the file has not changed and adding
+     * only the appended lines if the file has grown.
+     * @param previous previous statistics of the relation, or null
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @param file csv file of the relation
+     * @return the previous statistics if still valid, otherwise new statistics
+     * @throws IOException if the file cannot be read
+     */
+    public static RelationStats refresh(RelationStats previous, String name, Schema schema, File file) throws IOException {
+        if(previous == null || !matches(previous, schema)) return analyze(name, schema, file);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if(lastModified == previous.getLastModified() && length == previous.getFileLength()) return previous;
+        if(length > previous.getFileLength() && isAppended(file, previous.getFileLength())){
+            return append(previous, schema, file, lastModified, length);
+        }
+        return analyze(name, schema, file);
+    }
+
+    /**
+     * This method is used to compute the statistics of a relation from scratch.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @param file csv file of the relation
+     * @return the statistics of the relation
+     * @throws IOException if the file cannot be read
+     */
+    public static RelationStats analyze(String name, Schema schema, File file) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        int width = schema.getTypes().size();
+        ColumnStats[] columns = new ColumnStats[width];
+        // values of the int attributes, kept to build the histograms
+        int[][] values = new int[width][];
+        for (int i=0; i<width; i++){
+            columns[i] = new ColumnStats(schema.getType(i).equals("int"));
+            if(columns[i].isInt()) values[i] = new int[16];
+        }
+        int rowCount = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = split(line, width);
+                if(fields == null) continue;
+                for (int i=0; i<width; i++){
+                    if(values[i] != null){
+                        int value = Integer.parseInt(fields[i]);
+                        if(rowCount == values[i].length) values[i] = Arrays.copyOf(values[i], rowCount * 2);
+                        values[i][rowCount] = value;
+                        columns[i].add(value);
+                    }else {
+                        columns[i].add(Relation.unquote(fields[i]));
+                    }
+                }
+                rowCount++;
+            }
+        }
+        for (int i=0; i<width; i++){
+            if(values[i] != null) columns[i].setHistogram(Histogram.build(values[i], rowCount));
+        }
+        return new RelationStats(name, rowCount, length, lastModified, columns);
+    }
+
+    /**
+     * Add the lines after the previously analyzed length of the file to a copy
+     * of the previous statistics.
+     */
+    private static RelationStats append(RelationStats previous, Schema schema, File file, long lastModified, long length) throws IOException {
+        int width = previous.getWidth();
+        ColumnStats[] columns = new ColumnStats[width];
+        for (int i=0; i<width; i++){
+            columns[i] = ColumnStats.decode(previous.getColumn(i).encode().split(" "), 0);
+        }
+        long rowCount = previous.getRowCount();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(raf.getChannel().position(previous.getFileLength())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = split(line, width);
+                if(fields == null) continue;
+                for (int i=0; i<width; i++){
+                    if(schema.getType(i).equals("int")) columns[i].add(Integer.parseInt(fields[i]));
+                    else columns[i].add(Relation.unquote(fields[i]));
+                }
+                rowCount++;
+            }
+        }
+        return new RelationStats(previous.getName(), rowCount, length, lastModified, columns);
+    }
+
+    /**
+     * This method is used to check whether the first bytes of the file still end
+     * on a line boundary, i.e. the last analyzed line was complete and new lines
+     * have been appended after it.
+     * @param file csv file of the relation
+     * @param offset length of the file when it was analyzed
+     * @return boolean flag of check result
+     */
+    private static boolean isAppended(File file, long offset) throws IOException {
+        if(offset == 0) return true;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset - 1);
+            return raf.read() == '\n' || raf.read() == '\n';
+        }
+    }
+
+    private static boolean matches(RelationStats stats, Schema schema){
+        if(stats.getWidth() != schema.getTypes().size()) return false;
+        for (int i=0; i<stats.getWidth(); i++){
+            if(stats.getColumn(i).isInt() != schema.getType(i).equals("int")) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Split a csv line the same way as Relation#load.
+     * @return the values of the line, or null for a blank line
+     */
+    private static String[] split(String line, int width){
+        line = line.trim();
+        if(line.isEmpty()) return null;
+        String[] fields = line.split(", ");
+        assert fields.length == width: "size";
+        return fields;
+    }
+}
@@ -0,0 +1,149 @@
+package ed.inf.adbs.minibase.stats;
+
+import ed.inf.adbs.minibase.base.Schema;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class is to create StatisticsStore instance to keep the
+ * statistics of the relations of one database, persisted in a
+ * sidecar file next to its schema file. The file is read once per
+ * database, statistics are refreshed when a csv file has changed
+ * and the file is rewritten whenever statistics have been updated.
+ * A database which cannot be written to keeps its statistics in
+ * memory only.
+ */
+public class StatisticsStore {
+
+    public static final String FILE_NAME = "stats.txt";
+
+    // one store per database directory
+    private static final Map<String, StatisticsStore> stores = new HashMap<>();
+
+    private File file;
+    private Map<String, RelationStats> statistics;
+
+    private StatisticsStore(File file){
+        this.file = file;
+        this.statistics = new LinkedHashMap<>();
+        load();
+    }
+
+    public static synchronized StatisticsStore forDatabase(String dbRoot){
+        return stores.computeIfAbsent(new File(dbRoot).getAbsolutePath(),
+                root -> new StatisticsStore(new File(root, FILE_NAME)));
+    }
+
+    /**
+     * Get the statistics of the given relation, analyzing its csv file
+     * if there are no statistics yet or the file has changed.
+     * @param name name of the relation
+     * @param schema schema of the relation
+     * @param csv csv file of the relation
+     * @return the statistics of the relation
+     * @see StatisticsAnalyzer#refresh(RelationStats, String, Schema, File)
+     */
+    public synchronized RelationStats get(String name, Schema schema, File csv){
+        RelationStats previous = statistics.get(name);
+        RelationStats current;
+        try {
+            current = StatisticsAnalyzer.refresh(previous, name, schema, csv);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if(current != previous){
+            statistics.put(name, current);
+            save();
+        }
+        return current;
+    }
+
+    /**
+     * Read the sidecar file, if there is one. A relation line
+     * "name rowCount fileLength lastModified" is followed by one
+     * "name.column" line per attribute, see ColumnStats#encode().
+     * A malformed file is ignored and the statistics recomputed.
+     */
+    private void load(){
+        if(!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if(line.trim().isEmpty()) continue;
+                String[] fields = line.trim().split(" ");
+                String name = fields[0];
+                long rowCount = Long.parseLong(fields[1]);
+                long fileLength = Long.parseLong(fields[2]);
+                long lastModified = Long.parseLong(fields[3]);
+                int width = Integer.parseInt(fields[4]);
+                ColumnStats[] columns = new ColumnStats[width];
+                for (int i=0; i<width; i++){
+                    String[] columnFields = reader.readLine().trim().split(" ");
+                    columns[i] = ColumnStats.decode(columnFields, 1);
+                }
+                statistics.put(name, new RelationStats(name, rowCount, fileLength, lastModified, columns));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring statistics file " + file + ": " + e);
+            statistics.clear();
+        }
+    }
+
+    /**
+     * Write the sidecar file to a temporary file of the same directory and
+     * move it over the old one, so that a reader, or a process which fails
+     * while writing, never leaves a truncated file. Concurrent writers each
+     * move their own complete file, the last one replaces the others.
+     * The temporary file is created with the default permissions, which
+     * the moved file keeps.
+     */
+    private void save(){
+        Path tmp = null;
+        try {
+            tmp = createTemporaryFile(file.getAbsoluteFile().getParentFile().toPath());
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(tmp.toFile()))) {
+                for (RelationStats stats: statistics.values()){
+                    writer.write(stats.encode());
+                }
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Cannot write statistics file " + file + ": " + e.getMessage());
+            try {
+                if(tmp != null) Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Create a new temporary file for the sidecar file in the given directory,
+     * with a random name unlike Files.createTempFile, which would restrict
+     * its permissions to the owner.
+     * @param dir directory of the sidecar file
+     * @return the new empty file
+     */
+    private static Path createTemporaryFile(Path dir) throws IOException {
+        while (true){
+            try {
+                return Files.createFile(dir.resolve(FILE_NAME + "." + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp"));
+            } catch (FileAlreadyExistsException e) {
+                // another writer picked the same name, try another one
+            }
+        }
+    }
+}
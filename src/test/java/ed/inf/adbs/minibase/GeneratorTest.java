@@ -0,0 +1,90 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class GeneratorTest {
+
+    private static final Schema SCHEMA = new Schema("int string");
+
+    private List<String> generate(DataGenerator generator, int index) throws IOException {
+        File file = File.createTempFile("relation", ".csv");
+        file.deleteOnExit();
+        generator.generate("R", SCHEMA, index, file);
+        return Files.readAllLines(file.toPath());
+    }
+
+    private static Map<String, Integer> counts(List<String> lines){
+        Map<String, Integer> counts = new HashMap<>();
+        for (String line: lines) counts.merge(line.split(", ")[0], 1, Integer::sum);
+        return counts;
+    }
+
+    @Test
+    public void testData() throws IOException {
+        List<String> lines = generate(new DataGenerator(7, 1000, 100, 0, 1, 10), 0);
+        assertEquals(1000, lines.size());
+        assertEquals(lines, generate(new DataGenerator(7, 1000, 100, 0, 1, 10), 0));
+        assertNotEquals(lines, generate(new DataGenerator(8, 1000, 100, 0, 1, 10), 0));
+        for (String line: lines){
+            String[] values = line.split(", ");
+            int value = Integer.parseInt(values[0]);
+            assertTrue(value >= 0 && value < 100);
+            assertTrue(values[1].matches("'[a-z]+'"));
+        }
+
+        // the most frequent of 100 Zipfian values is drawn about a fifth of the time
+        int top = 0;
+        for (int count: counts(generate(new DataGenerator(7, 1000, 100, 1, 1, 10), 0)).values()) top = Math.max(top, count);
+        assertTrue(top > 100);
+
+        // without overlap the second relation draws from the next 100 values
+        for (String value: counts(generate(new DataGenerator(7, 1000, 100, 0, 0, 10), 1)).keySet()){
+            assertTrue(Integer.parseInt(value) >= 100 && Integer.parseInt(value) < 200);
+        }
+    }
+
+    @Test
+    public void testQueries() {
+        Map<String, Schema> schemas = new LinkedHashMap<>();
+        schemas.put("R", new Schema("int int string"));
+        schemas.put("S", new Schema("int string int"));
+        schemas.put("T", new Schema("int int"));
+        QueryGenerator generator = new QueryGenerator(schemas, 3, QueryGenerator.Shape.MIXED, 4, 0.3, 0.5, 100, 10);
+        QueryGenerator same = new QueryGenerator(schemas, 3, QueryGenerator.Shape.MIXED, 4, 0.3, 0.5, 100, 10);
+        for (int i=0; i<50; i++){
+            String query = generator.generate().toString();
+            assertEquals(query, same.generate().toString());
+            assertEquals(query, QueryParser.parse(query).toString());
+        }
+
+        // every atom of a cycle shares a variable with two other atoms
+        generator = new QueryGenerator(schemas, 3, QueryGenerator.Shape.CYCLE, 4, 0, 0, 100, 10);
+        for (int i=0; i<20; i++){
+            List<Atom> body = generator.generate().getBody();
+            assertEquals(4, body.size());
+            for (Atom atom: body){
+                Set<Atom> neighbours = new HashSet<>();
+                for (Term term: ((RelationalAtom) atom).getTerms()){
+                    for (Atom other: body){
+                        if(other != atom && ((RelationalAtom) other).getTerms().contains(term)) neighbours.add(other);
+                    }
+                }
+                assertTrue(neighbours.size() >= 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.Variable;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static ed.inf.adbs.minibase.TestFiles.write;
+import static org.junit.Assert.*;
+
+public class InterpreterTest {
+
+    private static File database() throws IOException {
+        File db = Files.createTempDirectory("minibase").toFile();
+        File files = new File(db, "files");
+        assertTrue(files.mkdir());
+        write(new File(db, "schema.txt"), "R int int\nS int\n");
+        write(new File(files, "R.csv"), "1, 2\n3, 4\n");
+        write(new File(files, "S.csv"), "5\n6\n");
+        return db;
+    }
+
+    private static String evaluate(Interpreter interpreter, ByteArrayOutputStream out){
+        new Planner(interpreter).generateQueryPlan().dump();
+        Catalog.getInstance().closeOutputFile();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+    }
+
+    @Test
+    public void testFalseConstantComparison() throws IOException {
+        File db = database();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Catalog(db.getPath(), null, null, new ResultSink(out));
+        // the head variable comes from the second atom
+        Interpreter interpreter = new Interpreter(QueryParser.parse("Q(y) :- R(x, z), S(y), 1 = 0"));
+        assertTrue(interpreter.isUnsatisfiable());
+        assertEquals("", evaluate(interpreter, out));
+    }
+
+    @Test
+    public void testTrueConstantComparisons() throws IOException {
+        File db = database();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Catalog(db.getPath(), null, null, new ResultSink(out));
+        // the true comparisons are removed while the ones after them are still to be checked
+        Interpreter interpreter = new Interpreter(QueryParser.parse("Q(x) :- R(x, z), 1 < 2, 'a' != 'b', x > 1"));
+        assertFalse(interpreter.isUnsatisfiable());
+        for (ComparisonAtom ca: interpreter.getComparisonAtoms()){
+            assertTrue(ca.toString(), ca.getTerm1() instanceof Variable || ca.getTerm2() instanceof Variable);
+        }
+        assertEquals("3\n", evaluate(interpreter, out));
+    }
+}
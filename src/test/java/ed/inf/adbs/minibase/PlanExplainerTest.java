@@ -0,0 +1,217 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.operators.AnalyzeOperator;
+import ed.inf.adbs.minibase.operators.HashJoinOperator;
+import ed.inf.adbs.minibase.operators.MaterializedOperator;
+import ed.inf.adbs.minibase.operators.Operator;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ed.inf.adbs.minibase.TestFiles.write;
+import static org.junit.Assert.*;
+
+public class PlanExplainerTest {
+
+    private static final String QUERY = "Q(x, b) :- R(x, y), S(y, b), x > 1";
+
+    private static File database() throws IOException {
+        File db = Files.createTempDirectory("minibase").toFile();
+        File files = new File(db, "files");
+        assertTrue(files.mkdir());
+        write(new File(db, "schema.txt"), "R int int\nS int string\n");
+        write(new File(files, "R.csv"), "1, 5\n2, 5\n3, 6\n4, 7\n");
+        write(new File(files, "S.csv"), "5, 'a'\n6, 'b'\n8, 'c'\n");
+        return db;
+    }
+
+    private static MaterializedOperator relation(Variable v1, Variable v2, int... values){
+        TupleLayout layout = new TupleLayout(Arrays.asList(v1, v2), new Schema("int int"));
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i=0; i<values.length; i+=2){
+            Tuple tuple = Tuple.allocate(layout);
+            tuple.setInt(0, values[i]);
+            tuple.setInt(1, values[i + 1]);
+            tuples.add(tuple);
+        }
+        return new MaterializedOperator(tuples, layout);
+    }
+
+    @Test
+    public void testExplain() throws IOException {
+        new Catalog(database().getPath(), null, null, new ResultSink(new ByteArrayOutputStream()));
+        Operator root = new Planner(new Interpreter(QueryParser.parse(QUERY))).generateQueryPlan();
+        Catalog.getInstance().closeOutputFile();
+        String n = System.lineSeparator();
+        assertEquals("ProjectOperator [x, b]" + n
+                + "  -> HashJoinOperator on [y = a]" + n
+                + "    -> ScanOperator R(x, y) filter [x >= 2]" + n
+                + "    -> ScanOperator S(a, b)" + n, PlanExplainer.explain(root));
+    }
+
+    @Test
+    public void testAnalyzeCounters() {
+        // R(x, y), S(a, b), y = a, read tuple by tuple
+        Variable x = new Variable("x"), y = new Variable("y"), a = new Variable("a"), b = new Variable("b");
+        AnalyzeOperator r = new AnalyzeOperator(relation(x, y, 1, 5, 2, 5, 3, 6, 4, 7));
+        AnalyzeOperator s = new AnalyzeOperator(relation(a, b, 5, 50, 6, 60, 8, 80));
+        AnalyzeOperator join = new AnalyzeOperator(new HashJoinOperator(r, s,
+                Collections.singletonList(new ComparisonAtom(y, a, ComparisonOperator.EQ))));
+        join.reset();
+        while (join.getNextTuple() != null);
+
+        assertEquals(3, join.getRows());
+        assertEquals(4, join.getTupleCalls());
+        assertEquals(1, join.getResetCalls());
+        // the children are read alternately until S runs out, then the rest of R probes the table of S
+        assertEquals(4, r.getRows());
+        assertEquals(5, r.getTupleCalls());
+        assertEquals(1, r.getResetCalls());
+        assertEquals(3, s.getRows());
+        assertEquals(4, s.getTupleCalls());
+        assertEquals(1, s.getResetCalls());
+        assertEquals(0, join.getBatchCalls());
+
+        String n = System.lineSeparator();
+        String text = PlanExplainer.explain(join);
+        assertTrue(text, text.startsWith("HashJoinOperator on [y = a]  (rows=3 getNextTuple=4 nextBatch=0 reset=1 wall="));
+        assertTrue(text, text.contains(n + "  -> MaterializedOperator 4 tuples [x, y]  (rows=4 getNextTuple=5 nextBatch=0 reset=1 wall="));
+        assertTrue(text, text.contains(n + "  -> MaterializedOperator 3 tuples [a, b]  (rows=3 getNextTuple=4 nextBatch=0 reset=1 wall="));
+    }
+
+    @Test
+    public void testAnalyzeFile() throws IOException {
+        File db = database();
+        File json = new File(db, "analyze.json");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Catalog(db.getPath(), null, null, new ResultSink(out));
+        System.setProperty(PlanExplainer.ANALYZE_FILE_PROPERTY, json.getPath());
+        try {
+            new Interpreter(QueryParser.parse(QUERY)).dump();
+        } finally {
+            System.clearProperty(PlanExplainer.ANALYZE_FILE_PROPERTY);
+            Catalog.getInstance().closeOutputFile();
+        }
+        assertEquals("2, 'a'" + System.lineSeparator() + "3, 'b'" + System.lineSeparator(),
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        Map<?, ?> root = (Map<?, ?>) new JsonReader(new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8)).read();
+        assertEquals("ProjectOperator [x, b]", root.get("operator"));
+        Map<?, ?> join = (Map<?, ?>) ((List<?>) root.get("children")).get(0);
+        assertEquals("HashJoinOperator on [y = a]", join.get("operator"));
+        assertEquals(2L, join.get("rows"));
+        assertEquals(1L, join.get("reset"));
+        List<?> scans = (List<?>) join.get("children");
+        assertEquals(2, scans.size());
+        assertEquals("ScanOperator R(x, y) filter [x >= 2]", ((Map<?, ?>) scans.get(0)).get("operator"));
+        assertEquals(3L, ((Map<?, ?>) scans.get(0)).get("rows"));
+        assertTrue(((List<?>) ((Map<?, ?>) scans.get(1)).get("children")).isEmpty());
+    }
+
+    /**
+     * A strict reader of the JSON written by PlanExplainer: objects, arrays,
+     * strings, integers, true, false and null, failing on anything else.
+     */
+    private static class JsonReader {
+        private final String text;
+        private int pos;
+
+        JsonReader(String text){
+            this.text = text;
+        }
+
+        Object read(){
+            Object value = value();
+            skipSpaces();
+            assertEquals("trailing characters", text.length(), pos);
+            return value;
+        }
+
+        private Object value(){
+            skipSpaces();
+            char c = text.charAt(pos);
+            if(c == '{'){
+                Map<String, Object> map = new LinkedHashMap<>();
+                pos++;
+                skipSpaces();
+                if(text.charAt(pos) == '}'){ pos++; return map; }
+                do {
+                    skipSpaces();
+                    String key = string();
+                    skipSpaces();
+                    expect(':');
+                    assertNull("duplicate key " + key, map.put(key, value()));
+                    skipSpaces();
+                } while (text.charAt(pos++) == ',');
+                assertEquals('}', text.charAt(pos - 1));
+                return map;
+            }
+            if(c == '['){
+                List<Object> list = new ArrayList<>();
+                pos++;
+                skipSpaces();
+                if(text.charAt(pos) == ']'){ pos++; return list; }
+                do {
+                    list.add(value());
+                    skipSpaces();
+                } while (text.charAt(pos++) == ',');
+                assertEquals(']', text.charAt(pos - 1));
+                return list;
+            }
+            if(c == '"') return string();
+            for (String literal: new String[]{"true", "false", "null"}){
+                if(text.startsWith(literal, pos)){
+                    pos += literal.length();
+                    return literal.equals("null") ? null : Boolean.valueOf(literal);
+                }
+            }
+            int start = pos;
+            if(c == '-') pos++;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) pos++;
+            assertTrue("value expected at " + start, pos > start && Character.isDigit(text.charAt(pos - 1)));
+            return Long.parseLong(text.substring(start, pos));
+        }
+
+        private String string(){
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true){
+                char c = text.charAt(pos++);
+                if(c == '"') return sb.toString();
+                assertTrue("control character in string", c >= ' ');
+                if(c == '\\'){
+                    char escaped = text.charAt(pos++);
+                    if(escaped == 'u'){
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }else {
+                        assertTrue("escape " + escaped, escaped == '"' || escaped == '\\');
+                        sb.append(escaped);
+                    }
+                }else {
+                    sb.append(c);
+                }
+            }
+        }
+
+        private void expect(char c){
+            assertEquals("at " + pos, c, text.charAt(pos++));
+        }
+
+        private void skipSpaces(){
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PredicateInferenceTest {
+
+    private static ComparisonAtom ca(String v, ComparisonOperator op, Term t){
+        return new ComparisonAtom(new Variable(v), t, op);
+    }
+
+    private static ComparisonAtom ca(String v1, ComparisonOperator op, String v2){
+        return ca(v1, op, new Variable(v2));
+    }
+
+    private static List<String> infer(ComparisonAtom... cas){
+        List<ComparisonAtom> inferred = new PredicateInference(new ArrayList<>(Arrays.asList(cas))).infer();
+        if(inferred == null) return null;
+        List<String> result = new ArrayList<>();
+        for (ComparisonAtom ca: inferred) result.add(ca.toString());
+        return result;
+    }
+
+    @Test
+    public void testConstantPropagation() {
+        // x = a, a = b, b = 4
+        List<String> inferred = infer(ca("x", ComparisonOperator.EQ, "a"), ca("a", ComparisonOperator.EQ, "b"),
+                ca("b", ComparisonOperator.EQ, new IntegerConstant(4)));
+        assertTrue(inferred.contains("x = 4"));
+        assertTrue(inferred.contains("a = 4"));
+        assertTrue(inferred.contains("b = 4"));
+        assertTrue(inferred.contains("x = b"));
+    }
+
+    @Test
+    public void testRangePropagation() {
+        // x > 5, x = a, a < y, y <= 9
+        List<String> inferred = infer(ca("x", ComparisonOperator.GT, new IntegerConstant(5)), ca("x", ComparisonOperator.EQ, "a"),
+                ca("a", ComparisonOperator.LT, "y"), ca("y", ComparisonOperator.LEQ, new IntegerConstant(9)));
+        assertTrue(inferred.contains("a >= 6"));
+        assertTrue(inferred.contains("x <= 8"));
+        assertTrue(inferred.contains("y >= 7"));
+        assertTrue(inferred.contains("a < y"));
+    }
+
+    @Test
+    public void testContradictions() {
+        assertNull(infer(ca("x", ComparisonOperator.EQ, "a"), ca("x", ComparisonOperator.EQ, new IntegerConstant(4)),
+                ca("a", ComparisonOperator.GT, new IntegerConstant(5))));
+        assertNull(infer(ca("x", ComparisonOperator.GT, new IntegerConstant(4)), ca("x", ComparisonOperator.LT, new IntegerConstant(5))));
+        assertNull(infer(ca("x", ComparisonOperator.EQ, "a"), ca("x", ComparisonOperator.LT, "a")));
+        assertNull(infer(ca("s", ComparisonOperator.EQ, new StringConstant("ab")), ca("s", ComparisonOperator.NEQ, new StringConstant("ab"))));
+    }
+
+    @Test
+    public void testDuplicates() {
+        // x < y twice, and the equality x = a with its terms in both orders
+        List<String> inferred = infer(ca("x", ComparisonOperator.LT, "y"), ca("x", ComparisonOperator.EQ, "a"),
+                ca("x", ComparisonOperator.LT, "y"), ca("a", ComparisonOperator.EQ, "x"));
+        assertEquals(1, Collections.frequency(inferred, "x < y"));
+        assertEquals(1, Collections.frequency(inferred, "x = a") + Collections.frequency(inferred, "a = x"));
+    }
+}
@@ -0,0 +1,58 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueryHypergraphTest {
+
+    private static RelationalAtom atom(String name, String... variables){
+        List<Term> terms = new ArrayList<>();
+        for (String v: variables) terms.add(new Variable(v));
+        return new RelationalAtom(name, terms);
+    }
+
+    private static ComparisonAtom eq(String v1, String v2){
+        return new ComparisonAtom(new Variable(v1), new Variable(v2), ComparisonOperator.EQ);
+    }
+
+    @Test
+    public void testTriangleIsCyclic() {
+        // Q(x, y, z) :- R(x, y), S(y, z), T(z, x) after the Interpreter renamed the shared variables
+        List<RelationalAtom> ras = Arrays.asList(atom("R", "x", "y"), atom("S", "a", "z"), atom("T", "b", "c"));
+        List<ComparisonAtom> cas = Arrays.asList(eq("y", "a"), eq("z", "b"), eq("x", "c"),
+                new ComparisonAtom(new Variable("x"), new IntegerConstant(3), ComparisonOperator.LT));
+        QueryHypergraph graph = new QueryHypergraph(ras, cas);
+        assertEquals(3, graph.getClassCount());
+        assertEquals(graph.getClass(new Variable("x")), graph.getClass(new Variable("c")));
+        assertTrue(graph.isJoinEquality(cas.get(0)));
+        assertFalse(graph.isJoinEquality(cas.get(3)));
+        assertFalse(graph.isAcyclic());
+        assertNull(graph.joinTree(new ArrayList<>()));
+    }
+
+    @Test
+    public void testJoinTree() {
+        // Q(x) :- R(x, y), S(y, z), T(z, w), U(y, v)
+        List<RelationalAtom> ras = Arrays.asList(atom("R", "x", "y"), atom("S", "a", "z"),
+                atom("T", "b", "w"), atom("U", "c", "v"));
+        QueryHypergraph graph = new QueryHypergraph(ras, Arrays.asList(eq("y", "a"), eq("z", "b"), eq("y", "c")));
+        assertTrue(graph.isAcyclic());
+        List<Integer> removed = new ArrayList<>();
+        int[] parents = graph.joinTree(removed);
+        assertNotNull(parents);
+        assertEquals(4, removed.size());
+        assertEquals(-1, parents[removed.get(3)]);
+        // every atom is removed after its children and shares its join classes with its parent
+        for (int i=0; i<removed.size(); i++){
+            int atom = removed.get(i);
+            if(parents[atom] >= 0) assertTrue(removed.indexOf(parents[atom]) > i);
+        }
+        assertEquals(1, parents[2]);
+    }
+}
@@ -0,0 +1,67 @@
+package ed.inf.adbs.minibase;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static ed.inf.adbs.minibase.TestFiles.write;
+import static org.junit.Assert.*;
+
+public class QueryServerTest {
+
+    private static final String QUERY = "Q(x, SUM(y)) :- R(x, y, z), S(x, w, t), x >= 5";
+
+    private static String serve(QueryServer server, String queries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        server.serve(new ByteArrayInputStream(queries.getBytes(StandardCharsets.UTF_8)), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n")
+                .replaceAll("# ok [0-9.]+ ms", "# ok");
+    }
+
+    @Test
+    public void testServe() throws IOException {
+        File db = Files.createTempDirectory("minibase").toFile();
+        File files = new File(db, "files");
+        assertTrue(files.mkdir());
+        write(new File(db, "schema.txt"), "R int int string\nS int string int\n");
+        write(new File(files, "R.csv"), "1, 9, 'adbs'\n5, 4, 'ids'\n8, 7, 'rl'\n8, 8, 'nlu'\n");
+        write(new File(files, "S.csv"), "5, 'a', 1\n8, 'b', 2\n");
+        QueryServer server = new QueryServer(db.getPath(), QueryServer.DEFAULT_PLAN_CACHE);
+
+        // the cached query is planned again from the same rewritten conditions
+        assertEquals("5, 4\n8, 15\n# ok\n5, 4\n8, 15\n# ok\n",
+                serve(server, QUERY + "\n\n" + QUERY + "\n"));
+
+        // the cached query reads the changed relation
+        write(new File(files, "S.csv"), "5, 'a', 1\n8, 'b', 2\n8, 'c', 3\n");
+        assertEquals("5, 4\n8, 30\n# ok\n", serve(server, QUERY));
+
+        assertEquals("# error Unknown relation U in U(x)\n", serve(server, "Q(x) :- U(x)"));
+        assertEquals("# error Relation R has 3 attributes, not 2 as in R(x, y)\n", serve(server, "Q(x) :- R(x, y)"));
+        assertTrue(serve(server, "Q(x) :- R(x, y, z),").startsWith("# error Syntax error at 1:"));
+        assertTrue(serve(server, "Q(x) R(x, y, z)").startsWith("# error Syntax error at 1:"));
+        assertEquals("5, 4\n8, 30\n# ok\n", serve(server, QUERY));
+    }
+
+    @Test
+    public void testSchemaChange() throws IOException {
+        File db = Files.createTempDirectory("minibase").toFile();
+        File files = new File(db, "files");
+        assertTrue(files.mkdir());
+        File schema = new File(db, "schema.txt");
+        write(schema, "R int int\n");
+        write(new File(files, "R.csv"), "1, 9\n");
+        QueryServer server = new QueryServer(db.getPath(), QueryServer.DEFAULT_PLAN_CACHE);
+        assertEquals("9\n# ok\n", serve(server, "Q(y) :- R(x, y)"));
+
+        // the cached relation is parsed again with the new column types
+        write(schema, "R int string\n");
+        assertTrue(schema.setLastModified(schema.lastModified() + 1000));
+        assertEquals("'9'\n# ok\n", serve(server, "Q(y) :- R(x, y)"));
+    }
+}
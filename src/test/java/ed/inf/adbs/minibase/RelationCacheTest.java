@@ -0,0 +1,64 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Relation;
+import ed.inf.adbs.minibase.base.Schema;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static ed.inf.adbs.minibase.TestFiles.append;
+import static ed.inf.adbs.minibase.TestFiles.writeCsv;
+import static org.junit.Assert.*;
+
+public class RelationCacheTest {
+
+    @Test
+    public void testParseOnce() throws IOException {
+        File file = writeCsv("1, 9, 'adbs'\n2, 7, 'anlp'\n");
+        RelationCache cache = new RelationCache(RelationCache.DEFAULT_BUDGET);
+        Schema schema = new Schema("int int string");
+
+        Relation relation = cache.get("R", schema, file.getPath());
+        assertEquals(2, relation.size());
+        assertEquals(7, relation.getValue(1, 1));
+        assertEquals("adbs", relation.getValue(0, 2));
+        assertSame(relation, cache.get("R", schema, file.getPath()));
+    }
+
+    @Test
+    public void testReloadOnChange() throws IOException {
+        File file = writeCsv("1, 9, 'adbs'\n");
+        RelationCache cache = new RelationCache(RelationCache.DEFAULT_BUDGET);
+        Schema schema = new Schema("int int string");
+
+        assertEquals(1, cache.get("R", schema, file.getPath()).size());
+        append(file, "2, 7, 'anlp'\n");
+        assertEquals(2, cache.get("R", schema, file.getPath()).size());
+    }
+
+    @Test
+    public void testReloadOnSchemaChange() throws IOException {
+        File file = writeCsv("1, 9\n2, 7\n");
+        RelationCache cache = new RelationCache(RelationCache.DEFAULT_BUDGET);
+
+        assertEquals(9, cache.get("R", new Schema("int int"), file.getPath()).getValue(0, 1));
+        Relation relation = cache.get("R", new Schema("int string"), file.getPath());
+        assertEquals("9", relation.getValue(0, 1));
+        assertSame(relation, cache.get("R", new Schema("int string"), file.getPath()));
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        File file1 = writeCsv("1, 2\n3, 4\n");
+        File file2 = writeCsv("5, 6\n7, 8\n");
+        Schema schema = new Schema("int int");
+        Relation relation1 = Relation.load("R", schema, file1);
+
+        RelationCache cache = new RelationCache(relation1.estimateBytes());
+        Relation cached1 = cache.get("R", schema, file1.getPath());
+        cache.get("S", schema, file2.getPath());
+        assertTrue(cache.getUsedBytes() <= cache.getBudget());
+        assertNotSame(cached1, cache.get("R", schema, file1.getPath()));
+    }
+}
@@ -0,0 +1,84 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.operators.Operator;
+import ed.inf.adbs.minibase.operators.SemiJoinReduceOperator;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.minibase.TestFiles.write;
+import static org.junit.Assert.*;
+
+public class SemiJoinReducerTest {
+
+    private static final String QUERY = "Q(x, w) :- R(x, y), S(y, z), T(z, w)";
+
+    private static File database(String r, String s, String t) throws IOException {
+        File db = Files.createTempDirectory("minibase").toFile();
+        File files = new File(db, "files");
+        assertTrue(files.mkdir());
+        write(new File(db, "schema.txt"), "R int int\nS int int\nT int int\n");
+        write(new File(files, "R.csv"), r);
+        write(new File(files, "S.csv"), s);
+        write(new File(files, "T.csv"), t);
+        return db;
+    }
+
+    private static List<SemiJoinReduceOperator> findReductions(Operator op, List<SemiJoinReduceOperator> found){
+        if(op instanceof SemiJoinReduceOperator) found.add((SemiJoinReduceOperator) op);
+        for (Operator child: op.getChildren()) findReductions(child, found);
+        return found;
+    }
+
+    private static Operator plan(File db, ByteArrayOutputStream out){
+        new Catalog(db.getPath(), null, null, new ResultSink(out));
+        return new Planner(new Interpreter(QueryParser.parse(QUERY))).generateQueryPlan();
+    }
+
+    @Test
+    public void testReductionRunsWithPlan() throws IOException {
+        // (3, 9) of R, (8, 7) of S and (7, 30) of T are dangling
+        File db = database("1, 1\n2, 2\n3, 9\n", "1, 5\n2, 6\n8, 7\n", "5, 10\n6, 20\n7, 30\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Operator root = plan(db, out);
+        List<SemiJoinReduceOperator> reductions = findReductions(root, new ArrayList<>());
+        assertEquals(3, reductions.size());
+
+        // neither planning nor EXPLAIN reads the inputs
+        assertTrue(PlanExplainer.explain(root).contains("SemiJoinReduceOperator"));
+        for (SemiJoinReduceOperator reduction: reductions) assertFalse(reduction.isReduced());
+
+        root.dump();
+        Catalog.getInstance().closeOutputFile();
+        assertTrue(reductions.get(0).isReduced());
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+        Arrays.sort(lines);
+        assertArrayEquals(new String[]{"1, 10", "2, 20"}, lines);
+    }
+
+    @Test
+    public void testNoDanglingTuples() throws IOException {
+        // the join columns of neighbouring atoms hold the same values, so nothing is reduced
+        File db = database("1, 1\n2, 2\n", "1, 5\n2, 6\n", "5, 1\n6, 2\n");
+        Operator root = plan(db, new ByteArrayOutputStream());
+        Catalog.getInstance().closeOutputFile();
+        assertTrue(findReductions(root, new ArrayList<>()).isEmpty());
+
+        System.setProperty(Planner.YANNAKAKIS_PROPERTY, "true");
+        try {
+            root = plan(db, new ByteArrayOutputStream());
+            Catalog.getInstance().closeOutputFile();
+            assertEquals(3, findReductions(root, new ArrayList<>()).size());
+        } finally {
+            System.clearProperty(Planner.YANNAKAKIS_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ed.inf.adbs.minibase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * This class is to create the temporary files the tests read their relations from.
+ */
+public final class TestFiles {
+
+    private TestFiles(){
+    }
+
+    /**
+     * This method is used to write the content to a new csv file, deleted when the tests end.
+     * @param content rows of the relation
+     * @return the csv file
+     * @throws IOException if the file cannot be written
+     */
+    public static File writeCsv(String content) throws IOException {
+        File file = File.createTempFile("relation", ".csv");
+        file.deleteOnExit();
+        write(file, content);
+        return file;
+    }
+
+    /**
+     * This method is used to replace the content of a file.
+     * @param file the file
+     * @param content the new content
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, String content) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+    }
+
+    /**
+     * This method is used to append the content to a file.
+     * @param file the file
+     * @param content rows appended to the relation
+     * @throws IOException if the file cannot be written
+     */
+    public static void append(File file, String content) throws IOException {
+        try (FileWriter writer = new FileWriter(file, true)) {
+            writer.write(content);
+        }
+    }
+}
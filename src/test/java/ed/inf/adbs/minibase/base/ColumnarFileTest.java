@@ -0,0 +1,52 @@
+package ed.inf.adbs.minibase.base;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+
+import static ed.inf.adbs.minibase.TestFiles.writeCsv;
+import static org.junit.Assert.*;
+
+public class ColumnarFileTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File csv = writeCsv("1, 'adbs', -3\n2, '', 7\n3, 'dépôt', 2147483647\n");
+        File col = File.createTempFile("relation", ColumnarFile.EXTENSION);
+        col.deleteOnExit();
+        Schema schema = new Schema("int string int");
+        Relation relation = Relation.load("R", schema, csv);
+        ColumnarFile.write(relation, col, csv.length(), csv.lastModified());
+
+        ColumnarFile columnar = ColumnarFile.open(col);
+        assertEquals(schema, columnar.getSchema());
+        assertEquals(3, columnar.size());
+        assertEquals(csv.length(), columnar.getSourceLength());
+        for (int row=0; row<3; row++){
+            for (int column=0; column<3; column++){
+                assertEquals(relation.getValue(row, column), columnar.isInt(column)
+                        ? (Object) columnar.getInt(row, column) : columnar.getString(row, column));
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicateRows() throws IOException {
+        // rows 2 and 4 repeat rows 0 and 1, row 3 only differs in the string
+        File csv = writeCsv("1, 'a'\n2, 'b'\n1, 'a'\n1, 'b'\n2, 'b'\n");
+        File col = File.createTempFile("relation", ColumnarFile.EXTENSION);
+        col.deleteOnExit();
+        Relation relation = Relation.load("R", new Schema("int string"), csv);
+        ColumnarFile.write(relation, col, csv.length(), csv.lastModified());
+
+        BitSet expected = new BitSet();
+        expected.set(2);
+        expected.set(4);
+        assertEquals(expected, relation.getDuplicateRows());
+        assertSame(relation.getDuplicateRows(), relation.getDuplicateRows());
+        assertEquals(expected, ColumnarFile.open(col).getDuplicateRows());
+        assertNull(Relation.load("R", new Schema("int string"), writeCsv("1, 'a'\n1, 'b'\n")).getDuplicateRows());
+    }
+}
@@ -0,0 +1,48 @@
+package ed.inf.adbs.minibase.base;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static ed.inf.adbs.minibase.TestFiles.writeCsv;
+import static org.junit.Assert.*;
+
+public class CsvLoaderTest {
+
+    private static final Schema SCHEMA = new Schema("int string int");
+
+    @Test
+    public void testTokenizer() throws IOException {
+        File file = writeCsv("1, 'adbs', -3\r\n\n  2,'a b' ,2147483647\n-2147483648, unquoted, 0");
+        Relation relation = CsvLoader.load("R", SCHEMA, file, 1);
+        assertEquals(3, relation.size());
+        assertEquals("adbs", relation.getString(0, 1));
+        assertEquals(-3, relation.getInt(0, 2));
+        assertEquals("a b", relation.getString(1, 1));
+        assertEquals(Integer.MAX_VALUE, relation.getInt(1, 2));
+        assertEquals(Integer.MIN_VALUE, relation.getInt(2, 0));
+        assertEquals("unquoted", relation.getString(2, 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformed() throws IOException {
+        CsvLoader.load("R", SCHEMA, writeCsv("1, 'adbs'\n"), 1);
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int rows = (int) (3 * CsvLoader.MIN_CHUNK_BYTES / 20);
+        for (int i=0; i<rows; i++) sb.append(i).append(", 'v").append(i % 97).append("', ").append(-i).append('\n');
+        File file = writeCsv(sb.toString());
+
+        Relation relation = CsvLoader.load("R", SCHEMA, file, 4);
+        assertEquals(rows, relation.size());
+        for (int i=0; i<rows; i++){
+            assertEquals(i, relation.getInt(i, 0));
+            assertEquals("v" + (i % 97), relation.getString(i, 1));
+            assertEquals(-i, relation.getInt(i, 2));
+        }
+    }
+}
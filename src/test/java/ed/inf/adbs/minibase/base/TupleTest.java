@@ -2,6 +2,46 @@ package ed.inf.adbs.minibase.base;
 
 import junit.framework.TestCase;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class TupleTest extends TestCase {
 
-}
\ No newline at end of file
+    private TupleLayout layout(String types, String... names){
+        List<Term> terms = new ArrayList<>();
+        for (String name: names) terms.add(new Variable(name));
+        return new TupleLayout(terms, new Schema(types));
+    }
+
+    public void testSlots() {
+        TupleLayout layout = layout("int int string", "x", "y", "z");
+        assertEquals(1, layout.slotOf(new Variable("y")));
+        assertEquals(-1, layout.slotOf(new Variable("w")));
+        assertTrue(layout.isInt(0));
+        assertFalse(layout.isInt(2));
+        assertTrue(layout.hasStrings());
+    }
+
+    public void testProjectAndEquals() {
+        TupleLayout layout = layout("int int string", "x", "y", "z");
+        Tuple tuple = Tuple.allocate(layout);
+        tuple.setInt(0, 1);
+        tuple.setInt(1, 9);
+        tuple.setString(2, "'adbs'");
+        assertEquals(Arrays.asList(1, 9, "'adbs'"), tuple.getValues());
+        assertEquals(9, tuple.getValue(new Variable("y")));
+
+        List<Term> terms = Arrays.asList(new Variable("z"), new Variable("x"));
+        TupleLayout projected = TupleLayout.of(terms, layout);
+        Tuple tuple1 = tuple.project(projected, layout.slotsOf(terms));
+        Tuple tuple2 = Tuple.allocate(projected);
+        tuple2.setString(0, "'adbs'");
+        tuple2.setInt(1, 1);
+        assertEquals(tuple2, tuple1);
+        assertEquals(tuple2.hashCode(), tuple1.hashCode());
+
+        tuple2.setInt(1, 2);
+        assertFalse(tuple2.equals(tuple1));
+    }
+}
@@ -0,0 +1,77 @@
+package ed.inf.adbs.minibase.index;
+
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+import ed.inf.adbs.minibase.base.CsvLoader;
+import ed.inf.adbs.minibase.base.Schema;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static ed.inf.adbs.minibase.TestFiles.writeCsv;
+import static org.junit.Assert.*;
+
+public class BPlusTreeTest {
+
+    /**
+     * Scan a range of the index, reading the rows at the offsets of its entries.
+     */
+    private String scan(BPlusTree tree, KeyRange range, File csv, Schema schema, int column) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        BPlusTree.Cursor cursor = tree.seek(range.getLow(), range.isLowInclusive());
+        try (CsvLoader.RowReader reader = new CsvLoader.RowReader(csv, schema)) {
+            while (cursor.next() && range.belowHigh(cursor.getKey())){
+                assertTrue(reader.read(cursor.getValue()));
+                assertEquals(cursor.getKey(), reader.getValue(column));
+                sb.append(reader.getInt(0)).append(' ');
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void testIntRanges() throws IOException {
+        // enough rows for several levels, every key held by 3 rows
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<30000; i++) sb.append(i).append(", ").append(i % 10000).append('\n');
+        File csv = writeCsv(sb.toString());
+        File idx = File.createTempFile("relation", BPlusTree.EXTENSION);
+        idx.deleteOnExit();
+        Schema schema = new Schema("int int");
+        IndexBuilder.build(schema, 1, csv, idx);
+        BPlusTree tree = BPlusTree.open(idx);
+        assertEquals(30000, tree.getEntryCount());
+        assertTrue(tree.getHeight() > 1);
+
+        KeyRange range = new KeyRange();
+        range.restrict(ComparisonOperator.EQ, 4242);
+        assertEquals("4242 14242 24242", scan(tree, range, csv, schema, 1));
+
+        range = new KeyRange();
+        range.restrict(ComparisonOperator.GT, 9997);
+        range.restrict(ComparisonOperator.LEQ, 20000);
+        assertEquals("9998 19998 29998 9999 19999 29999", scan(tree, range, csv, schema, 1));
+
+        range = new KeyRange();
+        range.restrict(ComparisonOperator.LT, 1);
+        assertEquals("0 10000 20000", scan(tree, range, csv, schema, 1));
+    }
+
+    @Test
+    public void testStringKeys() throws IOException {
+        File csv = writeCsv("1, 'ids'\n\n2, 'adbs'\r\n3, 'anlp'\n4, 'ids'");
+        File idx = File.createTempFile("relation", BPlusTree.EXTENSION);
+        idx.deleteOnExit();
+        Schema schema = new Schema("int string");
+        IndexBuilder.build(schema, 1, csv, idx);
+        BPlusTree tree = BPlusTree.open(idx);
+
+        KeyRange range = new KeyRange();
+        range.restrict(ComparisonOperator.EQ, "ids");
+        assertEquals("1 4", scan(tree, range, csv, schema, 1));
+
+        range = new KeyRange();
+        range.restrict(ComparisonOperator.LT, "b");
+        assertEquals("2 3", scan(tree, range, csv, schema, 1));
+    }
+}
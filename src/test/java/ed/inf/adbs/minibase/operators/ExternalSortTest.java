@@ -0,0 +1,48 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExternalSortTest {
+
+    private TupleLayout layout = new TupleLayout(
+            Arrays.asList(new Variable("x"), new Variable("y")),
+            new Schema("int string"));
+
+    @Test
+    public void testSpilledRunsAreMerged() {
+        Comparator<Tuple> byX = Comparator.comparingInt(tuple -> tuple.getInt(0));
+        ExternalSort sort = new ExternalSort(layout, byX, 4096);
+        Random random = new Random(7);
+        int count = 5000;
+        for (int i=0; i<count; i++){
+            Tuple tuple = Tuple.allocate(layout);
+            tuple.setInt(0, random.nextInt(100));
+            tuple.setString(1, "t" + i);
+            sort.add(tuple);
+        }
+        assertTrue(sort.getRunCount() > 1);
+
+        Tuple previous = null;
+        int returned = 0;
+        for (Tuple tuple = sort.next(); tuple != null; tuple = sort.next()){
+            if(previous != null){
+                assertTrue(previous.getInt(0) <= tuple.getInt(0));
+                // equal keys keep the order they were added in
+                if(previous.getInt(0) == tuple.getInt(0)){
+                    assertTrue(Integer.parseInt(previous.getString(1).substring(1)) < Integer.parseInt(tuple.getString(1).substring(1)));
+                }
+            }
+            previous = tuple;
+            returned++;
+        }
+        assertEquals(count, returned);
+        sort.close();
+    }
+}
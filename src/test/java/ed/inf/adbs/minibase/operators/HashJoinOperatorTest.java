@@ -0,0 +1,130 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HashJoinOperatorTest {
+
+    private static final Variable X = new Variable("x");
+    private static final Variable Y = new Variable("y");
+    private static final Variable A = new Variable("a");
+    private static final Variable B = new Variable("b");
+
+    private static MaterializedOperator relation(Variable v1, Variable v2, String types, Object... values){
+        TupleLayout layout = new TupleLayout(Arrays.asList(v1, v2), new Schema(types));
+        List<Tuple> tuples = new ArrayList<>();
+        for (int i=0; i<values.length; i+=2){
+            Tuple tuple = Tuple.allocate(layout);
+            for (int j=0; j<2; j++){
+                if(layout.isInt(j)) tuple.setInt(j, (Integer) values[i + j]);
+                else tuple.setString(j, (String) values[i + j]);
+            }
+            tuples.add(tuple);
+        }
+        return new MaterializedOperator(tuples, layout);
+    }
+
+    private static Operator counting(MaterializedOperator op, int[] reads, int index){
+        return new MaterializedOperator(op.getTuples(), op.getLayout()){
+            @Override
+            public Tuple getNextTuple() {
+                Tuple tuple = super.getNextTuple();
+                if(tuple != null) reads[index]++;
+                return tuple;
+            }
+
+            @Override
+            public Operator split(int from, int to) {
+                return counting((MaterializedOperator) super.split(from, to), reads, index);
+            }
+        };
+    }
+
+    private static List<String> readTuples(Operator op){
+        List<String> result = new ArrayList<>();
+        op.reset();
+        for (Tuple tuple = op.getNextTuple(); tuple != null; tuple = op.getNextTuple()) result.add(tuple.getValues().toString());
+        return result;
+    }
+
+    private static List<String> readBatches(Operator op){
+        List<String> result = new ArrayList<>();
+        op.reset();
+        for (Batch batch = op.nextBatch(); batch != null; batch = op.nextBatch()){
+            int[] selection = batch.getSelection();
+            for (int k=0; k<batch.getSelectedCount(); k++) result.add(batch.getTuple(selection[k]).getValues().toString());
+        }
+        return result;
+    }
+
+    private static int countBatches(Operator op){
+        int count = 0;
+        op.reset();
+        for (Batch batch = op.nextBatch(); batch != null; batch = op.nextBatch()) count += batch.getSelectedCount();
+        return count;
+    }
+
+    @Test
+    public void testEquiJoin() {
+        // R(x, y), S(a, b), x = a
+        HashJoinOperator join = new HashJoinOperator(relation(X, Y, "int int", 1, 2, 3, 4, 3, 5),
+                relation(A, B, "int string", 3, "c", 1, "a", 7, "g"),
+                Collections.singletonList(new ComparisonAtom(X, A, ComparisonOperator.EQ)));
+        List<String> expected = Arrays.asList("[1, 2, 1, a]", "[3, 4, 3, c]", "[3, 5, 3, c]");
+        List<String> tuples = readTuples(join);
+        Collections.sort(tuples);
+        assertEquals(expected, tuples);
+        tuples = readBatches(join);
+        Collections.sort(tuples);
+        assertEquals(expected, tuples);
+    }
+
+    @Test
+    public void testSplitsReadOnlyWhenSplit() {
+        // R(x, y) and S(a, b), counting the tuples read from them
+        int[] reads = new int[2];
+        MaterializedOperator r = relation(X, Y, "int int", 1, 10, 3, 30, 1, 11, 5, 50);
+        MaterializedOperator s = relation(A, B, "int int", 1, 100, 3, 300, 1, 101);
+        HashJoinOperator join = new HashJoinOperator(counting(r, reads, 0), counting(s, reads, 1),
+                Collections.singletonList(new ComparisonAtom(X, A, ComparisonOperator.EQ)));
+
+        // deciding to split reads nothing, the splits are on R
+        assertTrue(join.canSplit());
+        assertEquals(4, join.getSplitSize());
+        assertArrayEquals(new int[]{0, 0}, reads);
+
+        // the splits probe one table of S, in the order of R
+        List<String> parallel = new ArrayList<>();
+        for (int from=0; from<4; from+=3) parallel.addAll(readBatches(join.split(from, Math.min(4, from + 3))));
+        assertEquals(Arrays.asList("[1, 10, 1, 100]", "[1, 10, 1, 101]", "[3, 30, 3, 300]",
+                "[1, 11, 1, 100]", "[1, 11, 1, 101]"), parallel);
+        assertEquals(3, reads[1]);
+
+        // the serial join reuses the table instead of reading S again
+        assertEquals(parallel, readBatches(join));
+        assertEquals(3, reads[1]);
+    }
+
+    @Test
+    public void testMismatchedTypes() {
+        // R(x, y) with y int, S(a, b) with b string, y = b holds for no pair of rows
+        List<ComparisonAtom> cas = Arrays.asList(new ComparisonAtom(X, A, ComparisonOperator.EQ),
+                new ComparisonAtom(B, Y, ComparisonOperator.EQ));
+        HashJoinOperator join = new HashJoinOperator(relation(X, Y, "int int", 1, 2, 3, 4),
+                relation(A, B, "int string", 1, "a", 3, "b"), cas);
+        assertTrue(readTuples(join).isEmpty());
+        assertEquals(0, countBatches(join));
+        assertTrue(join.canSplit());
+        Operator split = join.split(0, join.getSplitSize());
+        assertEquals(0, countBatches(split));
+        // a split probes the shared table, it is not split again
+        assertFalse(Splittable.isSplittable(split));
+    }
+}
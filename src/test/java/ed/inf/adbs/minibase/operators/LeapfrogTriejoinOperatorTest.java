@@ -0,0 +1,143 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.QueryHypergraph;
+import ed.inf.adbs.minibase.base.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LeapfrogTriejoinOperatorTest {
+
+    private static List<Term> variables(String... names){
+        List<Term> terms = new ArrayList<>();
+        for (String name: names) terms.add(new Variable(name));
+        return terms;
+    }
+
+    /**
+     * An input of int rows over the given variables.
+     */
+    private static MaterializedOperator input(List<Term> terms, int[]... rows){
+        List<String> types = new ArrayList<>();
+        for (int i=0; i<terms.size(); i++) types.add("int");
+        TupleLayout layout = new TupleLayout(terms, new Schema(types));
+        List<Tuple> tuples = new ArrayList<>();
+        for (int[] row: rows){
+            Tuple tuple = Tuple.allocate(layout);
+            for (int i=0; i<row.length; i++) tuple.setInt(i, row[i]);
+            tuples.add(tuple);
+        }
+        return new MaterializedOperator(tuples, layout);
+    }
+
+    private static ComparisonAtom eq(String v1, String v2){
+        return new ComparisonAtom(new Variable(v1), new Variable(v2), ComparisonOperator.EQ);
+    }
+
+    /**
+     * Join the inputs of the atoms on the equalities, binding the classes in the planner's order.
+     */
+    private static LeapfrogTriejoinOperator join(List<Operator> children, List<ComparisonAtom> cas){
+        List<RelationalAtom> ras = new ArrayList<>();
+        for (int i=0; i<children.size(); i++){
+            ras.add(new RelationalAtom("R" + i, children.get(i).getLayout().getTerms()));
+        }
+        QueryHypergraph graph = new QueryHypergraph(ras, cas);
+        long[] distinct = new long[graph.getClassCount()];
+        Arrays.fill(distinct, Long.MAX_VALUE);
+        List<ComparisonAtom> residual = new ArrayList<>();
+        for (ComparisonAtom ca: cas){
+            if(!graph.isJoinEquality(ca)) residual.add(ca);
+        }
+        return new LeapfrogTriejoinOperator(children, graph, graph.variableOrder(distinct), residual);
+    }
+
+    private static List<String> readSorted(Operator op){
+        List<String> result = new ArrayList<>();
+        op.reset();
+        for (Tuple tuple = op.getNextTuple(); tuple != null; tuple = op.getNextTuple()) result.add(tuple.toString());
+        Collections.sort(result);
+        return result;
+    }
+
+    private static int[][] randomRows(Random random, int count, int domain){
+        int[][] rows = new int[count][];
+        for (int i=0; i<count; i++) rows[i] = new int[]{random.nextInt(domain), random.nextInt(domain)};
+        return rows;
+    }
+
+    @Test
+    public void testTriangle() {
+        // Q(x, y, z) :- R(x, y), S(y, z), T(z, x) after the Interpreter renamed the shared variables
+        Random random = new Random(42);
+        for (int round=0; round<5; round++){
+            MaterializedOperator r = input(variables("x", "y"), randomRows(random, 40, 6));
+            MaterializedOperator s = input(variables("a", "z"), randomRows(random, 40, 6));
+            MaterializedOperator t = input(variables("b", "c"), randomRows(random, 40, 6));
+            ComparisonAtom filter = new ComparisonAtom(new Variable("x"), new Variable("z"), ComparisonOperator.NEQ);
+            List<ComparisonAtom> cas = Arrays.asList(eq("y", "a"), eq("z", "b"), eq("x", "c"), filter);
+
+            Operator pairwise = new HashJoinOperator(new HashJoinOperator(r, s, Collections.singletonList(cas.get(0))), t,
+                    Arrays.asList(cas.get(1), cas.get(2), filter));
+            List<String> expected = readSorted(pairwise);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, readSorted(join(Arrays.asList(r, s, t), cas)));
+        }
+    }
+
+    @Test
+    public void testDuplicates() {
+        // Q(x, z) :- R(x, y), S(y, z), every result is returned once per combination of duplicate rows
+        MaterializedOperator r = input(variables("x", "y"), new int[]{1, 2}, new int[]{1, 2}, new int[]{3, 4});
+        MaterializedOperator s = input(variables("a", "z"), new int[]{2, 5}, new int[]{2, 5}, new int[]{2, 5}, new int[]{2, 6});
+        List<String> tuples = readSorted(join(Arrays.asList(r, s), Collections.singletonList(eq("y", "a"))));
+        assertEquals(8, tuples.size());
+        assertEquals(6, Collections.frequency(tuples, tuples.get(0)));
+        assertEquals(2, Collections.frequency(tuples, tuples.get(7)));
+    }
+
+    @Test
+    public void testRepeatedVariable() {
+        // Q(x, z) :- R(x, x), S(x, z), only the rows of R holding the same value twice join
+        MaterializedOperator r = input(variables("x", "w"), new int[]{1, 1}, new int[]{1, 2}, new int[]{2, 1}, new int[]{3, 3});
+        MaterializedOperator s = input(variables("a", "z"), new int[]{1, 7}, new int[]{2, 8}, new int[]{3, 9});
+        List<String> tuples = readSorted(join(Arrays.asList(r, s), Arrays.asList(eq("x", "w"), eq("x", "a"))));
+        assertEquals(2, tuples.size());
+        assertEquals(readSorted(input(variables("x", "w", "a", "z"), new int[]{1, 1, 1, 7}, new int[]{3, 3, 3, 9})), tuples);
+    }
+
+    @Test
+    public void testEmptyInput() {
+        MaterializedOperator r = input(variables("x", "y"), new int[]{1, 2}, new int[]{2, 3});
+        MaterializedOperator s = input(variables("a", "z"));
+        LeapfrogTriejoinOperator join = join(Arrays.asList(r, s), Collections.singletonList(eq("y", "a")));
+        assertNull(join.getNextTuple());
+        assertNull(join.getNextTuple());
+        assertNull(join.nextBatch());
+    }
+
+    @Test
+    public void testReset() {
+        MaterializedOperator r = input(variables("x", "y"), new int[]{1, 2}, new int[]{1, 2}, new int[]{2, 3}, new int[]{4, 3});
+        MaterializedOperator s = input(variables("a", "z"), new int[]{2, 5}, new int[]{3, 6}, new int[]{3, 7});
+        LeapfrogTriejoinOperator join = join(Arrays.asList(r, s), Collections.singletonList(eq("y", "a")));
+        List<String> first = readSorted(join);
+        assertEquals(6, first.size());
+
+        // stopped while duplicates are still pending, then run again from the start
+        join.reset();
+        assertNotNull(join.getNextTuple());
+        join.reset();
+        assertEquals(first, readSorted(join));
+        int count = 0;
+        join.reset();
+        for (Batch batch = join.nextBatch(); batch != null; batch = join.nextBatch()) count += batch.getSelectedCount();
+        assertEquals(6, count);
+    }
+}
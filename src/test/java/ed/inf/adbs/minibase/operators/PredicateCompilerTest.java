@@ -0,0 +1,116 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.operators.PredicateCompiler.TuplePredicate;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PredicateCompilerTest {
+
+    private TupleLayout layout = new TupleLayout(
+            Arrays.asList(new Variable("x"), new Variable("y"), new Variable("z")),
+            new Schema("int int string"));
+
+    private Tuple tuple(int x, int y, String z){
+        Tuple tuple = Tuple.allocate(layout);
+        tuple.setInt(0, x);
+        tuple.setInt(1, y);
+        tuple.setString(2, z);
+        return tuple;
+    }
+
+    private List<ComparisonAtom> parse(String conditions){
+        Query query = QueryParser.parse("Q(x) :- R(x, y, z), " + conditions);
+        List<ComparisonAtom> cas = new ArrayList<>();
+        for (Atom atom: query.getBody()){
+            if(atom instanceof ComparisonAtom) cas.add((ComparisonAtom) atom);
+        }
+        return cas;
+    }
+
+    private TuplePredicate compile(String conditions){
+        return PredicateCompiler.compile(parse(conditions), layout);
+    }
+
+    @Test
+    public void testIntConditions() {
+        TuplePredicate predicate = compile("x < y, 2 <= x, y != 9");
+        assertTrue(predicate.test(tuple(2, 7, "adbs")));
+        assertFalse(predicate.test(tuple(1, 7, "adbs")));
+        assertFalse(predicate.test(tuple(2, 9, "adbs")));
+        assertFalse(predicate.test(tuple(8, 7, "adbs")));
+    }
+
+    @Test
+    public void testStringConditions() {
+        TuplePredicate predicate = compile("z > 'anlp'");
+        assertTrue(predicate.test(tuple(1, 1, "ids")));
+        assertFalse(predicate.test(tuple(1, 1, "adbs")));
+    }
+
+    @Test
+    public void testTypeMismatchAndConstants() {
+        assertTrue(PredicateCompiler.isFalse(compile("z = 4")));
+        assertTrue(PredicateCompiler.isFalse(compile("x = y, 1 = 0")));
+        assertTrue(compile("1 < 2").test(tuple(0, 0, "")));
+    }
+
+    @Test
+    public void testBatchConditions() {
+        Batch batch = new Batch(layout, 8);
+        batch.append(tuple(2, 7, "adbs"));
+        batch.append(tuple(1, 7, "ids"));
+        batch.append(tuple(3, 9, "ids"));
+        batch.append(tuple(4, 3, "ids"));
+        PredicateCompiler.compileBatch(parse("x < y, z > 'anlp', 2 <= x"), layout).filter(batch);
+        assertEquals(1, batch.getSelectedCount());
+        assertEquals(tuple(3, 9, "ids"), batch.getTuple(batch.getSelection()[0]));
+
+        PredicateCompiler.compileBatch(parse("z = 4"), layout).filter(batch);
+        assertEquals(0, batch.getSelectedCount());
+    }
+
+    @Test
+    public void testRowConditions() {
+        Relation relation = new Relation("R", new Schema("int int string"), 3,
+                new int[][]{{2, 1, 3}, {7, 7, 9}, null},
+                new String[][]{null, null, {"adbs", "ids", "ids"}});
+        PredicateCompiler.RowPredicate predicate = PredicateCompiler.compileRows(parse("x < y, z = 'ids'"), layout, relation);
+        assertFalse(predicate.test(0));
+        assertTrue(predicate.test(1));
+        assertTrue(predicate.test(2));
+        assertTrue(PredicateCompiler.isTrue(PredicateCompiler.compileRows(new ArrayList<>(), layout, relation)));
+    }
+
+    @Test
+    public void testVariantsAgree() {
+        Tuple[] tuples = {tuple(2, 7, "adbs"), tuple(7, 7, "ids"), tuple(9, 7, "anlp")};
+        Relation relation = new Relation("R", new Schema("int int string"), 3,
+                new int[][]{{2, 7, 9}, {7, 7, 7}, null},
+                new String[][]{null, null, {"adbs", "ids", "anlp"}});
+        String[] conditions = {"x = y", "x != y", "x > y", "x >= y", "x < y", "x <= y",
+                "7 = x", "7 != x", "7 > x", "7 >= x", "7 < x", "7 <= x",
+                "z = 'ids'", "z != 'ids'", "'anlp' > z", "'anlp' >= z", "'anlp' < z", "'anlp' <= z"};
+        for (String condition: conditions){
+            TuplePredicate predicate = compile(condition);
+            PredicateCompiler.RowPredicate rowPredicate = PredicateCompiler.compileRows(parse(condition), layout, relation);
+            Batch batch = new Batch(layout, 4);
+            for (Tuple tuple: tuples) batch.append(tuple);
+            PredicateCompiler.compileBatch(parse(condition), layout).filter(batch);
+            List<Integer> selected = new ArrayList<>();
+            for (int i=0; i<batch.getSelectedCount(); i++) selected.add(batch.getSelection()[i]);
+            for (int row=0; row<tuples.length; row++){
+                assertEquals(condition, predicate.test(tuples[row]), rowPredicate.test(row));
+                assertEquals(condition, predicate.test(tuples[row]), selected.contains(row));
+            }
+        }
+        assertTrue(compile("7 > x").test(tuple(2, 0, "")));
+        assertFalse(compile("'anlp' < z").test(tuple(0, 0, "adbs")));
+    }
+}
@@ -0,0 +1,68 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.Catalog;
+import ed.inf.adbs.minibase.Interpreter;
+import ed.inf.adbs.minibase.PlanExplainer;
+import ed.inf.adbs.minibase.Planner;
+import ed.inf.adbs.minibase.QueryServer;
+import ed.inf.adbs.minibase.ResultSink;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static ed.inf.adbs.minibase.TestFiles.write;
+import static org.junit.Assert.*;
+
+public class SumAggOperatorTest {
+
+    private static String evaluate(File db, String query) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new QueryServer(db.getPath(), 1).serve(new ByteArrayInputStream(query.getBytes(StandardCharsets.UTF_8)), out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n")
+                .replaceAll("# ok [0-9.]+ ms\n", "");
+    }
+
+    private static File database(String schema, String... relations) throws IOException {
+        File db = Files.createTempDirectory("minibase").toFile();
+        File files = new File(db, "files");
+        assertTrue(files.mkdir());
+        write(new File(db, "schema.txt"), schema);
+        for (int i=0; i<relations.length; i+=2) write(new File(files, relations[i] + ".csv"), relations[i + 1]);
+        return db;
+    }
+
+    @Test
+    public void testDuplicateRowsOfCyclicQuery() throws IOException {
+        // the duplicate row (1, 2) would count every triangle through it twice
+        File db = database("T int int\n", "T", "1, 2\n2, 3\n3, 1\n1, 2\n");
+        assertEquals("6\n", evaluate(db, "Q(SUM(x)) :- T(x, y), T(y, z), T(z, x)"));
+    }
+
+    @Test
+    public void testDuplicateRowsOfAcyclicQuery() throws IOException {
+        // (x, y, z) in (1, 2, 5), (1, 2, 6) and (1, 3, 7), z is not in the head but the sum is over it
+        File db = database("R int int\nS int int\n",
+                "R", "1, 2\n1, 2\n1, 3\n",
+                "S", "2, 5\n2, 6\n3, 7\n3, 7\n");
+        assertEquals("1, 7\n", evaluate(db, "Q(x, SUM(y)) :- R(x, y), S(y, z)"));
+    }
+
+    @Test
+    public void testDeadVariablesDropped() throws IOException {
+        // z is only kept by the scan until the repeated rows are left out
+        File db = database("R int int\nS int int\n",
+                "R", "1, 2\n1, 2\n1, 3\n",
+                "S", "2, 5\n2, 6\n3, 7\n3, 7\n");
+        new Catalog(db.getPath(), null, null, new ResultSink(new ByteArrayOutputStream()));
+        String plan = PlanExplainer.explain(new Planner(new Interpreter(QueryParser.parse("Q(x, SUM(y)) :- R(x, y), S(y, z)"))).generateQueryPlan());
+        Catalog.getInstance().closeOutputFile();
+        assertTrue(plan, plan.contains("ScanOperator S(a, z) keeping [a] distinct"));
+        assertFalse(plan, plan.contains("ProjectOperator"));
+    }
+}
@@ -0,0 +1,89 @@
+package ed.inf.adbs.minibase.stats;
+
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.Schema;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.stream.Stream;
+
+import static ed.inf.adbs.minibase.TestFiles.append;
+import static ed.inf.adbs.minibase.TestFiles.writeCsv;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class StatisticsAnalyzerTest {
+
+    private static final Schema SCHEMA = new Schema("int string");
+
+    @Test
+    public void testAnalyze() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<1000; i++) sb.append(i).append(", 'v").append(i % 10).append("'\n");
+        RelationStats stats = StatisticsAnalyzer.analyze("R", SCHEMA, writeCsv(sb.toString()));
+
+        assertEquals(1000, stats.getRowCount());
+        assertEquals(0, stats.getColumn(0).getMin());
+        assertEquals(999, stats.getColumn(0).getMax());
+        assertEquals("v0", stats.getColumn(1).getMin());
+        assertEquals(1000, stats.getDistinctCount(0), 50);
+        assertEquals(10, stats.getDistinctCount(1));
+        assertEquals(0.25, stats.getColumn(0).estimate(ComparisonOperator.LT, new IntegerConstant(250), 1000), 0.05);
+        assertEquals(0, stats.getColumn(0).estimate(ComparisonOperator.EQ, new IntegerConstant(5000), 1000), 0);
+    }
+
+    @Test
+    public void testRefresh() throws IOException {
+        File file = writeCsv("1, 'a'\n2, 'b'\n");
+        RelationStats stats = StatisticsAnalyzer.analyze("R", SCHEMA, file);
+        assertSame(stats, StatisticsAnalyzer.refresh(stats, "R", SCHEMA, file));
+
+        append(file, "7, 'c'\n");
+        RelationStats grown = StatisticsAnalyzer.refresh(stats, "R", SCHEMA, file);
+        assertEquals(3, grown.getRowCount());
+        assertEquals(7, grown.getColumn(0).getMax());
+        assertEquals(3, grown.getDistinctCount(1));
+        assertEquals(2, stats.getRowCount());
+    }
+
+    @Test
+    public void testEncode() throws IOException {
+        RelationStats stats = StatisticsAnalyzer.analyze("R", SCHEMA, writeCsv("1, 'a b'\n5, 'c'\n"));
+        ColumnStats column = ColumnStats.decode(stats.getColumn(1).encode().split(" "), 0);
+        assertEquals("a b", column.getMin());
+        assertEquals(2, column.estimateDistinct());
+        Histogram histogram = Histogram.decode(stats.getColumn(0).getHistogram().encode());
+        assertEquals(0.5, histogram.estimate(ComparisonOperator.LEQ, 1), 1e-9);
+    }
+
+    @Test
+    public void testZeroSpread() {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add(0);
+        // the rank of a single value is above 20 with probability 2^-20
+        for (byte register: Base64.getDecoder().decode(sketch.encode())){
+            assertTrue("rank " + register, register <= 20);
+        }
+        assertEquals(1, sketch.estimate());
+    }
+
+    @Test
+    public void testSavedPermissions() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path db = Files.createTempDirectory("minibase");
+        StatisticsStore.forDatabase(db.toString()).get("R", SCHEMA, writeCsv("1, 'a'\n"));
+        // the sidecar file gets the permissions of any new file under the umask
+        Path plain = Files.createFile(db.resolve("plain.txt"));
+        assertEquals(Files.getPosixFilePermissions(plain),
+                Files.getPosixFilePermissions(db.resolve(StatisticsStore.FILE_NAME)));
+        try (Stream<Path> files = Files.list(db)) {
+            assertEquals(2, files.count());
+        }
+    }
+}